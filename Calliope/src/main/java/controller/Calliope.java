@@ -56,6 +56,8 @@ public class Calliope extends Application
                 calliopeExecutor.shutdown();
                 // Shutdown ExifTool
                 CalliopeData.getInstance().getMetadataManager().shutdown();
+                // Save any elevations we looked up
+                CalliopeData.getInstance().getElevationData().shutdown();
                 // Clear any temp files made
                 CalliopeData.getInstance().getTempDirectoryManager().shutdown();
                 // Kill the Application
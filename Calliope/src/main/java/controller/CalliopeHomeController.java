@@ -88,6 +88,8 @@ public class CalliopeHomeController
 		CalliopeData.getInstance().getExecutor().shutdown();
 		// Shutdown ExifTool
 		CalliopeData.getInstance().getMetadataManager().shutdown();
+		// Save any elevations we looked up
+		CalliopeData.getInstance().getElevationData().shutdown();
 		// Clear any temp files made
 		CalliopeData.getInstance().getTempDirectoryManager().shutdown();
 		// Kill the Application
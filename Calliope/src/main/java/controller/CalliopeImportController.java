@@ -454,7 +454,19 @@ public class CalliopeImportController
 		// Setup the metadata property sheet
 
 		// When we click a new image then load new metadata
-		this.currentlySelectedImage.addListener((observable, oldValue, newValue) -> { if (newValue != null) this.pstMetadata.getItems().setAll(newValue.getRawMetadata()); });
+		this.currentlySelectedImage.addListener((observable, oldValue, newValue) ->
+		{
+			if (newValue != null)
+			{
+				this.pstMetadata.getItems().setAll(newValue.getRawMetadata());
+				// If the metadata is still being loaded in the background, read it now and refresh the sheet once it's ready
+				CalliopeData.getInstance().getMetadataLoader().prioritize(Collections.singletonList(newValue)).thenRun(() -> Platform.runLater(() ->
+				{
+					if (this.currentlySelectedImage.getValue() == newValue)
+						this.pstMetadata.getItems().setAll(newValue.getRawMetadata());
+				}));
+			}
+		});
 		// Create a default factory
 		DefaultPropertyEditorFactory defaultFactory = new DefaultPropertyEditorFactory();
 		// Ensure that our editors are non-editable since metadata isn't editable
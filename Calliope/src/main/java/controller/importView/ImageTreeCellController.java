@@ -16,6 +16,7 @@ import model.image.ImageDirectory;
 import model.image.ImageEntry;
 import model.site.Site;
 
+import java.util.Collections;
 import java.util.Optional;
 
 import static model.constant.CalliopeDataFormats.SITE_CODE_FORMAT;
@@ -124,7 +125,11 @@ public class ImageTreeCellController extends TreeCell<ImageContainer>
 				imageDirectory.uploadProgressProperty().addListener(expandedListener);
 			}
 			else if (item instanceof ImageEntry)
+			{
 				((ImageEntry) item).buildAndStoreIcon();
+				// If this image's metadata is still being loaded in the background, read it next since it's now visible
+				CalliopeData.getInstance().getMetadataLoader().prioritize(Collections.singletonList((ImageEntry) item));
+			}
 
 			// Show the UI
 			this.setGraphic(mainPane);
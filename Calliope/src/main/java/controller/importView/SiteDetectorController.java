@@ -109,8 +109,11 @@ public class SiteDetectorController
 				 * @return A list of sites parallel to the image list where each pair contains the image and the site for that image
 				 */
 				@Override
-				protected Site[] call()
+				protected Site[] call() throws InterruptedException
 				{
+					// Sites are detected using image locations, so make sure every image's metadata has been read
+					this.updateMessage("Waiting for image metadata...");
+					CalliopeData.getInstance().getMetadataLoader().waitForMetadata(imageEntries);
 					this.updateMessage("Detecting sites for images...");
 					// Create the parallel array
 					Site[] toReturn = new Site[imageEntries.size()];
@@ -153,8 +156,11 @@ public class SiteDetectorController
 			ErrorTask<Site[]> detectTask = new ErrorTask<Site[]>()
 			{
 				@Override
-				protected Site[] call()
+				protected Site[] call() throws InterruptedException
 				{
+					// Sites are detected using image locations, so make sure every image's metadata has been read
+					this.updateMessage("Waiting for image metadata...");
+					CalliopeData.getInstance().getMetadataLoader().waitForMetadata(imageEntries);
 					this.updateMessage("Detecting sites for images...");
 					// Create an array of results to return
 					Site[] toReturn = new Site[imageEntries.size()];
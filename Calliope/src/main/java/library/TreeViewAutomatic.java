@@ -1,6 +1,5 @@
 package library;
 
-import javafx.beans.binding.Bindings;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
@@ -9,7 +8,6 @@ import javafx.collections.ObservableList;
 import javafx.collections.WeakListChangeListener;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
-import javafx.scene.image.ImageView;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -210,11 +208,6 @@ public class TreeViewAutomatic<T extends HierarchyData<T>> extends TreeView<T>
 		treeItem.setValue(value);
 		treeItem.setExpanded(true);
 
-        /*
-		 * Custom addition to add support for a default icon
-         */
-		treeItem.graphicProperty().bind(Bindings.createObjectBinding(() -> new ImageView(treeItem.getValue().treeIconProperty().getValue()), treeItem.getValue().treeIconProperty()));
-
 		if (value != null && value.getChildren() != null)
 		{
 			ListChangeListener<T> listChangeListener = getListChangeListener(treeItem.getChildren());
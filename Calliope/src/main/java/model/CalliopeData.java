@@ -19,6 +19,7 @@ import model.elasticsearch.ElasticSearchConnectionManager;
 import model.elasticsearch.query.QueryEngine;
 import model.elevationAPI.ElevationData;
 import model.image.ImageDirectory;
+import model.image.MetadataLoader;
 import model.image.MetadataManager;
 import model.settings.SensitiveConfigurationManager;
 import model.settings.SettingsData;
@@ -98,6 +99,9 @@ public class CalliopeData
 	// Class to handle metadata management
 	private MetadataManager metadataManager;
 
+	// Class to read image metadata in the background after an import
+	private MetadataLoader metadataLoader;
+
 	// A list of data sources that we can import images from
 	private ObservableList<IDataSource> dataSources;
 
@@ -149,10 +153,13 @@ public class CalliopeData
 		this.siteManager = new SiteManager();
 
 		// Setup our metadata management class
-		this.metadataManager = new MetadataManager(this.errorDisplay);
+		this.metadataManager = new MetadataManager(this.errorDisplay, this.settings);
+
+		// Setup our background metadata loader
+		this.metadataLoader = new MetadataLoader();
 
 		// Setup our elevation data
-		this.elevationData = new ElevationData();
+		this.elevationData = new ElevationData(this.errorDisplay, this.settings);
 
 		// Create the image collection list
 		this.collectionList = FXCollections.synchronizedObservableList(FXCollections.observableArrayList(collection -> new Observable[]{collection.nameProperty(), collection.getPermissions(), collection.organizationProperty(), collection.contactInfoProperty(), collection.descriptionProperty(), collection.idProperty() }));
@@ -320,6 +327,11 @@ public class CalliopeData
 		return this.metadataManager;
 	}
 
+	public MetadataLoader getMetadataLoader()
+	{
+		return this.metadataLoader;
+	}
+
 	public ObservableList<IDataSource> getDataSources()
 	{
 		return dataSources;
@@ -337,10 +337,10 @@ public class CyVerseConnectionManager
 	 *
 	 * @param collection The collection to upload to
 	 * @param directoryToWrite The directory to write
-	 * @param transferCallback The callback that will receive callbacks if the transfer is in progress
+	 * @param progressCallback Optional progress callback that will be updated with the fraction of the upload sent so far
 	 * @param messageCallback Optional message callback that will show what is currently going on
 	 */
-	public void uploadAndIndexImages(ImageCollection collection, ImageDirectory directoryToWrite, TransferStatusCallbackListener transferCallback, StringProperty messageCallback)
+	public void uploadAndIndexImages(ImageCollection collection, ImageDirectory directoryToWrite, DoubleProperty progressCallback, StringProperty messageCallback)
 	{
 		if (this.sessionManager.openSession())
 		{
@@ -356,15 +356,23 @@ public class CyVerseConnectionManager
 					if (messageCallback != null)
 						messageCallback.setValue("Creating upload folder on CyVerse...");
 
-					// Create a new folder for the upload, we will use the current date as the name plus our username
-					String uploadFolderName = FOLDER_FORMAT.format(new Date(this.sessionManager.getCurrentAO().getEnvironmentalInfoAO(this.authenticatedAccount).getIRODSServerCurrentTime())) + " " + CalliopeData.getInstance().getUsername();
+					// If the last upload of this directory into this collection never finished, pick up where it left off
+					UploadJournal uploadJournal = UploadJournal.load(directoryToWrite.getFile(), collection.getID().toString());
+					if (uploadJournal == null)
+					{
+						// Create a new folder for the upload, we will use the current date as the name plus our username
+						String newUploadFolderName = FOLDER_FORMAT.format(new Date(this.sessionManager.getCurrentAO().getEnvironmentalInfoAO(this.authenticatedAccount).getIRODSServerCurrentTime())) + " " + CalliopeData.getInstance().getUsername();
+						uploadJournal = new UploadJournal(directoryToWrite.getFile(), collection.getID().toString(), newUploadFolderName);
+					}
+					String uploadFolderName = uploadJournal.getUploadFolderName();
 					String uploadDirName = collectionUploadDirStr + "/" + uploadFolderName;
 
 					if (messageCallback != null)
 						messageCallback.setValue("Creating TAR file out of the directory before uploading...");
 
 					// Create the JSON file representing the upload
-					Integer imageCount = Math.toIntExact(directoryToWrite.flattened().filter(imageContainer -> imageContainer instanceof ImageEntry).count());
+					List<ImageEntry> imageEntries = directoryToWrite.flattened().filter(imageContainer -> imageContainer instanceof ImageEntry).map(imageContainer -> (ImageEntry) imageContainer).collect(Collectors.toList());
+					Integer imageCount = imageEntries.size();
 					UploadedEntry uploadEntry = new UploadedEntry(
 							CalliopeData.getInstance().getUsername(),
 							LocalDateTime.now(),
@@ -375,28 +383,28 @@ public class CyVerseConnectionManager
 					// Create the meta.csv representing the metadata for all images in the tar file
 					String localDirName = directoryToWrite.getFile().getName();
 
-					// Make a set of tar files from the image files. Don't use a single tar file because we may have > 1000 images in each
-					File[] tarsToWrite = DirectoryManager.directoryToTars(directoryToWrite, 50);
+					// Split the image files into a set of tar files by size. Don't use a single tar file because we may have > 1000 images in each,
+					// and a smaller part is cheaper to send again if it fails
+					TarPartSizer tarPartSizer = new TarPartSizer(CalliopeData.getInstance().getSettings().getUploadPartSizeMB() * 1024L * 1024L, CalliopeData.getInstance().getSettings().getAdaptiveUploadPartSize());
 
-					// For each tar part, upload
-					for (int tarPart = 0; tarPart < tarsToWrite.length; tarPart++)
+					// Build the tars, or stream them if we don't want temporary files, and upload several of them at once, each over its own connection
+					TarPartUploader tarPartUploader = new TarPartUploader(this.sessionManager, this.authenticatedAccount, directoryToWrite, imageEntries, collectionUploadDirStr, uploadFolderName, CalliopeData.getInstance().getSettings().getConcurrentUploads(), tarPartSizer, CalliopeData.getInstance().getSettings().getStreamUploads(), uploadJournal, progressCallback, messageCallback);
+					try
 					{
-						if (messageCallback != null)
-							messageCallback.setValue("Uploading TAR file part (" + (tarPart + 1) + " / " + tarsToWrite.length + ") to CyVerse...");
+						tarPartUploader.upload();
 
-						File toWrite = tarsToWrite[tarPart];
-						File localToUpload = new File(FilenameUtils.getFullPath(toWrite.getAbsolutePath()) + uploadFolderName + "-" + Integer.toString(tarPart) + "." + FilenameUtils.getExtension(toWrite.getAbsolutePath()));
-						toWrite.renameTo(localToUpload);
-						// Upload the tar
-						this.sessionManager.getCurrentAO().getDataTransferOperations(this.authenticatedAccount).putOperation(localToUpload, collectionUploadDir, transferCallback, null);
+						// Finally we actually index the image metadata using elasticsearch
+						CalliopeData.getInstance().getEsConnectionManager().indexImages(directoryToWrite, uploadEntry, collection.getID().toString(), imageEntry -> uploadDirName + "/" + localDirName + StringUtils.substringAfter(imageEntry.getFile().getAbsolutePath(), directoryToWrite.getFile().getAbsolutePath()));
+						// The upload is done so there's nothing left to resume
+						uploadJournal.delete();
 
-						localToUpload.delete();
+						// Let rules do the un-tar processing!
+					}
+					catch (IOException | InterruptedException e)
+					{
+						// If building or sending a tar failed, stop uploading and report why
+						CalliopeData.getInstance().getErrorDisplay().notify("Could not upload a TAR file to CyVerse! Uploading the directory again will resume where this upload left off.\n" + ExceptionUtils.getStackTrace(e));
 					}
-
-					// Finally we actually index the image metadata using elasticsearch
-					CalliopeData.getInstance().getEsConnectionManager().indexImages(directoryToWrite, uploadEntry, collection.getID().toString(), imageEntry -> uploadDirName + "/" + localDirName + StringUtils.substringAfter(imageEntry.getFile().getAbsolutePath(), directoryToWrite.getFile().getAbsolutePath()));
-
-					// Let rules do the un-tar processing!
 				}
 				else
 				{
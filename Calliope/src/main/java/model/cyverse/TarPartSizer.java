@@ -0,0 +1,94 @@
+package model.cyverse;
+
+/**
+ * Decides how many bytes go into each TAR part of an upload. With a fixed size every part gets the size from the settings.
+ * In adaptive mode the size follows the measured throughput of each connection so a part takes a couple of minutes to
+ * send, which keeps the per-part overhead small on fast links and keeps retries cheap on slow ones. Every failed part
+ * halves the size and a high failure rate keeps it down, so flaky connections end up sending small parts
+ */
+class TarPartSizer
+{
+	// Adaptive parts never get smaller or larger than this
+	private static final Long MIN_PART_BYTES = 32L * 1024L * 1024L;
+	private static final Long MAX_PART_BYTES = 4L * 1024L * 1024L * 1024L;
+	// How long we'd like one part to take to upload over one connection
+	private static final Double TARGET_PART_SECONDS = 120.0;
+	// How much the most recent throughput measurement counts for compared to the ones before it
+	private static final Double THROUGHPUT_SMOOTHING = 0.3;
+
+	// If the part size should follow the measured throughput and failure rate
+	private final Boolean adaptive;
+	// The number of bytes to put into the next part
+	private Long targetPartBytes;
+	// The smoothed throughput of a single connection in bytes per second, null until a part has been uploaded
+	private Double bytesPerSecond = null;
+	// The number of part uploads attempted and the number of those that failed
+	private Integer partsAttempted = 0;
+	private Integer partsFailed = 0;
+
+	/**
+	 * Constructor takes the size of the first part and whether later parts should adapt
+	 *
+	 * @param initialPartBytes The number of bytes to put into each part, or into the first part if adaptive
+	 * @param adaptive If the part size should follow the measured throughput and failure rate
+	 */
+	TarPartSizer(Long initialPartBytes, Boolean adaptive)
+	{
+		this.adaptive = adaptive;
+		this.targetPartBytes = adaptive ? this.clamp(initialPartBytes) : Math.max(1L, initialPartBytes);
+	}
+
+	/**
+	 * Records a part that was uploaded, and in adaptive mode sizes the next part from how long it took
+	 *
+	 * @param partBytes The size of the part
+	 * @param elapsedNanos How long the upload took
+	 */
+	synchronized void partSucceeded(Long partBytes, Long elapsedNanos)
+	{
+		this.partsAttempted++;
+		if (!this.adaptive || elapsedNanos <= 0)
+			return;
+
+		Double measuredBytesPerSecond = partBytes / (elapsedNanos / 1e9);
+		this.bytesPerSecond = this.bytesPerSecond == null ? measuredBytesPerSecond : THROUGHPUT_SMOOTHING * measuredBytesPerSecond + (1 - THROUGHPUT_SMOOTHING) * this.bytesPerSecond;
+		// Aim for parts that take the target time, shrunk by how often parts fail since a failure means sending the part again
+		this.targetPartBytes = this.clamp((long) (this.bytesPerSecond * TARGET_PART_SECONDS * (1 - this.getFailureRate())));
+	}
+
+	/**
+	 * Records a part that failed to upload, and in adaptive mode halves the size of the next part
+	 */
+	synchronized void partFailed()
+	{
+		this.partsAttempted++;
+		this.partsFailed++;
+		if (this.adaptive)
+			this.targetPartBytes = this.clamp(this.targetPartBytes / 2);
+	}
+
+	/**
+	 * Keeps an adaptive part size inside of the allowed range
+	 *
+	 * @param partBytes The part size to clamp
+	 * @return The part size, no smaller than the minimum and no larger than the maximum
+	 */
+	private Long clamp(Long partBytes)
+	{
+		return Math.max(MIN_PART_BYTES, Math.min(MAX_PART_BYTES, partBytes));
+	}
+
+	///
+	/// Getters
+	///
+
+	synchronized Long getTargetPartBytes()
+	{
+		return this.targetPartBytes;
+	}
+
+	synchronized Double getFailureRate()
+	{
+		return this.partsAttempted == 0 ? 0.0 : (double) this.partsFailed / this.partsAttempted;
+	}
+}
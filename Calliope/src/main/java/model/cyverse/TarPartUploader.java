@@ -0,0 +1,600 @@
+package model.cyverse;
+
+import javafx.beans.property.DoubleProperty;
+import javafx.beans.property.StringProperty;
+import model.CalliopeData;
+import model.dataSources.DirectoryManager;
+import model.image.ImageDirectory;
+import model.image.ImageEntry;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.irods.jargon.core.connection.IRODSAccount;
+import org.irods.jargon.core.exception.JargonException;
+import org.irods.jargon.core.pub.DataObjectAO;
+import org.irods.jargon.core.pub.io.IRODSFile;
+import org.irods.jargon.core.pub.io.IRODSFileFactory;
+import org.irods.jargon.core.transfer.TransferStatus;
+import org.irods.jargon.core.transfer.TransferStatusCallbackListener;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+/**
+ * Uploads a directory to CyVerse as a set of TAR parts. Parts are built one at a time on the calling thread and handed to
+ * a pool of upload threads. Each upload thread opens its own iRODS session, so parts travel over separate connections at
+ * the same time. Only a few parts are built ahead of the uploads so the TAR files never take up much disk space. The
+ * images going into each part are picked right before the part is built, so the part size can change during the upload.
+ * Every part is recorded in an upload journal, so an interrupted upload only sends the parts that never made it to CyVerse
+ */
+class TarPartUploader
+{
+	// The number of times we try to upload a part before giving up on the whole upload
+	private static final Integer MAX_PART_ATTEMPTS = 3;
+	// The number of bytes of a streamed part collected before they're sent to CyVerse
+	private static final Integer STREAM_BUFFER_SIZE = 4 * 1024 * 1024;
+
+	// Used to open a separate iRODS session on each upload thread
+	private final CyVerseSessionManager sessionManager;
+	// The account to upload with
+	private final IRODSAccount authenticatedAccount;
+	// The directory being uploaded and the images in it
+	private final ImageDirectory directory;
+	private final List<ImageEntry> imageEntries;
+	// The absolute iRODS path of the folder to upload the parts to
+	private final String remoteDirectory;
+	// The name given to each part before the part number
+	private final String partName;
+	// The maximum number of parts uploaded at once
+	private final Integer concurrentUploads;
+	// Decides how many bytes go into each part
+	private final TarPartSizer partSizer;
+	// If parts are written straight to CyVerse instead of being built into temporary TAR files first
+	private final Boolean streamParts;
+	// Records every part so an interrupted upload can be resumed
+	private final UploadJournal journal;
+
+	// The size of each part that has been built or was built by an earlier upload, indexed by part number
+	private final List<Long> partSizes = new ArrayList<>();
+	// The number of bytes of each of those parts sent so far
+	private final List<Long> partBytesSent = new ArrayList<>();
+	// The estimated size of the images that haven't been put into a part yet
+	private Long unbuiltBytes = 0L;
+	// The number of parts we expect to upload, which may change if the part size does
+	private Integer partsPlanned = 0;
+	// The number of parts uploaded so far
+	private Integer partsUploaded = 0;
+
+	// Updated with the fraction of all parts uploaded so far, may be null
+	private final DoubleProperty progressCallback;
+	// Updated with what is currently going on, may be null
+	private final StringProperty messageCallback;
+
+	/**
+	 * Constructor just stores the fields
+	 *
+	 * @param sessionManager Used to open a separate iRODS session on each upload thread
+	 * @param authenticatedAccount The account to upload with
+	 * @param directory The directory being uploaded
+	 * @param imageEntries The images in the directory to upload
+	 * @param remoteDirectory The absolute iRODS path of the folder to upload the parts to
+	 * @param partName The name given to each part before the part number
+	 * @param concurrentUploads The maximum number of parts uploaded at once
+	 * @param partSizer Decides how many bytes go into each part
+	 * @param streamParts If parts are written straight to CyVerse instead of being built into temporary TAR files first
+	 * @param journal Records every part, and holds the parts of an earlier upload if this upload is resuming it
+	 * @param progressCallback Updated with the fraction of all parts uploaded so far, may be null
+	 * @param messageCallback Updated with what is currently going on, may be null
+	 */
+	TarPartUploader(CyVerseSessionManager sessionManager, IRODSAccount authenticatedAccount, ImageDirectory directory, List<ImageEntry> imageEntries, String remoteDirectory, String partName, Integer concurrentUploads, TarPartSizer partSizer, Boolean streamParts, UploadJournal journal, DoubleProperty progressCallback, StringProperty messageCallback)
+	{
+		this.sessionManager = sessionManager;
+		this.authenticatedAccount = authenticatedAccount;
+		this.directory = directory;
+		this.imageEntries = imageEntries;
+		this.remoteDirectory = remoteDirectory;
+		this.partName = partName;
+		this.concurrentUploads = Math.max(1, concurrentUploads);
+		this.partSizer = partSizer;
+		this.streamParts = streamParts;
+		this.journal = journal;
+		this.progressCallback = progressCallback;
+		this.messageCallback = messageCallback;
+	}
+
+	/**
+	 * Builds and uploads every part, returning once they have all been uploaded. The calling thread must have a session
+	 * open, it's used to check which parts in the journal are already on CyVerse
+	 *
+	 * @throws IOException If a part could not be built or the journal could not be written
+	 * @throws JargonException If a part could not be uploaded
+	 * @throws InterruptedException If the thread was interrupted while waiting on the uploads
+	 */
+	void upload() throws IOException, JargonException, InterruptedException
+	{
+		// Parts from an earlier upload that didn't make it to CyVerse are sent first, then the images not in any part yet
+		Map<String, ImageEntry> imagesByPath = this.imageEntries.stream().collect(Collectors.toMap(imageEntry -> imageEntry.getFile().getAbsolutePath(), imageEntry -> imageEntry, (first, second) -> first));
+		List<UploadJournal.Part> partsToResend = this.verifyJournalParts(imagesByPath);
+		Set<String> imagesInJournal = new HashSet<>();
+		this.journal.getParts().forEach(part -> imagesInJournal.addAll(part.getImagePaths()));
+		List<ImageEntry> remainingImages = this.imageEntries.stream().filter(imageEntry -> !imagesInJournal.contains(imageEntry.getFile().getAbsolutePath())).collect(Collectors.toList());
+		synchronized (this)
+		{
+			this.unbuiltBytes = remainingImages.stream().mapToLong(DirectoryManager::estimateTarEntrySize).sum();
+		}
+		this.updateProgress();
+
+		// Each upload holds a permit until it finishes, one extra permit lets the next part be built while the others upload.
+		// Streamed parts aren't built ahead of time so they don't need the extra permit
+		Semaphore partsInFlight = new Semaphore(this.streamParts ? this.concurrentUploads : this.concurrentUploads + 1);
+		ExecutorService uploaders = Executors.newFixedThreadPool(this.concurrentUploads, runnable ->
+		{
+			Thread thread = new Thread(runnable, "tar-uploader");
+			thread.setDaemon(true);
+			return thread;
+		});
+		List<Future<Void>> uploads = new ArrayList<>();
+		// Every TAR built so far, uploads that never get to start leave theirs behind
+		List<File> builtTars = new ArrayList<>();
+		try
+		{
+			Integer nextPartToResend = 0;
+			Integer nextImage = 0;
+			while (nextPartToResend < partsToResend.size() || nextImage < remainingImages.size())
+			{
+				partsInFlight.acquire();
+				// If an upload already failed there's no point building any more parts
+				for (Future<Void> upload : uploads)
+					if (upload.isDone())
+						this.waitForUpload(upload);
+
+				// Split the remaining images using the current part size, if there are no parts to resend the first group becomes this part
+				List<List<ImageEntry>> remainingParts = DirectoryManager.partitionIntoTars(remainingImages.subList(nextImage, remainingImages.size()), this.partSizer.getTargetPartBytes());
+				synchronized (this)
+				{
+					this.partsPlanned = this.partSizes.size() + remainingParts.size();
+				}
+				this.updateMessage();
+
+				UploadJournal.Part part = nextPartToResend < partsToResend.size() ? partsToResend.get(nextPartToResend++) : null;
+				// Parts being sent again get the same images they had before, as long as the images are still there
+				List<ImageEntry> partImages = part != null ? part.getImagePaths().stream().map(imagesByPath::get).filter(Objects::nonNull).collect(Collectors.toList()) : remainingParts.get(0);
+
+				// When streaming, the part is written straight to CyVerse by the upload thread so there's nothing to build here
+				File tar = null;
+				String checksum = null;
+				if (!this.streamParts)
+				{
+					tar = CalliopeData.getInstance().getTempDirectoryManager().createTempFile("tarToUpload.tar");
+					builtTars.add(tar);
+					try
+					{
+						checksum = this.buildTar(partImages, tar);
+					}
+					catch (IOException e)
+					{
+						partsInFlight.release();
+						throw e;
+					}
+				}
+				// Until a part is built or streamed we go off of the estimated size of its images
+				Long partSize = tar != null ? tar.length() : DirectoryManager.estimateTarSize(partImages);
+
+				// Record the part before we send it, swapping the estimated size of its images for the size of the part
+				synchronized (this)
+				{
+					if (part == null)
+					{
+						String remotePath = this.remoteDirectory + "/" + this.partName + "-" + this.partSizes.size() + ".tar";
+						part = this.journal.addPart(partImages.stream().map(imageEntry -> imageEntry.getFile().getAbsolutePath()).collect(Collectors.toList()), remotePath, tar != null ? partSize : null, checksum);
+						this.partSizes.add(partSize);
+						this.partBytesSent.add(0L);
+						this.unbuiltBytes = this.unbuiltBytes - partImages.stream().mapToLong(DirectoryManager::estimateTarEntrySize).sum();
+						nextImage = nextImage + partImages.size();
+					}
+					else
+					{
+						this.journal.partRebuilt(part, tar != null ? partSize : null, checksum);
+						this.partSizes.set(part.getIndex(), partSize);
+					}
+				}
+				this.saveJournal();
+
+				final UploadJournal.Part partToUpload = part;
+				final File tarToUpload = tar;
+				uploads.add(uploaders.submit(() ->
+				{
+					try
+					{
+						this.uploadPart(partToUpload, tarToUpload, partImages);
+					}
+					finally
+					{
+						partsInFlight.release();
+					}
+					return null;
+				}));
+			}
+
+			// Wait for the remaining uploads to finish
+			for (Future<Void> upload : uploads)
+				this.waitForUpload(upload);
+		}
+		finally
+		{
+			// If we stopped early, stop every upload still going and clean up the parts that were never sent
+			uploaders.shutdownNow();
+			builtTars.forEach(File::delete);
+		}
+	}
+
+	/**
+	 * Checks which parts in the journal are already on CyVerse. A part the journal says was uploaded is done, since a rule
+	 * on CyVerse may have un-tarred it and removed the TAR already. If its TAR is still there it's only sent again when the
+	 * size or checksum shows it was damaged. A part that never got marked as uploaded, because the upload stopped right as
+	 * it finished, counts as uploaded if a file of the same size is at its remote path, and if the server can give us an
+	 * MD5 checksum, the checksum matches too. Streamed parts that never finished have no size yet so they always need to be
+	 * sent again
+	 *
+	 * @param imagesByPath Every image being uploaded indexed by absolute path
+	 * @return The parts in the journal that still need to be sent
+	 * @throws JargonException If CyVerse could not be checked
+	 */
+	private List<UploadJournal.Part> verifyJournalParts(Map<String, ImageEntry> imagesByPath) throws JargonException
+	{
+		List<UploadJournal.Part> partsToResend = new ArrayList<>();
+		List<UploadJournal.Part> journalParts = this.journal.getParts();
+		if (journalParts.isEmpty())
+			return partsToResend;
+
+		if (this.messageCallback != null)
+			this.messageCallback.setValue("Checking which parts of the last upload made it to CyVerse...");
+		IRODSFileFactory fileFactory = this.sessionManager.getCurrentAO().getIRODSFileFactory(this.authenticatedAccount);
+		DataObjectAO dataObjectAO = this.sessionManager.getCurrentAO().getDataObjectAO(this.authenticatedAccount);
+		for (UploadJournal.Part part : journalParts)
+		{
+			IRODSFile remoteFile = fileFactory.instanceIRODSFile(part.getRemotePath());
+			Boolean onCyVerse;
+			if (part.isUploaded())
+				onCyVerse = !remoteFile.exists() || (remoteFile.length() == part.getSize() && this.checksumMatches(dataObjectAO, remoteFile, part.getChecksum()));
+			else
+				onCyVerse = part.getSize() != null && remoteFile.exists() && remoteFile.length() == part.getSize() && this.checksumMatches(dataObjectAO, remoteFile, part.getChecksum());
+			if (onCyVerse)
+				this.journal.partUploaded(part);
+			else
+				partsToResend.add(part);
+
+			Long partSize = part.getSize() != null ? part.getSize() : DirectoryManager.estimateTarSize(part.getImagePaths().stream().map(imagesByPath::get).filter(Objects::nonNull).collect(Collectors.toList()));
+			synchronized (this)
+			{
+				this.partSizes.add(partSize);
+				this.partBytesSent.add(onCyVerse ? partSize : 0L);
+				if (onCyVerse)
+					this.partsUploaded++;
+			}
+		}
+		return partsToResend;
+	}
+
+	/**
+	 * Compares the checksum of a file on CyVerse with the checksum of the part we sent
+	 *
+	 * @param dataObjectAO Used to compute the checksum on CyVerse
+	 * @param remoteFile The file on CyVerse
+	 * @param checksum The MD5 checksum of the part as hex
+	 * @return False if the checksums are different, true otherwise
+	 */
+	private Boolean checksumMatches(DataObjectAO dataObjectAO, IRODSFile remoteFile, String checksum)
+	{
+		try
+		{
+			String remoteChecksum = dataObjectAO.computeMD5ChecksumOnDataObject(remoteFile);
+			// Servers that use another kind of checksum prefix it with its name, we can't compare those so the size has to do
+			return remoteChecksum == null || remoteChecksum.contains(":") || remoteChecksum.equalsIgnoreCase(checksum);
+		}
+		catch (JargonException e)
+		{
+			// If the server won't compute a checksum the size has to do
+			return true;
+		}
+	}
+
+	/**
+	 * Writes a part's images into a TAR file and computes its checksum as it's written
+	 *
+	 * @param partImages The images to put into the TAR
+	 * @param tar The file to write the TAR into
+	 * @return The MD5 checksum of the TAR file as hex
+	 * @throws IOException If an image could not be read or the TAR could not be written
+	 */
+	private String buildTar(List<ImageEntry> partImages, File tar) throws IOException
+	{
+		MessageDigest md5 = TarPartUploader.createMD5();
+		try (OutputStream tarOut = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(tar)), md5))
+		{
+			DirectoryManager.writeTar(this.directory, partImages, tarOut);
+		}
+		return TarPartUploader.toHex(md5);
+	}
+
+	/**
+	 * @return A message digest used to compute a part's MD5 checksum as it's written
+	 * @throws IOException If MD5 isn't available, which every Java runtime is required to have
+	 */
+	private static MessageDigest createMD5() throws IOException
+	{
+		try
+		{
+			return MessageDigest.getInstance("MD5");
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IOException("MD5 checksums are not available on this system!", e);
+		}
+	}
+
+	/**
+	 * @param md5 The message digest a part was written through
+	 * @return The part's MD5 checksum as hex
+	 */
+	private static String toHex(MessageDigest md5)
+	{
+		return String.format("%032x", new BigInteger(1, md5.digest()));
+	}
+
+	/**
+	 * Waits for an upload to finish, re-throwing any error it had
+	 *
+	 * @param upload The upload to wait for
+	 * @throws IOException If the upload failed to read its part
+	 * @throws JargonException If the upload failed to send its part
+	 * @throws InterruptedException If the thread was interrupted while waiting on the upload
+	 */
+	private void waitForUpload(Future<Void> upload) throws IOException, JargonException, InterruptedException
+	{
+		try
+		{
+			upload.get();
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof JargonException)
+				throw (JargonException) e.getCause();
+			throw new IOException("Could not upload a TAR file part!", e.getCause());
+		}
+	}
+
+	/**
+	 * Uploads a single part on its own iRODS session, called on an upload thread. A part that fails to upload is tried
+	 * again on a new session a few times before giving up
+	 *
+	 * @param part The part to upload
+	 * @param tar The part's TAR file, deleted once it's uploaded, or null to stream the part straight to CyVerse
+	 * @param partImages The images in the part, used if the part is streamed
+	 * @throws IOException If a session could not be opened, a streamed image could not be read, or the journal could not be written
+	 * @throws JargonException If the part could not be uploaded
+	 */
+	private void uploadPart(UploadJournal.Part part, File tar, List<ImageEntry> partImages) throws IOException, JargonException
+	{
+		// Give a built part its final name, the name is what ends up on CyVerse
+		File localToUpload = null;
+		if (tar != null)
+		{
+			localToUpload = new File(FilenameUtils.getFullPath(tar.getAbsolutePath()) + FilenameUtils.getName(part.getRemotePath()));
+			tar.renameTo(localToUpload);
+		}
+
+		try
+		{
+			Boolean uploaded = false;
+			for (Integer attempt = 1; !uploaded; attempt++)
+			{
+				// Open a session for this thread, which gives the part its own connection
+				if (!this.sessionManager.openSession())
+					throw new IOException("Could not open a CyVerse session to upload TAR file part " + (part.getIndex() + 1) + "!");
+				Long startTime = System.nanoTime();
+				try
+				{
+					Long partBytes = localToUpload != null ? this.putPart(part, localToUpload) : this.streamPart(part, partImages);
+					this.partSizer.partSucceeded(partBytes, System.nanoTime() - startTime);
+					uploaded = true;
+				}
+				catch (JargonException | IOException e)
+				{
+					// The part starts over from the beginning, so its progress does too
+					this.partSizer.partFailed();
+					this.setPartBytesSent(part, 0L);
+					if (attempt >= MAX_PART_ATTEMPTS)
+						throw e;
+				}
+				finally
+				{
+					this.sessionManager.closeSession();
+				}
+			}
+		}
+		finally
+		{
+			if (localToUpload != null)
+				localToUpload.delete();
+		}
+
+		// Streamed parts record their size and checksum once they're written
+		if (localToUpload != null)
+			this.journal.partUploaded(part);
+		this.saveJournal();
+		synchronized (this)
+		{
+			this.partBytesSent.set(part.getIndex(), this.partSizes.get(part.getIndex()));
+			this.partsUploaded++;
+		}
+		this.updateProgress();
+		this.updateMessage();
+	}
+
+	/**
+	 * Uploads a built part's TAR file using the current thread's session
+	 *
+	 * @param part The part to upload
+	 * @param localToUpload The part's TAR file
+	 * @return The size of the part
+	 * @throws JargonException If the part could not be uploaded
+	 */
+	private Long putPart(UploadJournal.Part part, File localToUpload) throws JargonException
+	{
+		IRODSFile uploadDir = this.sessionManager.getCurrentAO().getIRODSFileFactory(this.authenticatedAccount).instanceIRODSFile(this.remoteDirectory);
+		// Upload the tar, tracking this part's progress
+		this.sessionManager.getCurrentAO().getDataTransferOperations(this.authenticatedAccount).putOperation(localToUpload, uploadDir, new TransferStatusCallbackListener()
+		{
+			@Override
+			public FileStatusCallbackResponse statusCallback(TransferStatus transferStatus)
+			{
+				TarPartUploader.this.setPartBytesSent(part, transferStatus.getBytesTransfered());
+				return FileStatusCallbackResponse.CONTINUE;
+			}
+			// Ignore this status callback
+			@Override
+			public void overallStatusCallback(TransferStatus transferStatus) {}
+			// Parts have unique names so this only happens when a part is sent again, so overwrite it
+			@Override
+			public CallbackResponse transferAsksWhetherToForceOperation(String irodsAbsolutePath, boolean isCollection)
+			{
+				return CallbackResponse.YES_FOR_ALL;
+			}
+		}, null);
+		return localToUpload.length();
+	}
+
+	/**
+	 * Writes a part's images as a TAR straight into a file on CyVerse using the current thread's session. Each image is
+	 * read from disk once and sent once, and the part never takes up any local disk space. The part's checksum is
+	 * computed as it's written
+	 *
+	 * @param part The part to upload
+	 * @param partImages The images in the part
+	 * @return The size of the part
+	 * @throws IOException If an image could not be read or the part could not be written to CyVerse
+	 * @throws JargonException If the file on CyVerse could not be opened
+	 */
+	private Long streamPart(UploadJournal.Part part, List<ImageEntry> partImages) throws IOException, JargonException
+	{
+		MessageDigest md5 = TarPartUploader.createMD5();
+		IRODSFileFactory fileFactory = this.sessionManager.getCurrentAO().getIRODSFileFactory(this.authenticatedAccount);
+		IRODSFile remoteFile = fileFactory.instanceIRODSFile(part.getRemotePath());
+		// A part that failed part way through is written again from the start
+		if (remoteFile.exists())
+			remoteFile.delete();
+
+		// Count the bytes as they reach CyVerse to track this part's progress
+		CountingOutputStream remoteOut = new CountingOutputStream(fileFactory.instanceIRODSFileOutputStream(remoteFile))
+		{
+			@Override
+			protected void afterWrite(int n) throws IOException
+			{
+				super.afterWrite(n);
+				TarPartUploader.this.setPartBytesSent(part, this.getByteCount());
+			}
+		};
+		// Each write to CyVerse is a round trip, so buffer plenty before sending
+		try (OutputStream tarOut = new DigestOutputStream(new BufferedOutputStream(remoteOut, STREAM_BUFFER_SIZE), md5))
+		{
+			DirectoryManager.writeTar(this.directory, partImages, tarOut);
+		}
+
+		Long partSize = remoteOut.getByteCount();
+		this.journal.partStreamed(part, partSize, TarPartUploader.toHex(md5));
+		synchronized (this)
+		{
+			this.partSizes.set(part.getIndex(), partSize);
+		}
+		return partSize;
+	}
+
+	/**
+	 * Writes the journal to disk
+	 *
+	 * @throws IOException If the journal could not be written
+	 */
+	private void saveJournal() throws IOException
+	{
+		this.journal.save();
+	}
+
+	/**
+	 * Records how much of a part has been sent and updates the overall progress. Only finished parts are written to the
+	 * journal, a part that stops part way through is sent again from the start
+	 *
+	 * @param part The part being sent
+	 * @param bytesSent The number of bytes of the part sent so far
+	 */
+	private void setPartBytesSent(UploadJournal.Part part, Long bytesSent)
+	{
+		synchronized (this)
+		{
+			this.partBytesSent.set(part.getIndex(), bytesSent);
+		}
+		this.updateProgress();
+	}
+
+	/**
+	 * Updates the progress callback with the fraction of the upload sent so far
+	 */
+	private void updateProgress()
+	{
+		if (this.progressCallback == null)
+			return;
+		long bytesSent = 0;
+		long totalSize;
+		synchronized (this)
+		{
+			totalSize = this.unbuiltBytes;
+			for (Integer tarPart = 0; tarPart < this.partSizes.size(); tarPart++)
+			{
+				bytesSent = bytesSent + this.partBytesSent.get(tarPart);
+				totalSize = totalSize + this.partSizes.get(tarPart);
+			}
+		}
+		Double progress = totalSize > 0 ? Math.min(1.0, (double) bytesSent / (double) totalSize) : 1.0;
+		synchronized (this.progressCallback)
+		{
+			this.progressCallback.setValue(progress);
+		}
+	}
+
+	/**
+	 * Updates the message callback with the number of parts uploaded so far
+	 */
+	private void updateMessage()
+	{
+		if (this.messageCallback != null)
+		{
+			Integer partsUploaded;
+			Integer partsPlanned;
+			synchronized (this)
+			{
+				partsUploaded = this.partsUploaded;
+				partsPlanned = this.partsPlanned;
+			}
+			this.messageCallback.setValue("Uploading TAR file parts (" + partsUploaded + " / " + partsPlanned + " done, " + FileUtils.byteCountToDisplaySize(this.partSizer.getTargetPartBytes()) + " each, up to " + this.concurrentUploads + " at once) to CyVerse...");
+		}
+	}
+}
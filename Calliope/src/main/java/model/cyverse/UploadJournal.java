@@ -0,0 +1,257 @@
+package model.cyverse;
+
+import model.CalliopeData;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A record of an upload to CyVerse kept on disk so an upload that gets interrupted can pick up where it left off. There
+ * is one journal for each directory and collection pair. Every TAR part is written to the journal once it has been built
+ * or before it's streamed, along with the images in it, where it goes on CyVerse, its size and its checksum. Once the
+ * upload finishes the journal is deleted, so a journal that exists means the last upload of that directory into that
+ * collection never finished
+ */
+class UploadJournal
+{
+	// The folder journals are kept in
+	private static final File JOURNAL_DIRECTORY = new File(System.getProperty("user.home"), ".calliope" + File.separator + "uploads");
+
+	// The file this journal is stored in, not written into the journal itself
+	private transient File journalFile;
+
+	// The absolute path of the directory being uploaded
+	private String localDirectory;
+	// The ID of the collection being uploaded to
+	private String collectionID;
+	// The name of the folder on CyVerse the upload goes into, also used to name the parts
+	private String uploadFolderName;
+	// Every part built so far, indexed by part number
+	private List<Part> parts = new ArrayList<>();
+
+	/**
+	 * Constructor creates a journal for a new upload, the journal isn't written until {@link #save()} is called
+	 *
+	 * @param localDirectory The directory being uploaded
+	 * @param collectionID The ID of the collection being uploaded to
+	 * @param uploadFolderName The name of the folder on CyVerse the upload goes into
+	 */
+	UploadJournal(File localDirectory, String collectionID, String uploadFolderName)
+	{
+		this.journalFile = UploadJournal.getJournalFile(localDirectory, collectionID);
+		this.localDirectory = localDirectory.getAbsolutePath();
+		this.collectionID = collectionID;
+		this.uploadFolderName = uploadFolderName;
+	}
+
+	/**
+	 * Reads the journal left behind by an unfinished upload of a directory into a collection
+	 *
+	 * @param localDirectory The directory being uploaded
+	 * @param collectionID The ID of the collection being uploaded to
+	 * @return The journal, or null if the last upload finished or the journal could not be read
+	 */
+	static UploadJournal load(File localDirectory, String collectionID)
+	{
+		File journalFile = UploadJournal.getJournalFile(localDirectory, collectionID);
+		if (!journalFile.isFile())
+			return null;
+
+		try
+		{
+			UploadJournal journal = CalliopeData.getInstance().getGson().fromJson(new String(Files.readAllBytes(journalFile.toPath()), StandardCharsets.UTF_8), UploadJournal.class);
+			// Make sure the journal is complete and actually for this upload
+			if (journal == null || journal.parts == null || journal.uploadFolderName == null || !localDirectory.getAbsolutePath().equals(journal.localDirectory) || !collectionID.equals(journal.collectionID))
+				return null;
+			journal.journalFile = journalFile;
+			return journal;
+		}
+		catch (Exception e)
+		{
+			// A broken journal just means the upload starts over
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the file a journal is stored in. The name is made from the directory and collection so each pair has its own journal
+	 *
+	 * @param localDirectory The directory being uploaded
+	 * @param collectionID The ID of the collection being uploaded to
+	 * @return The file the journal is stored in
+	 */
+	private static File getJournalFile(File localDirectory, String collectionID)
+	{
+		UUID journalID = UUID.nameUUIDFromBytes((localDirectory.getAbsolutePath() + File.pathSeparator + collectionID).getBytes(StandardCharsets.UTF_8));
+		return new File(JOURNAL_DIRECTORY, journalID.toString() + ".json");
+	}
+
+	/**
+	 * Records a part that has just been built, or is about to be streamed
+	 *
+	 * @param imagePaths The absolute paths of the images in the part
+	 * @param remotePath The absolute iRODS path the part is uploaded to
+	 * @param size The size of the part's TAR file, null if the part is streamed
+	 * @param checksum The MD5 checksum of the part's TAR file, null if the part is streamed
+	 * @return The recorded part, its index is its position in the journal
+	 */
+	synchronized Part addPart(List<String> imagePaths, String remotePath, Long size, String checksum)
+	{
+		Part part = new Part(this.parts.size(), imagePaths, remotePath, size, checksum);
+		this.parts.add(part);
+		return part;
+	}
+
+	/**
+	 * Updates a part that was built again, the images in it might have changed since it was last built
+	 *
+	 * @param part The part that was built again
+	 * @param size The size of the part's TAR file, null if the part is streamed
+	 * @param checksum The MD5 checksum of the part's TAR file, null if the part is streamed
+	 */
+	synchronized void partRebuilt(Part part, Long size, String checksum)
+	{
+		part.size = size;
+		part.checksum = checksum;
+		part.uploaded = false;
+	}
+
+	/**
+	 * Records that a part streamed straight to CyVerse has been uploaded, its size and checksum aren't known until then
+	 *
+	 * @param part The part that was uploaded
+	 * @param size The number of bytes written
+	 * @param checksum The MD5 checksum of the bytes written
+	 */
+	synchronized void partStreamed(Part part, Long size, String checksum)
+	{
+		part.size = size;
+		part.checksum = checksum;
+		this.partUploaded(part);
+	}
+
+	/**
+	 * Records that a part has been uploaded. Once a part is uploaded a rule on CyVerse may un-tar it and remove the TAR, so
+	 * this is the only record that the part was ever sent
+	 *
+	 * @param part The part that was uploaded
+	 */
+	synchronized void partUploaded(Part part)
+	{
+		part.uploaded = true;
+	}
+
+	/**
+	 * Writes the journal to disk. The journal is written to a temporary file first so that a crash part way through never
+	 * leaves a broken journal behind
+	 *
+	 * @throws IOException If the journal could not be written
+	 */
+	synchronized void save() throws IOException
+	{
+		if (!JOURNAL_DIRECTORY.isDirectory() && !JOURNAL_DIRECTORY.mkdirs())
+			throw new IOException("Could not create the upload journal directory " + JOURNAL_DIRECTORY.getAbsolutePath());
+		File tempFile = new File(JOURNAL_DIRECTORY, this.journalFile.getName() + ".tmp");
+		Files.write(tempFile.toPath(), CalliopeData.getInstance().getGson().toJson(this).getBytes(StandardCharsets.UTF_8));
+		Files.move(tempFile.toPath(), this.journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Deletes the journal once the upload has finished
+	 */
+	synchronized void delete()
+	{
+		this.journalFile.delete();
+	}
+
+	///
+	/// Getters
+	///
+
+	String getUploadFolderName()
+	{
+		return this.uploadFolderName;
+	}
+
+	synchronized List<Part> getParts()
+	{
+		return new ArrayList<>(this.parts);
+	}
+
+	/**
+	 * A single TAR part of the upload
+	 */
+	static class Part
+	{
+		// The part number
+		private Integer index;
+		// The absolute paths of the images in the part
+		private List<String> imagePaths;
+		// The absolute iRODS path the part is uploaded to
+		private String remotePath;
+		// The size of the part's TAR file, null until a streamed part finishes
+		private Long size;
+		// The MD5 checksum of the part's TAR file as hex, null until a streamed part finishes
+		private String checksum;
+		// If the part has finished uploading
+		private Boolean uploaded = false;
+
+		/**
+		 * Constructor initializes all fields of a part that hasn't been sent yet
+		 *
+		 * @param index The part number
+		 * @param imagePaths The absolute paths of the images in the part
+		 * @param remotePath The absolute iRODS path the part is uploaded to
+		 * @param size The size of the part's TAR file
+		 * @param checksum The MD5 checksum of the part's TAR file as hex
+		 */
+		Part(Integer index, List<String> imagePaths, String remotePath, Long size, String checksum)
+		{
+			this.index = index;
+			this.imagePaths = imagePaths;
+			this.remotePath = remotePath;
+			this.size = size;
+			this.checksum = checksum;
+		}
+
+		///
+		/// Getters
+		///
+
+		Integer getIndex()
+		{
+			return this.index;
+		}
+
+		List<String> getImagePaths()
+		{
+			return this.imagePaths;
+		}
+
+		String getRemotePath()
+		{
+			return this.remotePath;
+		}
+
+		Long getSize()
+		{
+			return this.size;
+		}
+
+		String getChecksum()
+		{
+			return this.checksum;
+		}
+
+		Boolean isUploaded()
+		{
+			return this.uploaded;
+		}
+	}
+}
@@ -8,13 +8,22 @@ import model.image.ImageEntry;
 import model.util.AnalysisUtils;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.exception.ExceptionUtils;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -52,7 +61,9 @@ public class DirectoryManager
 	}
 
 	/**
-	 * Initializes all images in a directory, we do this so we can get a progress bar
+	 * Initializes all images in a directory, we do this so we can get a progress bar. Local images that were read in a
+	 * previous run come from the metadata cache, the rest are read in batches spread across the pool of exiftool
+	 * processes, and each image is initialized as soon as its metadata comes back
 	 *
 	 * @param imageDirectory The directory containing images that need initializing
 	 * @param progressProperty How many images we've parsed so far
@@ -63,13 +74,95 @@ public class DirectoryManager
 		List<ImageEntry> imageEntries = imageDirectory.flattened().filter(imageContainer -> imageContainer instanceof ImageEntry).map(imageContainer -> (ImageEntry) imageContainer).collect(Collectors.toList());
 		// The total number of images in the list
 		Integer imageCount = imageEntries.size();
-		for (Integer i = 0; i < imageCount; i++)
+		// The number of images initialized so far
+		AtomicInteger imagesInitialized = new AtomicInteger(0);
+
+		// Images that aren't on the local disk know how to read their own metadata
+		imageEntries.stream().filter(imageEntry -> !imageEntry.isFileLocal()).forEach(imageEntry ->
 		{
-			// Every 20 images we update progress
-			if (i % 20 == 0)
-				progressProperty.setValue(i.doubleValue() / imageCount.doubleValue());
-			// Read the metadata into each image
-			imageEntries.get(i).readFileMetadataFromImage();
+			imageEntry.readFileMetadataFromImage();
+			DirectoryManager.updateInitProgress(imagesInitialized.incrementAndGet(), imageCount, progressProperty);
+		});
+
+		// Every local image gets read in batches
+		try
+		{
+			DirectoryManager.readImageMetadata(imageEntries.stream().filter(ImageEntry::isFileLocal).collect(Collectors.toList()), imageEntry -> DirectoryManager.updateInitProgress(imagesInitialized.incrementAndGet(), imageCount, progressProperty));
+		}
+		catch (IOException e)
+		{
+			CalliopeData.getInstance().getErrorDisplay().notify("Error reading image metadata!\n" + ExceptionUtils.getStackTrace(e));
+		}
+
+		// Remember what we just read and looked up so importing these images again skips doing it again
+		try
+		{
+			CalliopeData.getInstance().getMetadataManager().saveMetadataCache();
+			CalliopeData.getInstance().getElevationData().saveElevationCache();
+		}
+		catch (IOException e)
+		{
+			CalliopeData.getInstance().getErrorDisplay().notify("Error saving the image metadata and elevation caches!\n" + ExceptionUtils.getStackTrace(e));
+		}
+	}
+
+	/**
+	 * Reads the metadata of local images in batches spread across the metadata readers, initializing each image as soon
+	 * as its metadata comes back. Each image's ground elevation is looked up in the background while the rest of the
+	 * metadata is still being read, and the image counts as initialized once its altitude is set
+	 *
+	 * @param imageEntries The local images to read
+	 * @param onImageRead Called once each image has been initialized, may be called from several threads at once
+	 * @throws IOException If exiftool could not be run
+	 */
+	public static void readImageMetadata(List<ImageEntry> imageEntries, Consumer<ImageEntry> onImageRead) throws IOException
+	{
+		// Map each file back to its image entry
+		Map<File, ImageEntry> localEntries = imageEntries.stream().collect(Collectors.toMap(ImageEntry::getFile, imageEntry -> imageEntry, (first, second) -> first, LinkedHashMap::new));
+		// The altitude lookup of each image whose metadata has been read
+		List<CompletableFuture<Void>> altitudeUpdates = Collections.synchronizedList(new ArrayList<>());
+		List<File> unreadFiles = CalliopeData.getInstance().getMetadataManager().readImageMetadata(new ArrayList<>(localEntries.keySet()), (file, imageMetadataMap) ->
+		{
+			ImageEntry imageEntry = localEntries.get(file);
+			try
+			{
+				// Read the metadata into each image as it streams back
+				imageEntry.readFileMetadataFromMap(imageMetadataMap);
+			}
+			catch (Exception e)
+			{
+				CalliopeData.getInstance().getErrorDisplay().notify("Error reading image metadata for file " + file.getName() + "!\n" + ExceptionUtils.getStackTrace(e));
+			}
+			// Then look up its altitude without holding up the metadata reader
+			altitudeUpdates.add(CalliopeData.getInstance().getElevationData().updateAltitude(imageEntry).whenComplete((ignored, exception) -> onImageRead.accept(imageEntry)));
+		});
+		// Exiftool printed nothing for these files, reading them one at a time reports why
+		for (File unreadFile : unreadFiles)
+		{
+			ImageEntry imageEntry = localEntries.get(unreadFile);
+			imageEntry.readFileMetadataFromImage();
+			onImageRead.accept(imageEntry);
+		}
+		// Wait for the remaining altitudes to arrive
+		CompletableFuture.allOf(altitudeUpdates.toArray(new CompletableFuture[0])).exceptionally(ignored -> null).join();
+	}
+
+	/**
+	 * Updates the progress of initializing images every 20 images
+	 *
+	 * @param imagesInitialized The number of images initialized so far
+	 * @param imageCount The total number of images
+	 * @param progressProperty The property to update
+	 */
+	private static void updateInitProgress(Integer imagesInitialized, Integer imageCount, DoubleProperty progressProperty)
+	{
+		// Images are initialized by several exiftool readers at once, so only one may update progress at a time
+		if (imagesInitialized % 20 == 0)
+		{
+			synchronized (progressProperty)
+			{
+				progressProperty.setValue(Math.max(progressProperty.getValue(), imagesInitialized.doubleValue() / imageCount.doubleValue()));
+			}
 		}
 	}
 
@@ -159,64 +252,108 @@ public class DirectoryManager
 	}
 
 	/**
-	 * Given an image directory, this will create a TAR file out of the directory
+	 * Splits a list of images into groups of roughly the same number of bytes, each of which becomes one TAR file. The
+	 * number of groups is picked so that no group is much bigger than the target size, and images are never reordered
+	 * so each group is a contiguous view of the list. An image bigger than the target size gets a group to itself
 	 *
-	 * @param directory The image directory to TAR
-	 * @return The TAR file
+	 * @param imageEntries The images to TAR
+	 * @param targetBytesPerTar The number of bytes we'd like in each TAR
+	 * @return A list of images to put into each TAR file
 	 */
-	public static File[] directoryToTars(ImageDirectory directory, Integer maxImagesPerTar)
+	public static List<List<ImageEntry>> partitionIntoTars(List<ImageEntry> imageEntries, Long targetBytesPerTar)
 	{
-		maxImagesPerTar = maxImagesPerTar - 1;
-		try
-		{
-			// List of images to be uploaded
-			List<ImageEntry> imageEntries = directory.flattened().filter(imageContainer -> imageContainer instanceof ImageEntry).map(imageContainer -> (ImageEntry) imageContainer).collect(Collectors.toList());
+		List<List<ImageEntry>> tarParts = new ArrayList<>();
+		if (imageEntries.isEmpty())
+			return tarParts;
 
-			// Take the number of images / maximum number of images per tar to get the number of tar files we need
-			Integer numberOfTars = (int) Math.ceil((double) imageEntries.size() / (double) maxImagesPerTar);
-			Integer imagesPerTar = (int) Math.ceil((double) imageEntries.size() / (double) numberOfTars);
-			// Create an array of tars
-			File[] tars = new File[numberOfTars];
+		// Work out how big each image will be inside of the TAR, and how big all of them will be together
+		long[] entrySizes = new long[imageEntries.size()];
+		long totalSize = 0;
+		for (Integer i = 0; i < imageEntries.size(); i++)
+		{
+			entrySizes[i] = estimateTarEntrySize(imageEntries.get(i));
+			totalSize = totalSize + entrySizes[i];
+		}
 
-			// Get the path to the top level directory
-			String topDirectory = directory.getFile().getParentFile().getAbsolutePath();
+		// Take the total size / target size to get the number of tar files we need, and then split the bytes evenly between them
+		Integer numberOfTars = (int) Math.max(1, Math.ceil((double) totalSize / (double) Math.max(1L, targetBytesPerTar)));
+		Double bytesPerTar = (double) totalSize / numberOfTars;
 
-			for (Integer tarIndex = 0; tarIndex < numberOfTars; tarIndex++)
+		// Each image goes into whichever TAR its middle byte falls into
+		Integer tarStart = 0;
+		Integer currentTar = 0;
+		long bytesBefore = 0;
+		for (Integer i = 0; i < imageEntries.size(); i++)
+		{
+			Integer imageTar = (int) Math.min(numberOfTars - 1, Math.floor((bytesBefore + entrySizes[i] / 2.0) / bytesPerTar));
+			if (!imageTar.equals(currentTar) && i > tarStart)
 			{
-				// Create a temporarily TAR file to write to
-				File tempTar = CalliopeData.getInstance().getTempDirectoryManager().createTempFile("tarToUpload.tar");
-				// Create a TAR output stream to write to
-				TarArchiveOutputStream tarOut = new TarArchiveOutputStream(new FileOutputStream(tempTar));
-
-				for (Integer imageIndex = tarIndex * imagesPerTar; imageIndex < (tarIndex + 1) * imagesPerTar && imageIndex < imageEntries.size(); imageIndex++)
-				{
-					ImageEntry imageEntry = imageEntries.get(imageIndex);
-					// Create an archive entry for the image
-					String tarPath = StringUtils.substringAfter(imageEntry.getFile().getAbsolutePath(), topDirectory).replace('\\', '/');
-					ArchiveEntry archiveEntry = tarOut.createArchiveEntry(imageEntry.getFile(), tarPath);
-					// Put the archive entry into the TAR file
-					tarOut.putArchiveEntry(archiveEntry);
-					// Write all the bytes in the file into the TAR file
-					tarOut.write(Files.readAllBytes(imageEntry.getFile().toPath()));
-					// Finish writing the TAR entry
-					tarOut.closeArchiveEntry();
-				}
+				tarParts.add(imageEntries.subList(tarStart, i));
+				tarStart = i;
+			}
+			currentTar = imageTar;
+			bytesBefore = bytesBefore + entrySizes[i];
+		}
+		tarParts.add(imageEntries.subList(tarStart, imageEntries.size()));
+		return tarParts;
+	}
 
-				// Flush the file and close it. We delete the TAR after the program closes
-				tarOut.flush();
-				tarOut.close();
+	/**
+	 * Estimates the number of bytes an image will take up inside of a TAR file, which is the file rounded up to a whole
+	 * number of TAR blocks plus a header block
+	 *
+	 * @param imageEntry The image to put into a TAR
+	 * @return The number of bytes the image will take up in the TAR
+	 */
+	public static Long estimateTarEntrySize(ImageEntry imageEntry)
+	{
+		Long fileBlocks = (imageEntry.getFile().length() + TarConstants.DEFAULT_RCDSIZE - 1) / TarConstants.DEFAULT_RCDSIZE;
+		return (fileBlocks + 1) * TarConstants.DEFAULT_RCDSIZE;
+	}
 
-				// Store the tar path
-				tars[tarIndex] = tempTar;
-			}
+	/**
+	 * Estimates the size of a TAR file holding a set of images, which is the size of every entry plus the end of archive
+	 * marker, rounded up to a whole TAR record
+	 *
+	 * @param imageEntries The images to put into a TAR
+	 * @return The number of bytes the TAR will take up
+	 */
+	public static Long estimateTarSize(List<ImageEntry> imageEntries)
+	{
+		Long tarSize = imageEntries.stream().mapToLong(DirectoryManager::estimateTarEntrySize).sum() + 2L * TarConstants.DEFAULT_RCDSIZE;
+		return (tarSize + TarConstants.DEFAULT_BLKSIZE - 1) / TarConstants.DEFAULT_BLKSIZE * TarConstants.DEFAULT_BLKSIZE;
+	}
 
-			return tars;
-		}
-		catch (IOException e)
+	/**
+	 * Writes a set of images from a directory as a TAR into an output stream. Images are streamed into the TAR through a
+	 * small buffer so memory use doesn't depend on the size of the images. The output stream is left open once the TAR
+	 * has been written
+	 *
+	 * @param directory The image directory the images are in, paths inside the TAR start at this directory
+	 * @param imageEntries The images to put into the TAR
+	 * @param outputStream The stream to write the TAR into
+	 * @throws IOException If an image could not be read or the TAR could not be written
+	 */
+	public static void writeTar(ImageDirectory directory, List<ImageEntry> imageEntries, OutputStream outputStream) throws IOException
+	{
+		// Get the path to the top level directory
+		String topDirectory = directory.getFile().getParentFile().getAbsolutePath();
+		// Create a TAR output stream to write to
+		TarArchiveOutputStream tarOut = new TarArchiveOutputStream(outputStream);
+		for (ImageEntry imageEntry : imageEntries)
 		{
-			e.printStackTrace();
+			// Create an archive entry for the image
+			String tarPath = StringUtils.substringAfter(imageEntry.getFile().getAbsolutePath(), topDirectory).replace('\\', '/');
+			ArchiveEntry archiveEntry = tarOut.createArchiveEntry(imageEntry.getFile(), tarPath);
+			// Put the archive entry into the TAR file
+			tarOut.putArchiveEntry(archiveEntry);
+			// Stream the bytes in the file into the TAR file
+			Files.copy(imageEntry.getFile().toPath(), tarOut);
+			// Finish writing the TAR entry
+			tarOut.closeArchiveEntry();
 		}
-		// If something goes wrong, return a blank array
-		return new File[0];
+		// Write the end of the archive without closing the stream underneath
+		tarOut.finish();
+		tarOut.flush();
 	}
 }
@@ -75,7 +75,12 @@ public class CyVerseDSDataSource implements IDataSource
 							// Update progress based on init progress
 							this.updateMessage("Reading image metadata...");
 							DoubleProperty progressProperty = new SimpleDoubleProperty();
-							progressProperty.addListener((observable, oldValue, newValue) -> this.updateProgress(newValue.doubleValue(), 1.0));
+							progressProperty.addListener((observable, oldValue, newValue) ->
+							{
+								this.updateProgress(newValue.doubleValue(), 1.0);
+								// Show how busy the exiftool pool is while it reads
+								this.updateMessage("Reading image metadata (" + CalliopeData.getInstance().getMetadataManager().getReaderStatus() + ")...");
+							});
 							DirectoryManager.initImages(imageDirectory, progressProperty);
 							// Go over each image entry and queue its download
 							imageDirectory.flattened().filter(imageContainer -> imageContainer instanceof CyVerseDSImageEntry).forEach(imageContainer ->
@@ -1,7 +1,6 @@
 package model.dataSources.cyverseDataStore;
 
 import com.thebuzzmedia.exiftool.Tag;
-import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.ReadOnlyBooleanWrapper;
 import javafx.scene.image.Image;
@@ -39,7 +38,7 @@ public class CyVerseDSImageEntry extends ImageEntry
 	{
 		super(file);
 		// The metadata is editable if it has been retrieved
-		this.metadataEditable.bind(this.wasMetadataRetrieved);
+		this.metadataEditableProperty().bind(this.wasMetadataRetrieved);
 		this.treeIconProperty().setValue(NO_DOWNLOAD_CLOUD_IMAGE_ICON);
 	}
 
@@ -54,6 +53,15 @@ public class CyVerseDSImageEntry extends ImageEntry
 		return CalliopeData.getInstance().getCyConnectionManager().readIRODSImage(this.getFile().getAbsolutePath());
 	}
 
+	/**
+	 * @return False, the file lives in the CyVerse datastore and has to be downloaded before its metadata can be read
+	 */
+	@Override
+	public boolean isFileLocal()
+	{
+		return false;
+	}
+
 	/**
 	 * Reading this file's metadata just causes it to pull the metadata from the cloud
 	 */
@@ -83,7 +91,7 @@ public class CyVerseDSImageEntry extends ImageEntry
 			{
 				// Convert the iRODS file to a local image file
 				File localFile = CalliopeData.getInstance().getCyConnectionManager().remoteToLocalImageFile((IRODSFile) CyVerseDSImageEntry.this.getFile());
-				// Read this image's metadata
+				// Read this image's metadata on whichever exiftool process in the pool is free, so many images download and read at once
 				Map<Tag, String> metadata = CalliopeData.getInstance().getMetadataManager().readImageMetadata(localFile);
 				// Delete our local file now that we've read the metadata
 				localFile.delete();
@@ -96,6 +104,8 @@ public class CyVerseDSImageEntry extends ImageEntry
 		{
 			// Read the metadata map returned from the task and store it
 			this.readFileMetadataFromMap(metadataPullTask.getValue());
+			// Look up the altitude in the background so the UI thread doesn't wait on the elevation service
+			CalliopeData.getInstance().getElevationData().updateAltitude(this);
 			// Update our flags
 			this.wasMetadataRetrieved.setValue(true);
 			metadataRetrievalInProgress = false;
@@ -114,12 +124,7 @@ public class CyVerseDSImageEntry extends ImageEntry
 
 	public boolean isMetadataEditable()
 	{
-		return metadataEditable.getValue();
-	}
-
-	public BooleanProperty metadataEditableProperty()
-	{
-		return this.metadataEditable;
+		return this.metadataEditableProperty().getValue();
 	}
 
 	public ReadOnlyBooleanProperty metadataWasRetrieved()
@@ -10,9 +10,8 @@ import model.dataSources.IDataSource;
 import model.image.ImageDirectory;
 import model.image.ImageEntry;
 import model.threading.ErrorTask;
-import org.irods.jargon.core.transfer.TransferStatus;
-import org.irods.jargon.core.transfer.TransferStatusCallbackListener;
 
+import java.util.List;
 import java.util.stream.Collectors;
 
 /**
@@ -54,9 +53,10 @@ public abstract class LocalPCDataSource implements IDataSource
 	{
 		// Make sure we've got a valid directory
 		boolean validDirectory = true;
-		// Each image must have a location tagged
-		for (ImageEntry imageEntry : directoryToIndex.flattened().filter(imageContainer -> imageContainer instanceof ImageEntry).map(imageContainer -> (ImageEntry) imageContainer).collect(Collectors.toList()))
-			if (imageEntry.getPositionTaken() == null)
+		List<ImageEntry> imageEntries = directoryToIndex.flattened().filter(imageContainer -> imageContainer instanceof ImageEntry).map(imageContainer -> (ImageEntry) imageContainer).collect(Collectors.toList());
+		// Each image must have a location tagged, images still having their metadata read are checked once they're done
+		for (ImageEntry imageEntry : imageEntries)
+			if (imageEntry.getPositionTaken() == null && !CalliopeData.getInstance().getMetadataLoader().isPending(imageEntry))
 			{
 				validDirectory = false;
 				break;
@@ -71,37 +71,36 @@ public abstract class LocalPCDataSource implements IDataSource
 			Task<Void> uploadTask = new ErrorTask<Void>()
 			{
 				@Override
-				protected Void call()
+				protected Void call() throws InterruptedException
 				{
 					// Update the progress
 					this.updateProgress(0, 1);
 
+					// Only the images in this directory need their metadata before we can upload
+					this.updateMessage("Waiting for image metadata...");
+					CalliopeData.getInstance().getMetadataLoader().waitForMetadata(imageEntries);
+					if (imageEntries.stream().anyMatch(imageEntry -> imageEntry.getPositionTaken() == null))
+					{
+						CalliopeData.getInstance().getErrorDisplay().notify("An image in the directory (" + directoryToIndex.getFile().getName() + ") you selected does not have a location. Please ensure all images are tagged with a location!");
+						this.cancel();
+						return null;
+					}
+
 					// Create a string property used as a callback
 					StringProperty messageCallback = new SimpleStringProperty("");
 					this.updateMessage("Uploading image directory " + directoryToIndex.getFile().getName() + " to CyVerse.");
 					messageCallback.addListener((observable, oldValue, newValue) -> this.updateMessage(newValue));
-					// Upload images to CyVerse, we give it a transfer status callback so that we can show the progress
-					CalliopeData.getInstance().getCyConnectionManager().uploadAndIndexImages(imageCollection, directoryToIndex, new TransferStatusCallbackListener()
+					// Create a double property used as a progress callback, it receives the progress across every part being uploaded
+					DoubleProperty progressCallback = new SimpleDoubleProperty(0);
+					progressCallback.addListener((observable, oldValue, newValue) ->
 					{
-						@Override
-						public FileStatusCallbackResponse statusCallback(TransferStatus transferStatus)
-						{
-							// Set the upload progress in the directory we get a callback
-							Platform.runLater(() -> directoryToIndex.setUploadProgress(transferStatus.getBytesTransfered() / (double) transferStatus.getTotalSize()));
-							// Set the upload progress whenever we get a callback
-							updateProgress((double) transferStatus.getBytesTransfered(), (double) transferStatus.getTotalSize());
-							return FileStatusCallbackResponse.CONTINUE;
-						}
-						// Ignore this status callback
-						@Override
-						public void overallStatusCallback(TransferStatus transferStatus) {}
-						// Ignore this as well
-						@Override
-						public CallbackResponse transferAsksWhetherToForceOperation(String irodsAbsolutePath, boolean isCollection)
-						{
-							return CallbackResponse.YES_FOR_ALL;
-						}
-					}, messageCallback);
+						// Set the upload progress in the directory we get a callback
+						Platform.runLater(() -> directoryToIndex.setUploadProgress(newValue.doubleValue()));
+						// Set the upload progress whenever we get a callback
+						this.updateProgress(newValue.doubleValue(), 1.0);
+					});
+					// Upload images to CyVerse, we give it a progress callback so that we can show the progress
+					CalliopeData.getInstance().getCyConnectionManager().uploadAndIndexImages(imageCollection, directoryToIndex, progressCallback, messageCallback);
 					return null;
 				}
 			};
@@ -76,10 +76,22 @@ public class LocalPCImageDataSource extends LocalPCDataSource
 					// Remove any directories that are empty and contain no images
 					DirectoryManager.removeEmptyDirectories(directory);
 
+					// If metadata is loaded in the background the directory can be shown right away
+					if (CalliopeData.getInstance().getSettings().getLazyMetadataLoading())
+					{
+						CalliopeData.getInstance().getMetadataLoader().loadLater(directory);
+						return directory;
+					}
+
 					// Update progress based on init progress
 					this.updateMessage("Reading image metadata...");
 					DoubleProperty progressProperty = new SimpleDoubleProperty();
-					progressProperty.addListener((observable, oldValue, newValue) -> this.updateProgress(newValue.doubleValue() * 0.9 + 0.1, 1.0));
+					progressProperty.addListener((observable, oldValue, newValue) ->
+					{
+						this.updateProgress(newValue.doubleValue() * 0.9 + 0.1, 1.0);
+						// Show how busy the exiftool pool is while it reads
+						this.updateMessage("Reading image metadata (" + CalliopeData.getInstance().getMetadataManager().getReaderStatus() + ")...");
+					});
 					DirectoryManager.initImages(directory, progressProperty);
 
 					return directory;
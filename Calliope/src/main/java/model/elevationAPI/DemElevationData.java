@@ -0,0 +1,653 @@
+package model.elevationAPI;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads ground elevations from digital elevation model tiles stored on the local disk, so no connection is needed. SRTM
+ * .hgt tiles and single band uncompressed GeoTIFFs in WGS84 coordinates are supported. Tiles are memory mapped the first
+ * time they're used and the most recently used ones are kept open. Elevations between samples are interpolated
+ * bilinearly
+ */
+public class DemElevationData
+{
+	// The maximum number of tiles kept open at once
+	private static final Integer MAX_OPEN_TILES = 16;
+	// The value SRTM uses for samples with no data
+	private static final Double HGT_NO_DATA = -32768.0;
+
+	// TIFF tags needed to locate the samples of a GeoTIFF
+	private static final Integer TAG_IMAGE_WIDTH = 256;
+	private static final Integer TAG_IMAGE_LENGTH = 257;
+	private static final Integer TAG_BITS_PER_SAMPLE = 258;
+	private static final Integer TAG_COMPRESSION = 259;
+	private static final Integer TAG_STRIP_OFFSETS = 273;
+	private static final Integer TAG_SAMPLES_PER_PIXEL = 277;
+	private static final Integer TAG_ROWS_PER_STRIP = 278;
+	private static final Integer TAG_TILE_WIDTH = 322;
+	private static final Integer TAG_TILE_LENGTH = 323;
+	private static final Integer TAG_TILE_OFFSETS = 324;
+	private static final Integer TAG_SAMPLE_FORMAT = 339;
+	private static final Integer TAG_MODEL_PIXEL_SCALE = 33550;
+	private static final Integer TAG_MODEL_TIEPOINT = 33922;
+	private static final Integer TAG_GEO_KEY_DIRECTORY = 34735;
+	private static final Integer TAG_GDAL_NO_DATA = 42113;
+	// The GeoTIFF key saying if coordinates are projected or latitude and longitude, and the value meaning latitude and longitude
+	private static final Integer GEO_KEY_MODEL_TYPE = 1024;
+	private static final Integer MODEL_TYPE_GEOGRAPHIC = 2;
+	// The GeoTIFF key saying if samples are areas or points, and the value meaning points
+	private static final Integer GEO_KEY_RASTER_TYPE = 1025;
+	private static final Integer RASTER_PIXEL_IS_POINT = 2;
+
+	// SRTM tiles indexed by the latitude and longitude of their south west corner, see hgtKey
+	private final Map<Integer, File> hgtTiles = new HashMap<>();
+	// GeoTIFF tiles, which may cover any area so they're searched in order
+	private final List<DemTile> geoTiffTiles = new ArrayList<>();
+	// Why each tile we couldn't read was skipped, one line per file
+	private final List<String> skippedTiles = new ArrayList<>();
+	// Open tiles indexed by file, in access order so the eldest entry is the least recently used
+	private final Map<File, DemTile> openTiles = new LinkedHashMap<File, DemTile>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<File, DemTile> eldest)
+		{
+			// Dropping the mapping releases it once it's garbage collected
+			if (this.size() > MAX_OPEN_TILES)
+			{
+				eldest.getValue().unmap();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Constructor finds every elevation tile in a directory and its sub-directories. GeoTIFF headers are read right away
+	 * so we know which area each one covers, but no samples are read until they're needed. Tiles we can't read are
+	 * skipped, see {@link #getSkippedTiles()}
+	 *
+	 * @param demDirectory The directory containing the tiles
+	 * @throws IOException If the directory does not exist
+	 */
+	public DemElevationData(File demDirectory) throws IOException
+	{
+		if (!demDirectory.isDirectory())
+			throw new IOException("The offline elevation data directory " + demDirectory.getAbsolutePath() + " does not exist!");
+		this.findTiles(demDirectory);
+	}
+
+	/**
+	 * Recursively adds every tile in a directory to our index
+	 *
+	 * @param directory The directory to search
+	 */
+	private void findTiles(File directory)
+	{
+		File[] files = directory.listFiles();
+		if (files == null)
+			return;
+		for (File file : files)
+		{
+			String fileName = file.getName().toUpperCase(Locale.ROOT);
+			if (file.isDirectory())
+				this.findTiles(file);
+			// SRTM tiles are named after their south west corner, such as N32W111.hgt
+			else if (fileName.endsWith(".HGT") && fileName.matches("^[NS]\\d{2}[EW]\\d{3}.*"))
+			{
+				Integer cornerLatitude = Integer.parseInt(fileName.substring(1, 3)) * (fileName.charAt(0) == 'S' ? -1 : 1);
+				Integer cornerLongitude = Integer.parseInt(fileName.substring(4, 7)) * (fileName.charAt(3) == 'W' ? -1 : 1);
+				try
+				{
+					DemTile.getHgtSize(file);
+					this.hgtTiles.put(DemElevationData.hgtKey(cornerLatitude, cornerLongitude), file);
+				}
+				catch (IOException e)
+				{
+					this.skippedTiles.add(e.getMessage());
+				}
+			}
+			else if (fileName.endsWith(".TIF") || fileName.endsWith(".TIFF"))
+			{
+				// Compressed elevation models and TIFFs that aren't elevation models at all are common, so one bad file
+				// shouldn't stop us using the rest
+				try
+				{
+					this.geoTiffTiles.add(DemTile.fromGeoTiff(file));
+				}
+				catch (IOException e)
+				{
+					this.skippedTiles.add(e.getMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Grabs the height of the ground at the latitude and longitude coordinates
+	 *
+	 * @param latitude The latitude to test
+	 * @param longitude The longitude to test
+	 * @return The height of the ground at the location in meters, or NaN if no tile covers the location
+	 */
+	public Double getGroundElevation(Double latitude, Double longitude)
+	{
+		try
+		{
+			DemTile tile = this.findTile(latitude, longitude);
+			return tile != null ? tile.getElevation(latitude, longitude) : Double.NaN;
+		}
+		catch (IOException e)
+		{
+			// A tile that can't be opened is treated like a missing tile
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Finds the tile covering a location, opening it if it's not already open
+	 *
+	 * @param latitude The latitude of the location
+	 * @param longitude The longitude of the location
+	 * @return The tile covering the location or null if there isn't one
+	 * @throws IOException If the tile could not be opened
+	 */
+	private synchronized DemTile findTile(Double latitude, Double longitude) throws IOException
+	{
+		// SRTM tiles cover one whole degree from their south west corner
+		Integer cornerLatitude = (int) Math.floor(latitude);
+		Integer cornerLongitude = (int) Math.floor(longitude);
+		File hgtFile = this.hgtTiles.get(DemElevationData.hgtKey(cornerLatitude, cornerLongitude));
+		if (hgtFile != null)
+		{
+			DemTile tile = this.openTiles.get(hgtFile);
+			if (tile == null)
+			{
+				try
+				{
+					tile = DemTile.fromHgt(hgtFile, cornerLatitude, cornerLongitude);
+				}
+				catch (IOException e)
+				{
+					// Forget the tile so we don't try to open it again on every lookup
+					this.hgtTiles.remove(DemElevationData.hgtKey(cornerLatitude, cornerLongitude));
+					this.skippedTiles.add(e.getMessage());
+					throw e;
+				}
+				this.openTiles.put(hgtFile, tile);
+			}
+			return tile;
+		}
+
+		for (DemTile geoTiffTile : this.geoTiffTiles)
+		{
+			if (geoTiffTile.covers(latitude, longitude))
+			{
+				// Touch the tile so it counts as recently used, and map it if it isn't mapped
+				this.openTiles.put(geoTiffTile.file, geoTiffTile);
+				geoTiffTile.map();
+				return geoTiffTile;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param cornerLatitude The latitude of a tile's south west corner
+	 * @param cornerLongitude The longitude of a tile's south west corner
+	 * @return A number unique to the tile with that corner
+	 */
+	private static Integer hgtKey(Integer cornerLatitude, Integer cornerLongitude)
+	{
+		return (cornerLatitude + 90) * 360 + (cornerLongitude + 180);
+	}
+
+	/**
+	 * Unmaps every tile, called when the elevation data is no longer used
+	 */
+	public synchronized void close()
+	{
+		this.openTiles.values().forEach(DemTile::unmap);
+		this.openTiles.clear();
+	}
+
+	///
+	/// Getters
+	///
+
+	/**
+	 * @return The number of tiles found
+	 */
+	public Integer getTileCount()
+	{
+		return this.hgtTiles.size() + this.geoTiffTiles.size();
+	}
+
+	/**
+	 * @return Why each tile that could not be read was skipped, one entry per file
+	 */
+	public synchronized List<String> getSkippedTiles()
+	{
+		return new ArrayList<>(this.skippedTiles);
+	}
+
+	/**
+	 * A single grid of elevation samples in a file. Sample (0, 0) is the north west corner and rows go south
+	 */
+	private static class DemTile
+	{
+		// The file containing the samples
+		private final File file;
+		// The number of samples across and down the grid
+		private final Integer width;
+		private final Integer height;
+		// The latitude and longitude of the center of the north west sample
+		private final Double northLatitude;
+		private final Double westLongitude;
+		// The size of a sample in degrees
+		private final Double latitudeStep;
+		private final Double longitudeStep;
+		// The byte order and type of each sample
+		private final ByteOrder byteOrder;
+		private final Integer bytesPerSample;
+		private final Boolean floatingPoint;
+		// The value used for samples with no data, or null if every sample is valid
+		private final Double noData;
+		// The file offset of each block of samples, and the size of a block. Stripped files have blocks as wide as the grid
+		private final long[] blockOffsets;
+		private final Integer blockWidth;
+		private final Integer blockHeight;
+
+		// The file's contents, null until the tile is first used. Tiles are never larger than 2GB so they fit in one mapping
+		private ByteBuffer samples = null;
+
+		/**
+		 * Constructor just stores the fields
+		 */
+		private DemTile(File file, Integer width, Integer height, Double northLatitude, Double westLongitude, Double latitudeStep, Double longitudeStep, ByteOrder byteOrder, Integer bytesPerSample, Boolean floatingPoint, Double noData, long[] blockOffsets, Integer blockWidth, Integer blockHeight)
+		{
+			this.file = file;
+			this.width = width;
+			this.height = height;
+			this.northLatitude = northLatitude;
+			this.westLongitude = westLongitude;
+			this.latitudeStep = latitudeStep;
+			this.longitudeStep = longitudeStep;
+			this.byteOrder = byteOrder;
+			this.bytesPerSample = bytesPerSample;
+			this.floatingPoint = floatingPoint;
+			this.noData = noData;
+			this.blockOffsets = blockOffsets;
+			this.blockWidth = blockWidth;
+			this.blockHeight = blockHeight;
+		}
+
+		/**
+		 * Opens an SRTM tile, which is a square grid of big endian 16 bit samples. Edge samples lie exactly on whole degrees
+		 *
+		 * @param hgtFile The tile file
+		 * @param southLatitude The latitude of the south edge of the tile
+		 * @param westLongitude The longitude of the west edge of the tile
+		 * @return The opened tile
+		 * @throws IOException If the file is not an SRTM tile
+		 */
+		private static DemTile fromHgt(File hgtFile, Integer southLatitude, Integer westLongitude) throws IOException
+		{
+			Integer size = DemTile.getHgtSize(hgtFile);
+			Double step = 1.0 / (size - 1);
+			DemTile tile = new DemTile(hgtFile, size, size, southLatitude + 1.0, westLongitude.doubleValue(), step, step, ByteOrder.BIG_ENDIAN, 2, false, HGT_NO_DATA, new long[] { 0 }, size, size);
+			tile.map();
+			return tile;
+		}
+
+		/**
+		 * Works out the number of samples across an SRTM tile from the size of its file
+		 *
+		 * @param hgtFile The tile file
+		 * @return The number of samples across and down the tile
+		 * @throws IOException If the file is not an SRTM tile
+		 */
+		private static Integer getHgtSize(File hgtFile) throws IOException
+		{
+			// SRTM1 tiles are 3601 samples across and SRTM3 tiles are 1201
+			Integer size = (int) Math.round(Math.sqrt(hgtFile.length() / 2.0));
+			if ((long) size * size * 2 != hgtFile.length() || size < 2)
+				throw new IOException("The file " + hgtFile.getAbsolutePath() + " is not an SRTM tile!");
+			return size;
+		}
+
+		/**
+		 * Reads a GeoTIFF's header. Only single band, uncompressed, integer or floating point files using latitude and
+		 * longitude coordinates that are smaller than 2GB can be read. Only the header is read, the samples are mapped
+		 * when the tile is first used
+		 *
+		 * @param geoTiffFile The GeoTIFF file
+		 * @return The tile, not yet mapped
+		 * @throws IOException If the file is not a GeoTIFF we can read
+		 */
+		private static DemTile fromGeoTiff(File geoTiffFile) throws IOException
+		{
+			try (RandomAccessFile randomAccessFile = new RandomAccessFile(geoTiffFile, "r"); FileChannel channel = randomAccessFile.getChannel())
+			{
+				Long fileSize = channel.size();
+				if (fileSize > Integer.MAX_VALUE)
+					throw new IOException("The GeoTIFF " + geoTiffFile.getAbsolutePath() + " is larger than 2GB which is not supported!");
+
+				// The first two bytes give the byte order, II for little endian and MM for big endian
+				ByteBuffer header = DemTile.read(geoTiffFile, channel, 0L, 8, ByteOrder.BIG_ENDIAN);
+				ByteOrder byteOrder = header.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+				header.order(byteOrder);
+				if (header.getShort(2) != 42)
+					throw new IOException("The file " + geoTiffFile.getAbsolutePath() + " is not a TIFF, BigTIFF files are not supported!");
+
+				// Read every tag of the first image
+				Map<Integer, double[]> numericTags = new HashMap<>();
+				String noDataText = null;
+				Long directoryOffset = header.getInt(4) & 0xFFFFFFFFL;
+				Integer entryCount = DemTile.read(geoTiffFile, channel, directoryOffset, 2, byteOrder).getShort(0) & 0xFFFF;
+				ByteBuffer entries = DemTile.read(geoTiffFile, channel, directoryOffset + 2, entryCount * 12, byteOrder);
+				for (Integer i = 0; i < entryCount; i++)
+				{
+					Integer entryOffset = i * 12;
+					Integer tag = entries.getShort(entryOffset) & 0xFFFF;
+					Integer type = entries.getShort(entryOffset + 2) & 0xFFFF;
+					Long count = entries.getInt(entryOffset + 4) & 0xFFFFFFFFL;
+					Integer typeSize = type == 3 || type == 8 ? 2 : type == 4 || type == 9 || type == 11 ? 4 : type == 12 ? 8 : 1;
+					if (count * typeSize > fileSize)
+						throw new IOException("The GeoTIFF " + geoTiffFile.getAbsolutePath() + " has a tag larger than the file!");
+					// Values that fit in 4 bytes are stored in the entry itself, otherwise the entry points to them
+					ByteBuffer values;
+					if (count * typeSize <= 4)
+					{
+						entries.position(entryOffset + 8);
+						values = entries.slice().order(byteOrder);
+					}
+					else
+						values = DemTile.read(geoTiffFile, channel, entries.getInt(entryOffset + 8) & 0xFFFFFFFFL, (int) (count * typeSize), byteOrder);
+
+					if (tag.equals(TAG_GDAL_NO_DATA))
+					{
+						byte[] text = new byte[count.intValue()];
+						values.get(text);
+						noDataText = new String(text, StandardCharsets.US_ASCII).trim().replace("\0", "");
+					}
+					else
+					{
+						double[] numericValues = new double[count.intValue()];
+						for (Integer j = 0; j < count; j++)
+						{
+							Integer offset = j * typeSize;
+							switch (type)
+							{
+								case 3: numericValues[j] = values.getShort(offset) & 0xFFFF; break;
+								case 4: numericValues[j] = values.getInt(offset) & 0xFFFFFFFFL; break;
+								case 8: numericValues[j] = values.getShort(offset); break;
+								case 9: numericValues[j] = values.getInt(offset); break;
+								case 11: numericValues[j] = values.getFloat(offset); break;
+								case 12: numericValues[j] = values.getDouble(offset); break;
+								default: numericValues[j] = values.get(offset) & 0xFF; break;
+							}
+						}
+						numericTags.put(tag, numericValues);
+					}
+				}
+
+				if (numericTags.getOrDefault(TAG_COMPRESSION, new double[] { 1 })[0] != 1 || numericTags.getOrDefault(TAG_SAMPLES_PER_PIXEL, new double[] { 1 })[0] != 1)
+					throw new IOException("The GeoTIFF " + geoTiffFile.getAbsolutePath() + " must be uncompressed with a single band!");
+				if (!numericTags.containsKey(TAG_MODEL_PIXEL_SCALE) || !numericTags.containsKey(TAG_MODEL_TIEPOINT))
+					throw new IOException("The GeoTIFF " + geoTiffFile.getAbsolutePath() + " does not say where it is!");
+
+				Integer width = (int) numericTags.get(TAG_IMAGE_WIDTH)[0];
+				Integer height = (int) numericTags.get(TAG_IMAGE_LENGTH)[0];
+				Integer bitsPerSample = (int) numericTags.getOrDefault(TAG_BITS_PER_SAMPLE, new double[] { 16 })[0];
+				// Sample format 3 is floating point, everything else we treat as signed integers
+				Boolean floatingPoint = numericTags.getOrDefault(TAG_SAMPLE_FORMAT, new double[] { 1 })[0] == 3;
+				if (bitsPerSample != 16 && bitsPerSample != 32 && !(floatingPoint && bitsPerSample == 64))
+					throw new IOException("The GeoTIFF " + geoTiffFile.getAbsolutePath() + " has " + bitsPerSample + " bit samples which are not supported!");
+
+				// Samples are either in tiles or in strips of whole rows
+				double[] offsets;
+				Integer blockWidth;
+				Integer blockHeight;
+				if (numericTags.containsKey(TAG_TILE_OFFSETS))
+				{
+					offsets = numericTags.get(TAG_TILE_OFFSETS);
+					blockWidth = (int) numericTags.get(TAG_TILE_WIDTH)[0];
+					blockHeight = (int) numericTags.get(TAG_TILE_LENGTH)[0];
+				}
+				else
+				{
+					offsets = numericTags.get(TAG_STRIP_OFFSETS);
+					blockWidth = width;
+					blockHeight = (int) Math.min(height, numericTags.getOrDefault(TAG_ROWS_PER_STRIP, new double[] { height })[0]);
+				}
+				long[] blockOffsets = new long[offsets.length];
+				for (Integer i = 0; i < offsets.length; i++)
+					blockOffsets[i] = (long) offsets[i];
+
+				// Make sure every block of samples is inside the file, so reading a sample later can't go past the end
+				if (width < 1 || height < 1 || blockWidth < 1 || blockHeight < 1)
+					throw new IOException("The GeoTIFF " + geoTiffFile.getAbsolutePath() + " has no samples!");
+				if ((long) width * height * (bitsPerSample / 8) > fileSize)
+					throw new IOException("The GeoTIFF " + geoTiffFile.getAbsolutePath() + " is missing some of its samples!");
+				Integer blocksAcross = (width + blockWidth - 1) / blockWidth;
+				Integer blocksDown = (height + blockHeight - 1) / blockHeight;
+				if (blockOffsets.length < blocksAcross * blocksDown)
+					throw new IOException("The GeoTIFF " + geoTiffFile.getAbsolutePath() + " is missing some of its samples!");
+				for (Integer i = 0; i < blocksAcross * blocksDown; i++)
+				{
+					// Tiles are always full size but the last strip only holds the rows that are left
+					Integer blockRows = numericTags.containsKey(TAG_TILE_OFFSETS) ? blockHeight : Math.min(blockHeight, height - i * blockHeight);
+					if (blockOffsets[i] < 0 || blockOffsets[i] + (long) blockWidth * blockRows * (bitsPerSample / 8) > fileSize)
+						throw new IOException("The GeoTIFF " + geoTiffFile.getAbsolutePath() + " is missing some of its samples!");
+				}
+
+				// Projected tiles such as UTM would never cover a latitude and longitude, so they can't be used
+				double[] geoKeyDirectory = numericTags.get(TAG_GEO_KEY_DIRECTORY);
+				Double modelType = DemTile.getGeoKey(geoKeyDirectory, GEO_KEY_MODEL_TYPE);
+				if (modelType != null && modelType.intValue() != MODEL_TYPE_GEOGRAPHIC)
+					throw new IOException("The GeoTIFF " + geoTiffFile.getAbsolutePath() + " uses projected coordinates, only latitude and longitude tiles are supported!");
+
+				// The tiepoint maps raster position (i, j) to longitude and latitude (x, y)
+				double[] scale = numericTags.get(TAG_MODEL_PIXEL_SCALE);
+				double[] tiepoint = numericTags.get(TAG_MODEL_TIEPOINT);
+				Double westLongitude = tiepoint[3] - tiepoint[0] * scale[0];
+				Double northLatitude = tiepoint[4] + tiepoint[1] * scale[1];
+				// Tiles without a model type are only used if they lie where a latitude and longitude could
+				if (scale[0] <= 0 || scale[1] <= 0 || northLatitude > 91 || northLatitude - height * scale[1] < -91 || westLongitude < -181 || westLongitude + width * scale[0] > 181)
+					throw new IOException("The GeoTIFF " + geoTiffFile.getAbsolutePath() + " does not use latitude and longitude coordinates!");
+				// By default each sample covers an area, so its center is half a sample in from the corner
+				Double rasterType = DemTile.getGeoKey(geoKeyDirectory, GEO_KEY_RASTER_TYPE);
+				if (rasterType == null || rasterType.intValue() != RASTER_PIXEL_IS_POINT)
+				{
+					westLongitude = westLongitude + scale[0] / 2;
+					northLatitude = northLatitude - scale[1] / 2;
+				}
+
+				Double noData = null;
+				if (noDataText != null && !noDataText.isEmpty())
+				{
+					try
+					{
+						noData = Double.parseDouble(noDataText);
+					}
+					catch (NumberFormatException ignored) {}
+				}
+
+				return new DemTile(geoTiffFile, width, height, northLatitude, westLongitude, scale[1], scale[0], byteOrder, bitsPerSample / 8, floatingPoint, noData, blockOffsets, blockWidth, blockHeight);
+			}
+			catch (IndexOutOfBoundsException | NullPointerException e)
+			{
+				throw new IOException("The GeoTIFF " + geoTiffFile.getAbsolutePath() + " is missing required information!", e);
+			}
+		}
+
+		/**
+		 * Reads part of a file into a buffer
+		 *
+		 * @param file The file being read, used for error messages
+		 * @param channel The file to read from
+		 * @param position Where in the file to start reading
+		 * @param length The number of bytes to read
+		 * @param byteOrder The byte order of the returned buffer
+		 * @return A buffer holding exactly the bytes read
+		 * @throws IOException If the bytes are not all inside the file
+		 */
+		private static ByteBuffer read(File file, FileChannel channel, Long position, Integer length, ByteOrder byteOrder) throws IOException
+		{
+			if (position < 0 || position + length > channel.size())
+				throw new IOException("The file " + file.getAbsolutePath() + " ends before its TIFF header says it should!");
+			ByteBuffer buffer = ByteBuffer.allocate(length).order(byteOrder);
+			while (buffer.hasRemaining())
+				if (channel.read(buffer, position + buffer.position()) < 0)
+					throw new IOException("The file " + file.getAbsolutePath() + " ends before its TIFF header says it should!");
+			buffer.flip();
+			return buffer;
+		}
+
+		/**
+		 * Finds the value of a short GeoTIFF key, which is stored in the key directory itself
+		 *
+		 * @param geoKeyDirectory The GeoTIFF key directory, may be null
+		 * @param key The id of the key to find
+		 * @return The key's value, or null if the key isn't in the directory
+		 */
+		private static Double getGeoKey(double[] geoKeyDirectory, Integer key)
+		{
+			if (geoKeyDirectory == null)
+				return null;
+			// The directory is a header of 4 values followed by 4 values per key: id, location, count, and value
+			for (Integer i = 4; i + 3 < geoKeyDirectory.length; i = i + 4)
+				if (geoKeyDirectory[i] == key && geoKeyDirectory[i + 1] == 0)
+					return geoKeyDirectory[i + 3];
+			return null;
+		}
+
+		/**
+		 * Maps the tile's file into memory if it isn't already
+		 *
+		 * @throws IOException If the file could not be mapped
+		 */
+		private synchronized void map() throws IOException
+		{
+			if (this.samples != null)
+				return;
+			try (RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "r"); FileChannel channel = randomAccessFile.getChannel())
+			{
+				if (channel.size() > Integer.MAX_VALUE)
+					throw new IOException("The elevation tile " + this.file.getAbsolutePath() + " is larger than 2GB which is not supported!");
+				MappedByteBuffer mappedFile = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				mappedFile.order(this.byteOrder);
+				this.samples = mappedFile;
+			}
+		}
+
+		/**
+		 * Forgets the tile's mapping, the tile is mapped again the next time it's used
+		 */
+		private synchronized void unmap()
+		{
+			this.samples = null;
+		}
+
+		/**
+		 * @param latitude The latitude to test
+		 * @param longitude The longitude to test
+		 * @return True if this tile's samples cover the location
+		 */
+		private Boolean covers(Double latitude, Double longitude)
+		{
+			Double row = (this.northLatitude - latitude) / this.latitudeStep;
+			Double column = (longitude - this.westLongitude) / this.longitudeStep;
+			return row >= -0.5 && row <= this.height - 0.5 && column >= -0.5 && column <= this.width - 0.5;
+		}
+
+		/**
+		 * Interpolates the elevation at a location from the four samples around it. Samples with no data are left out,
+		 * and locations on the edge of the tile use the edge samples
+		 *
+		 * @param latitude The latitude to test
+		 * @param longitude The longitude to test
+		 * @return The elevation at the location or NaN if all four samples have no data
+		 */
+		private Double getElevation(Double latitude, Double longitude)
+		{
+			ByteBuffer samples = this.samples;
+			// The tile may have been dropped from the open tiles after we found it, so make sure it's still mapped
+			if (samples == null)
+			{
+				try
+				{
+					this.map();
+				}
+				catch (IOException e)
+				{
+					return Double.NaN;
+				}
+				samples = this.samples;
+			}
+
+			double row = Math.max(0, Math.min(this.height - 1, (this.northLatitude - latitude) / this.latitudeStep));
+			double column = Math.max(0, Math.min(this.width - 1, (longitude - this.westLongitude) / this.longitudeStep));
+			int row0 = Math.min((int) row, this.height - 2);
+			int column0 = Math.min((int) column, this.width - 2);
+			double rowFraction = row - row0;
+			double columnFraction = column - column0;
+
+			double weightedSum = 0;
+			double totalWeight = 0;
+			for (int rowOffset = 0; rowOffset < 2; rowOffset++)
+			{
+				for (int columnOffset = 0; columnOffset < 2; columnOffset++)
+				{
+					double sample = this.getSample(samples, Math.max(0, row0 + rowOffset), Math.max(0, column0 + columnOffset));
+					double weight = (rowOffset == 0 ? 1 - rowFraction : rowFraction) * (columnOffset == 0 ? 1 - columnFraction : columnFraction);
+					if (!Double.isNaN(sample))
+					{
+						weightedSum = weightedSum + sample * weight;
+						totalWeight = totalWeight + weight;
+					}
+				}
+			}
+			return totalWeight > 0 ? weightedSum / totalWeight : Double.NaN;
+		}
+
+		/**
+		 * Reads a single sample
+		 *
+		 * @param samples The tile's mapped file
+		 * @param row The row of the sample
+		 * @param column The column of the sample
+		 * @return The sample's value or NaN if it has no data
+		 */
+		private double getSample(ByteBuffer samples, int row, int column)
+		{
+			// Find the block holding the sample and then the sample inside the block. Every block was checked to be inside
+			// the file when the tile was opened, and the file is under 2GB, so the offset fits in an int
+			int blocksAcross = (this.width + this.blockWidth - 1) / this.blockWidth;
+			int block = (row / this.blockHeight) * blocksAcross + column / this.blockWidth;
+			long offset = this.blockOffsets[block] + ((long) (row % this.blockHeight) * this.blockWidth + column % this.blockWidth) * this.bytesPerSample;
+
+			double sample;
+			if (this.floatingPoint)
+				sample = this.bytesPerSample == 8 ? samples.getDouble((int) offset) : samples.getFloat((int) offset);
+			else
+				sample = this.bytesPerSample == 4 ? samples.getInt((int) offset) : samples.getShort((int) offset);
+			// Floating point no data values are usually written with more precision than the samples have
+			if (this.noData != null && (sample == this.noData || (this.floatingPoint && (float) sample == this.noData.floatValue())))
+				return Double.NaN;
+			return sample;
+		}
+	}
+}
@@ -0,0 +1,250 @@
+package model.elevationAPI;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiFunction;
+
+/**
+ * A least recently used cache of ground elevations that is kept on disk between runs. Coordinates are snapped to a grid
+ * of roughly square cells so that neighbouring drone images share a single lookup, and the elevation at the center of
+ * each cell is used for every coordinate inside it. If several threads ask for the same cell at once only one of them
+ * performs the lookup and the rest wait for its result. The cache is loaded the first time it's used and written back
+ * with {@link #save()}
+ */
+public class ElevationCache
+{
+	// Written at the start of the cache file, bump the version whenever the format changes
+	private static final Integer FILE_MAGIC = 0x43414C45;
+	private static final Integer FILE_VERSION = 1;
+	// The length of one degree of latitude in meters
+	private static final Double METERS_PER_DEGREE = 111320.0;
+
+	// The file the cache is stored in
+	private final File cacheFile;
+	// The maximum number of cells to remember
+	private final Integer maxEntries;
+	// The width of a grid cell in meters
+	private Double gridSize;
+
+	// Each cell's ground elevation indexed by cell, in access order so the eldest entry is the least recently used
+	private final Map<Long, Double> entries;
+	// Lookups that are currently running indexed by cell, anyone else asking for the same cell waits on these
+	private final Map<Long, CompletableFuture<Double>> lookupsInProgress = new HashMap<>();
+	// Set once the cache file has been read
+	private Boolean loaded = false;
+	// Set when entries have changed since the cache was last saved
+	private Boolean dirty = false;
+
+	// The number of lookups answered by the cache and the number that had to be looked up
+	private Long hits = 0L;
+	private Long misses = 0L;
+
+	/**
+	 * Constructor just stores the cache settings, the cache file isn't read until the cache is first used
+	 *
+	 * @param cacheFile The file the cache is stored in
+	 * @param maxEntries The maximum number of cells to remember
+	 * @param gridSize The width of a grid cell in meters
+	 */
+	public ElevationCache(File cacheFile, Integer maxEntries, Double gridSize)
+	{
+		this.cacheFile = cacheFile;
+		this.maxEntries = maxEntries;
+		this.gridSize = gridSize;
+		this.entries = new LinkedHashMap<Long, Double>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Double> eldest)
+			{
+				return this.size() > ElevationCache.this.maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Gets the ground elevation of the grid cell containing the coordinates, looking it up if the cell isn't cached
+	 *
+	 * @param latitude The latitude to test
+	 * @param longitude The longitude to test
+	 * @param lookup Looks up the ground elevation at a latitude and longitude, called with the center of the cell
+	 * @return The ground elevation of the cell, whatever the lookup returned if it wasn't a finite number, or -Infinity if
+	 * the lookup returned null. If the lookup throws the exception is passed on, and anyone waiting on the same cell gets
+	 * -Infinity
+	 */
+	public Double getGroundElevation(Double latitude, Double longitude, BiFunction<Double, Double, Double> lookup)
+	{
+		CompletableFuture<Double> elevationLookup;
+		Boolean lookupInProgress;
+		Double cellLatitude;
+		Double cellLongitude;
+		Long cell;
+		synchronized (this)
+		{
+			this.load();
+			// Snap the coordinates to a row of the grid, and then to a column of that row. Columns are widened away from
+			// the equator so cells stay roughly square
+			Double latitudeStep = this.gridSize / METERS_PER_DEGREE;
+			Integer row = (int) Math.round(latitude / latitudeStep);
+			cellLatitude = row * latitudeStep;
+			Double longitudeStep = latitudeStep / Math.max(Math.cos(Math.toRadians(cellLatitude)), 0.01);
+			Integer column = (int) Math.round(longitude / longitudeStep);
+			cellLongitude = column * longitudeStep;
+			cell = ((long) row << 32) | (column & 0xFFFFFFFFL);
+
+			Double elevation = this.entries.get(cell);
+			if (elevation != null)
+			{
+				this.hits++;
+				return elevation;
+			}
+			this.misses++;
+
+			// If someone else is already looking this cell up we wait for them instead of looking it up twice
+			elevationLookup = this.lookupsInProgress.get(cell);
+			lookupInProgress = elevationLookup != null;
+			if (!lookupInProgress)
+			{
+				elevationLookup = new CompletableFuture<>();
+				this.lookupsInProgress.put(cell, elevationLookup);
+			}
+		}
+
+		// Wait outside of the lock, the thread doing the lookup needs it to store the result
+		if (lookupInProgress)
+			return elevationLookup.join();
+
+		// Perform the lookup outside of the lock so lookups of other cells can run at the same time. If it throws the
+		// elevation stays at -Infinity so the threads waiting on this cell still get a usable answer
+		Double elevation = Double.NEGATIVE_INFINITY;
+		try
+		{
+			Double lookedUpElevation = lookup.apply(cellLatitude, cellLongitude);
+			if (lookedUpElevation != null)
+				elevation = lookedUpElevation;
+		}
+		finally
+		{
+			synchronized (this)
+			{
+				// Failed lookups aren't cached so the cell is tried again next time
+				if (!elevation.isInfinite() && !elevation.isNaN())
+				{
+					this.entries.put(cell, elevation);
+					this.dirty = true;
+				}
+				this.lookupsInProgress.remove(cell);
+			}
+			elevationLookup.complete(elevation);
+		}
+		return elevation;
+	}
+
+	/**
+	 * Changes the size of the grid, which throws away every cached cell if the size is different. Sizes that aren't
+	 * positive are ignored
+	 *
+	 * @param gridSize The new width of a grid cell in meters
+	 */
+	public synchronized void setGridSize(Double gridSize)
+	{
+		if (gridSize != null && gridSize > 0 && !this.gridSize.equals(gridSize))
+		{
+			this.load();
+			this.gridSize = gridSize;
+			this.entries.clear();
+			this.dirty = true;
+		}
+	}
+
+	/**
+	 * Writes the cache to disk if it has changed. The cache is written to a temporary file first so that a crash part
+	 * way through never leaves a broken cache behind
+	 *
+	 * @throws IOException If the cache could not be written
+	 */
+	public synchronized void save() throws IOException
+	{
+		if (!this.dirty)
+			return;
+
+		File parentDirectory = this.cacheFile.getAbsoluteFile().getParentFile();
+		if (!parentDirectory.isDirectory() && !parentDirectory.mkdirs())
+			throw new IOException("Could not create the elevation cache directory " + parentDirectory.getAbsolutePath());
+		File tempFile = new File(parentDirectory, this.cacheFile.getName() + ".tmp");
+		// Entries are written least recently used first, so reading them back in order keeps the same eviction order
+		try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile))))
+		{
+			outputStream.writeInt(FILE_MAGIC);
+			outputStream.writeInt(FILE_VERSION);
+			outputStream.writeDouble(this.gridSize);
+			outputStream.writeInt(this.entries.size());
+			for (Map.Entry<Long, Double> entry : this.entries.entrySet())
+			{
+				outputStream.writeLong(entry.getKey());
+				outputStream.writeDouble(entry.getValue());
+			}
+		}
+		Files.move(tempFile.toPath(), this.cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		this.dirty = false;
+	}
+
+	/**
+	 * Reads the cache file the first time the cache is used. A missing, old, or broken cache file, or one made with a
+	 * different grid size just means we start with an empty cache
+	 */
+	private void load()
+	{
+		if (this.loaded)
+			return;
+		this.loaded = true;
+		if (!this.cacheFile.isFile())
+			return;
+
+		try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(this.cacheFile))))
+		{
+			if (inputStream.readInt() != FILE_MAGIC || inputStream.readInt() != FILE_VERSION || inputStream.readDouble() != this.gridSize)
+				return;
+			Integer entryCount = inputStream.readInt();
+			for (Integer i = 0; i < entryCount; i++)
+			{
+				Long cell = inputStream.readLong();
+				this.entries.put(cell, inputStream.readDouble());
+			}
+		}
+		catch (IOException e)
+		{
+			// Anything we managed to read before the error is still valid, so keep it
+		}
+	}
+
+	///
+	/// Getters
+	///
+
+	public synchronized Integer getSize()
+	{
+		return this.entries.size();
+	}
+
+	public synchronized Long getHits()
+	{
+		return this.hits;
+	}
+
+	public synchronized Long getMisses()
+	{
+		return this.misses;
+	}
+}
@@ -1,28 +1,136 @@
 package model.elevationAPI;
 
+import com.google.gson.JsonParseException;
 import model.CalliopeData;
 import model.elevationAPI.jsonPOJOs.ElevationResponse;
+import model.image.ImageEntry;
+import model.image.Position;
+import model.settings.SettingsData;
+import model.util.ErrorDisplay;
 import org.apache.commons.lang.exception.ExceptionUtils;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 public class ElevationData
 {
 	private static final String BASE_URL = "https://nationalmap.gov/epqs/pqs.php?x=-110&y=32&units=Meters&output=json";
+	// The maximum number of grid cells whose elevation is remembered between runs
+	private static final Integer CACHE_SIZE = 500000;
+	// The maximum number of elevation requests sent at once, the same as the number of connections Java keeps alive to a single server
+	private static final Integer MAX_CONCURRENT_REQUESTS = 5;
+
+	// Used to report elevation data that can't be read
+	private final ErrorDisplay errorDisplay;
+	// Elevation tiles on the local disk that are used before asking the elevation service, null if there aren't any
+	private volatile DemElevationData demElevationData = null;
+	// Elevations looked up in this and previous runs, stored in the user's home directory so nearby images don't each need a web request
+	private final ElevationCache elevationCache;
+	// The threads that look up elevations in the background, each one reuses a kept alive connection to the elevation service
+	private final ExecutorService elevationLookups = Executors.newFixedThreadPool(MAX_CONCURRENT_REQUESTS, runnable ->
+	{
+		Thread thread = new Thread(runnable, "elevation-lookup");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Constructor sets up the elevation cache with the grid size from the user's settings and finds any offline elevation
+	 * tiles the user pointed us to
+	 *
+	 * @param errorDisplay Used to report offline elevation data that can't be read
+	 * @param settings The settings containing the grid size and offline elevation directory, we update whenever they change
+	 */
+	public ElevationData(ErrorDisplay errorDisplay, SettingsData settings)
+	{
+		this.errorDisplay = errorDisplay;
+		this.elevationCache = new ElevationCache(new File(System.getProperty("user.home"), ".calliope" + File.separator + "elevationCache.bin"), CACHE_SIZE, settings.getElevationGridSize());
+		settings.elevationGridSizeProperty().addListener((observable, oldValue, newValue) -> this.elevationCache.setGridSize(newValue));
+		this.setOfflineElevationDirectory(settings.getOfflineElevationDirectory());
+		settings.offlineElevationDirectoryProperty().addListener((observable, oldValue, newValue) -> this.setOfflineElevationDirectory(newValue));
+	}
+
+	/**
+	 * Switches to the elevation tiles in a different directory
+	 *
+	 * @param offlineElevationDirectory The directory containing SRTM or GeoTIFF elevation tiles, or an empty string to only use the elevation service
+	 */
+	private void setOfflineElevationDirectory(String offlineElevationDirectory)
+	{
+		DemElevationData previousElevationData = this.demElevationData;
+		this.demElevationData = null;
+		if (previousElevationData != null)
+			previousElevationData.close();
+
+		if (offlineElevationDirectory != null && !offlineElevationDirectory.trim().isEmpty())
+		{
+			try
+			{
+				DemElevationData demElevationData = new DemElevationData(new File(offlineElevationDirectory.trim()));
+				if (!demElevationData.getSkippedTiles().isEmpty())
+					this.errorDisplay.notify("Some offline elevation tiles could not be read and will not be used!\n" + String.join("\n", demElevationData.getSkippedTiles()));
+				this.demElevationData = demElevationData;
+			}
+			catch (IOException e)
+			{
+				this.errorDisplay.notify("Could not read the offline elevation data, the elevation service will be used instead!\n" + ExceptionUtils.getStackTrace(e));
+			}
+		}
+	}
 
 	/**
-	 * Grabs the height of the ground at the latitude and longitude coordinates
+	 * Grabs the height of the ground at the latitude and longitude coordinates. Offline elevation tiles are used if one
+	 * covers the location, otherwise coordinates close to each other share a single cached elevation from the elevation
+	 * service, so only the first image in an area needs a web request
 	 *
 	 * @param latitude The latitude to test
 	 * @param longitude The longitude to test
 	 * @return The height of the ground at the location or -Infinity if there's a problem
 	 */
 	public Double getGroundElevation(Double latitude, Double longitude)
+	{
+		DemElevationData demElevationData = this.demElevationData;
+		if (demElevationData != null)
+		{
+			Double groundElevation = demElevationData.getGroundElevation(latitude, longitude);
+			if (!groundElevation.isNaN())
+				return groundElevation;
+		}
+		return this.elevationCache.getGroundElevation(latitude, longitude, this::retrieveGroundElevation);
+	}
+
+	/**
+	 * Looks up the height of the ground below an image in the background and sets the image's altitude once the elevation
+	 * arrives. Each image gets its own lookup on the small pool of lookup threads, images close together share a single
+	 * cached elevation so only the first one waits on the elevation service. Images without a position are skipped
+	 *
+	 * @param imageEntry The image to compute the altitude of
+	 * @return A future that completes once the image's altitude has been set
+	 */
+	public CompletableFuture<Void> updateAltitude(ImageEntry imageEntry)
+	{
+		Position position = imageEntry.getPositionTaken();
+		if (position == null)
+			return CompletableFuture.completedFuture(null);
+		return CompletableFuture.supplyAsync(() -> this.getGroundElevation(position.getLatitude(), position.getLongitude()), this.elevationLookups).thenAccept(imageEntry::setGroundElevation);
+	}
+
+	/**
+	 * Asks the national map elevation service for the height of the ground at the latitude and longitude coordinates
+	 *
+	 * @param latitude The latitude to test
+	 * @param longitude The longitude to test
+	 * @return The height of the ground at the location or -Infinity if there's a problem
+	 */
+	private Double retrieveGroundElevation(Double latitude, Double longitude)
 	{
 		try
 		{
@@ -30,19 +138,49 @@ public class ElevationData
 			URL elevationAPI = new URL(BASE_URL + "&x=" + longitude.toString() + "&y=" + latitude.toString());
 			// Establish a connection to the elevation site
 			URLConnection elevationAPIConnection = elevationAPI.openConnection();
-			// Read the entire response into a buffered reader
-			BufferedReader jsonReader = new BufferedReader(new InputStreamReader(elevationAPIConnection.getInputStream()));
-			// Join all the lines together into a single JSON string
-			String json = jsonReader.lines().collect(Collectors.joining());
+			// Read the entire response into a buffered reader, closing it afterwards lets Java reuse the connection for the next request
+			String json;
+			try (BufferedReader jsonReader = new BufferedReader(new InputStreamReader(elevationAPIConnection.getInputStream())))
+			{
+				// Join all the lines together into a single JSON string
+				json = jsonReader.lines().collect(Collectors.joining());
+			}
 			// Convert the JSON string into a structured format
 			ElevationResponse elevationResponse = CalliopeData.getInstance().getGson().fromJson(json, ElevationResponse.class);
-			// Make sure we got at least one response and then process it
+			// Make sure we got at least one response and then process it, an error page from the service won't have one
+			if (elevationResponse == null || elevationResponse.getResults() == null || elevationResponse.getResults().getElevationQuery() == null || elevationResponse.getResults().getElevationQuery().getElevation() == null)
+				throw new IOException("The elevation service did not return an elevation");
 			return elevationResponse.getResults().getElevationQuery().getElevation();
 		}
-		catch (IOException e)
+		catch (IOException | JsonParseException e)
 		{
 			CalliopeData.getInstance().getErrorDisplay().notify("Could not retrieve elevation at the coordinates [" + latitude + ", " + longitude + "]!\n" + ExceptionUtils.getStackTrace(e));
 			return Double.NEGATIVE_INFINITY;
 		}
 	}
+
+	/**
+	 * Writes the elevation cache to disk so the next run can use it
+	 *
+	 * @throws IOException If the cache file could not be written
+	 */
+	public void saveElevationCache() throws IOException
+	{
+		this.elevationCache.save();
+	}
+
+	/**
+	 * Called when the program exits to stop any background lookups and save the elevation cache
+	 */
+	public void shutdown()
+	{
+		this.elevationLookups.shutdownNow();
+		if (this.demElevationData != null)
+			this.demElevationData.close();
+		try
+		{
+			this.elevationCache.save();
+		}
+		catch (IOException ignored) {}
+	}
 }
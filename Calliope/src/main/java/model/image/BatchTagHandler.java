@@ -0,0 +1,128 @@
+package model.image;
+
+import com.thebuzzmedia.exiftool.Tag;
+import com.thebuzzmedia.exiftool.process.OutputHandler;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Parses the output of a single exiftool command that read many files at once. Exiftool prints a '======== path'
+ * header before each file's tags, so each file's tags are handed off as soon as the next header arrives instead of
+ * waiting for the whole batch to finish.
+ */
+class BatchTagHandler implements OutputHandler
+{
+	// Exiftool prints this once the command has finished
+	private static final String READY_LINE = "{ready}";
+	// Exiftool prints this followed by the file's path before each file's tags
+	private static final String FILE_HEADER = "======== ";
+	// Separates a tag's name from its value when using -S
+	private static final String TAG_SEPARATOR = ": ";
+
+	// The tags we asked for, indexed by the name exiftool prints
+	private final Map<String, Tag> tagsByName = new HashMap<>();
+	// The files in the batch, indexed by their normalized path
+	private final Map<String, File> filesByPath = new HashMap<>();
+	// Called with each file and its tags once the file has been read
+	private final BiConsumer<File, Map<Tag, String>> onFileRead;
+	// The files we've received tags for so far
+	private final Set<File> filesRead = new HashSet<>();
+
+	// The file currently being read and the tags read for it so far
+	private File currentFile = null;
+	private Map<Tag, String> currentTags = new HashMap<>();
+
+	/**
+	 * Constructor indexes the tags and files so output lines can be matched up quickly
+	 *
+	 * @param files The files that were passed to exiftool
+	 * @param tags The tags that were requested
+	 * @param onFileRead Called with each file and its tags once the file has been read
+	 */
+	BatchTagHandler(List<File> files, Collection<Tag> tags, BiConsumer<File, Map<Tag, String>> onFileRead)
+	{
+		// Later tags with the same name win, just like exiftool's own tag handler
+		for (Tag tag : tags)
+			this.tagsByName.put(tag.getName(), tag);
+		for (File file : files)
+			this.filesByPath.put(normalizePath(file.getAbsolutePath()), file);
+		// Exiftool doesn't print a header when only one file is read
+		if (files.size() == 1)
+			this.currentFile = files.get(0);
+		this.onFileRead = onFileRead;
+	}
+
+	/**
+	 * Reads one line of exiftool output
+	 *
+	 * @param line The line to read
+	 * @return False once the command has finished, true otherwise
+	 */
+	@Override
+	public boolean readLine(String line)
+	{
+		if (line == null || line.equals(READY_LINE))
+		{
+			this.finishCurrentFile();
+			return false;
+		}
+
+		// A new file is starting, hand off the previous one
+		if (line.startsWith(FILE_HEADER))
+		{
+			this.finishCurrentFile();
+			this.currentFile = this.filesByPath.get(normalizePath(line.substring(FILE_HEADER.length())));
+			return true;
+		}
+
+		// Lines that aren't a tag we asked for (such as the '2 image files read' summary) are ignored
+		int separator = line.indexOf(TAG_SEPARATOR);
+		if (this.currentFile != null && separator > 0)
+		{
+			Tag tag = this.tagsByName.get(line.substring(0, separator));
+			if (tag != null)
+				this.currentTags.put(tag, line.substring(separator + TAG_SEPARATOR.length()));
+		}
+		return true;
+	}
+
+	/**
+	 * @return The files in the batch that exiftool printed tags for
+	 */
+	Set<File> getFilesRead()
+	{
+		return this.filesRead;
+	}
+
+	/**
+	 * Hands off the file currently being read along with its tags
+	 */
+	private void finishCurrentFile()
+	{
+		if (this.currentFile != null && !this.currentTags.isEmpty())
+		{
+			this.filesRead.add(this.currentFile);
+			this.onFileRead.accept(this.currentFile, this.currentTags);
+		}
+		this.currentFile = null;
+		this.currentTags = new HashMap<>();
+	}
+
+	/**
+	 * Exiftool may print windows paths with forward slashes, so compare every path that way
+	 *
+	 * @param path The path to normalize
+	 * @return The path with forward slashes only
+	 */
+	private static String normalizePath(String path)
+	{
+		return path.replace('\\', '/');
+	}
+}
@@ -0,0 +1,264 @@
+package model.image;
+
+import com.thebuzzmedia.exiftool.ExecutionStrategy;
+import com.thebuzzmedia.exiftool.ExifTool;
+import com.thebuzzmedia.exiftool.ExifToolBuilder;
+import com.thebuzzmedia.exiftool.core.schedulers.NoOpScheduler;
+import com.thebuzzmedia.exiftool.core.strategies.StayOpenStrategy;
+import com.thebuzzmedia.exiftool.process.CommandExecutor;
+import com.thebuzzmedia.exiftool.process.OutputHandler;
+import com.thebuzzmedia.exiftool.process.executor.CommandExecutors;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of stay open exiftool processes. Each process can only run one command at a time, so a caller borrows a
+ * process, runs its command, and hands the process back. Processes are started the first time they're needed, up to
+ * the maximum pool size, so a small import never pays for starting processes it doesn't use.
+ */
+public class ExifToolPool
+{
+	// The path to the exiftool executable
+	private final String exifToolPath;
+	// Used to start each exiftool process
+	private final CommandExecutor commandExecutor = CommandExecutors.newExecutor();
+
+	// Processes that are running but not currently being used
+	private final Deque<ExifToolProcess> idleProcesses = new ArrayDeque<>();
+	// The number of processes that are running, busy or idle
+	private Integer runningProcesses = 0;
+	// The number of processes currently being used
+	private Integer busyProcesses = 0;
+	// The maximum number of processes that may run at once
+	private Integer maxProcesses;
+	// Set once the pool is shut down, processes handed back after this are closed
+	private Boolean closed = false;
+
+	// The number of commands run so far, and the total time processes spent busy running them
+	private final AtomicLong commandsRun = new AtomicLong(0);
+	private final AtomicLong busyNanos = new AtomicLong(0);
+	// The time the pool was created, used to work out how busy the pool has been
+	private final Long createdNanos = System.nanoTime();
+
+	/**
+	 * Constructor just stores the pool settings, no process is started until one is needed
+	 *
+	 * @param exifToolPath The path to the exiftool executable
+	 * @param maxProcesses The maximum number of processes that may run at once
+	 */
+	public ExifToolPool(String exifToolPath, Integer maxProcesses)
+	{
+		this.exifToolPath = exifToolPath;
+		this.maxProcesses = Math.max(1, maxProcesses);
+	}
+
+	/**
+	 * Borrows a process from the pool, runs a command on it, and hands it back. Blocks while every process is busy
+	 *
+	 * @param command The command to run on the process
+	 * @param <T> The type of value the command returns
+	 * @return The value returned by the command
+	 * @throws IOException If the command failed or the thread was interrupted while waiting for a process
+	 */
+	public <T> T run(ProcessCommand<T> command) throws IOException
+	{
+		ExifToolProcess process = this.borrowProcess();
+		Long startTime = System.nanoTime();
+		try
+		{
+			return command.run(process);
+		}
+		finally
+		{
+			this.busyNanos.addAndGet(System.nanoTime() - startTime);
+			this.commandsRun.incrementAndGet();
+			this.returnProcess(process);
+		}
+	}
+
+	/**
+	 * Changes the maximum number of processes. Extra processes are stopped as soon as they're no longer busy
+	 *
+	 * @param maxProcesses The maximum number of processes that may run at once
+	 */
+	public synchronized void setMaxProcesses(Integer maxProcesses)
+	{
+		this.maxProcesses = Math.max(1, maxProcesses);
+		while (this.runningProcesses > this.maxProcesses && !this.idleProcesses.isEmpty())
+			this.stopProcess(this.idleProcesses.pop());
+		// Waiting threads may now be able to start a new process
+		this.notifyAll();
+	}
+
+	/**
+	 * Stops every idle process and makes sure busy processes are stopped once they're handed back
+	 */
+	public synchronized void shutdown()
+	{
+		this.closed = true;
+		while (!this.idleProcesses.isEmpty())
+			this.stopProcess(this.idleProcesses.pop());
+		this.notifyAll();
+	}
+
+	/**
+	 * Takes an idle process, starting a new one if there's room, or waits for one to be handed back
+	 *
+	 * @return The borrowed process
+	 * @throws IOException If the pool is shut down or the thread was interrupted while waiting
+	 */
+	private synchronized ExifToolProcess borrowProcess() throws IOException
+	{
+		while (true)
+		{
+			if (this.closed)
+				throw new IOException("The exiftool pool has been shut down");
+			if (!this.idleProcesses.isEmpty())
+			{
+				this.busyProcesses++;
+				return this.idleProcesses.pop();
+			}
+			if (this.runningProcesses < this.maxProcesses)
+			{
+				this.runningProcesses++;
+				this.busyProcesses++;
+				return new ExifToolProcess();
+			}
+			try
+			{
+				this.wait();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for an exiftool process");
+			}
+		}
+	}
+
+	/**
+	 * Hands a process back to the pool, stopping it if the pool has shrunk or shut down
+	 *
+	 * @param process The process to hand back
+	 */
+	private synchronized void returnProcess(ExifToolProcess process)
+	{
+		this.busyProcesses--;
+		if (this.closed || this.runningProcesses > this.maxProcesses)
+			this.stopProcess(process);
+		else
+			this.idleProcesses.push(process);
+		this.notifyAll();
+	}
+
+	/**
+	 * Stops a process and removes it from the running count
+	 *
+	 * @param process The process to stop
+	 */
+	private void stopProcess(ExifToolProcess process)
+	{
+		this.runningProcesses--;
+		process.close();
+	}
+
+	///
+	/// Getters
+	///
+
+	public synchronized Integer getMaxProcesses()
+	{
+		return this.maxProcesses;
+	}
+
+	public synchronized Integer getRunningProcesses()
+	{
+		return this.runningProcesses;
+	}
+
+	public synchronized Integer getBusyProcesses()
+	{
+		return this.busyProcesses;
+	}
+
+	public Long getCommandsRun()
+	{
+		return this.commandsRun.get();
+	}
+
+	/**
+	 * @return The fraction of the pool's capacity that has been spent running commands since the pool was created
+	 */
+	public synchronized Double getUtilisation()
+	{
+		double capacityNanos = (double) (System.nanoTime() - this.createdNanos) * this.maxProcesses;
+		return capacityNanos <= 0 ? 0.0 : Math.min(1.0, this.busyNanos.get() / capacityNanos);
+	}
+
+	/**
+	 * @return A short human readable description of how busy the pool is
+	 */
+	public String getStatus()
+	{
+		return this.getBusyProcesses() + " of " + this.getMaxProcesses() + " exiftool processes busy, " + this.getCommandsRun() + " commands run, " + Math.round(this.getUtilisation() * 100) + "% utilisation";
+	}
+
+	/**
+	 * A command that runs on a single borrowed process
+	 *
+	 * @param <T> The type of value the command returns
+	 */
+	@FunctionalInterface
+	public interface ProcessCommand<T>
+	{
+		T run(ExifToolProcess process) throws IOException;
+	}
+
+	/**
+	 * A single stay open exiftool process
+	 */
+	public class ExifToolProcess
+	{
+		// The strategy keeps the process open between commands
+		private final ExecutionStrategy stayOpenStrategy = new StayOpenStrategy(new NoOpScheduler());
+		// Used to run single file commands on the process
+		private final ExifTool exifTool = new ExifToolBuilder().withPath(exifToolPath).withExecutor(commandExecutor).withStrategy(this.stayOpenStrategy).build();
+
+		/**
+		 * @return The exiftool object that runs commands on this process
+		 */
+		public ExifTool getExifTool()
+		{
+			return this.exifTool;
+		}
+
+		/**
+		 * Sends raw arguments to the process, used for commands exiftool-lib doesn't support such as reading many files
+		 *
+		 * @param arguments The arguments to send, ending in -execute
+		 * @param outputHandler Reads each line the process prints until it returns false
+		 * @throws IOException If the process could not be written to or read from
+		 */
+		public void execute(List<String> arguments, OutputHandler outputHandler) throws IOException
+		{
+			this.stayOpenStrategy.execute(commandExecutor, exifToolPath, arguments, outputHandler);
+		}
+
+		/**
+		 * Stops the process
+		 */
+		private void close()
+		{
+			try
+			{
+				this.exifTool.close();
+			}
+			catch (Exception ignored) {}
+		}
+	}
+}
@@ -28,22 +28,8 @@ public class ImageDirectory extends ImageContainer
 	// List of sub-files and directories
 	private final ObservableList<ImageContainer> children = FXCollections.observableArrayList(imageContainer ->
 	{
-		if (imageContainer instanceof ImageEntry)
-		{
-			ImageEntry image = (ImageEntry) imageContainer;
-			return new Observable[]
-			{
-				image.dateTakenProperty(),
-				image.fileProperty(),
-				image.positionTakenProperty(),
-				image.treeIconProperty(),
-				image.droneMakerProperty(),
-				image.cameraModelProperty(),
-				image.speedProperty(),
-				image.rotationProperty()
-			};
-		}
-		else if (imageContainer instanceof ImageDirectory)
+		// Images aren't watched, the tree only cares about directories changing and watching every image would create all of its properties
+		if (imageContainer instanceof ImageDirectory)
 		{
 			ImageDirectory directory = (ImageDirectory) imageContainer;
 			return new Observable[]
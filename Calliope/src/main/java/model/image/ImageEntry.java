@@ -2,6 +2,7 @@ package model.image;
 
 import com.thebuzzmedia.exiftool.Tag;
 import com.thebuzzmedia.exiftool.core.StandardTag;
+import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.concurrent.Task;
 import javafx.embed.swing.SwingFXUtils;
@@ -10,7 +11,6 @@ import model.CalliopeData;
 import model.settings.MetadataCustomItem;
 import model.site.Site;
 import model.threading.ErrorTask;
-import model.util.CustomPropertyItem;
 import org.apache.commons.lang.exception.ExceptionUtils;
 
 import javax.imageio.ImageIO;
@@ -19,17 +19,23 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 
 /**
- * A class representing an image file
- * 
+ * A class representing an image file. Imports can hold hundreds of thousands of images, so fields are stored as
+ * primitives and shared strings, and the JavaFX property for a field is only created the first time something asks for
+ * it. Once a property exists it holds the field's value from then on. Background threads fill in the fields while the FX
+ * thread creates properties, so switching between a field and its property is done while holding the entry's lock.
+ * Properties may be bound to the UI, so they are only ever changed on the FX thread and always outside of the lock
+ *
  * @author David Slovikosky
  */
 public class ImageEntry extends ImageContainer
@@ -39,52 +45,70 @@ public class ImageEntry extends ImageContainer
 	// The icon to use for all images at the moment
 	private static final Image DEFAULT_IMAGE_ICON = new Image(ImageEntry.class.getResource("/images/importWindow/imageIcon.png").toString());
 
-	// A property to wrap the currently selected image property. Must not be static!
-	private transient final ObjectProperty<Image> icon = new SimpleObjectProperty<>(DEFAULT_IMAGE_ICON);
-	// The actual file 
-	private final ObjectProperty<File> imageFile = new SimpleObjectProperty<File>();
-	// The date that the image was taken
-	private final ObjectProperty<LocalDateTime> dateTaken = new SimpleObjectProperty<>();
+	// The actual file
+	private final File imageFile;
+	// The date that the image was taken as seconds and nanoseconds since the epoch, only valid if hasDateTaken is set
+	private boolean hasDateTaken = false;
+	private long dateTakenSeconds;
+	private int dateTakenNanos;
 	// The NEON site closest to the image
-	private final ObjectProperty<Site> siteTaken = new SimpleObjectProperty<>(null);
-	// The lat/long/elevation of this image
-	private final ObjectProperty<Position> positionTaken = new SimpleObjectProperty<>(null);
-	// The name of the drone maker company
-	private final StringProperty droneMaker = new SimpleStringProperty(null);
-	// The name of the drone camera model
-	private final StringProperty cameraModel = new SimpleStringProperty(null);
+	private Site siteTaken = null;
+	// The lat/long/elevation of this image, only valid if hasPositionTaken is set
+	private boolean hasPositionTaken = false;
+	private double latitude;
+	private double longitude;
+	private double elevation;
+	// The name of the drone maker company and camera model, interned since nearly every image shares them
+	private String droneMaker = null;
+	private String cameraModel = null;
 	// The speed the drone was traveling when the image was taken
-	private final ObjectProperty<Vector3> speed = new SimpleObjectProperty<>(new Vector3());
+	private double speedX, speedY, speedZ;
 	// The rotation the drone had when the image was taken
-	private final ObjectProperty<Vector3> rotation = new SimpleObjectProperty<>(new Vector3());
+	private double roll, pitch, yaw;
 	// The altitude the image was taken at above the ground
-	private final DoubleProperty altitude = new SimpleDoubleProperty(-1);
-	// The type of the image file
-	private final StringProperty fileType = new SimpleStringProperty(null);
+	private double altitude = -1;
+	// The type of the image file, interned since nearly every image shares it
+	private String fileType = null;
 	// The focal length that the image was taken with
-	private final DoubleProperty focalLength = new SimpleDoubleProperty(-1);
+	private double focalLength = -1;
 	// The width and height of the image
-	private final DoubleProperty width = new SimpleDoubleProperty(-1);
-	private final DoubleProperty height = new SimpleDoubleProperty(-1);
-
-	// The raw metadata entries without any modifications
-	private transient final List<MetadataCustomItem> rawMetadata = new ArrayList<>();
-
-	// If the image entry's metadata is currently ready to be edited
-	protected transient final SimpleBooleanProperty metadataEditable = new SimpleBooleanProperty(true);
+	private double width = -1;
+	private double height = -1;
+
+	// The raw metadata entries without any modifications as alternating names and values, sorted by name
+	private transient String[] rawMetadata = new String[0];
+
+	// Properties wrapping the fields above, each one is null until something asks for it
+	private transient ObjectProperty<Image> icon;
+	private transient ObjectProperty<File> imageFileProperty;
+	private transient ObjectProperty<LocalDateTime> dateTakenProperty;
+	private transient ObjectProperty<Site> siteTakenProperty;
+	private transient ObjectProperty<Position> positionTakenProperty;
+	private transient StringProperty droneMakerProperty;
+	private transient StringProperty cameraModelProperty;
+	private transient ObjectProperty<Vector3> speedProperty;
+	private transient ObjectProperty<Vector3> rotationProperty;
+	private transient DoubleProperty altitudeProperty;
+	private transient StringProperty fileTypeProperty;
+	private transient DoubleProperty focalLengthProperty;
+	private transient DoubleProperty widthProperty;
+	private transient DoubleProperty heightProperty;
+
+	// If the image entry's metadata is currently ready to be edited, null until something asks for it
+	protected transient BooleanProperty metadataEditable;
 
 	// Flag that tells us if we've pulled the icon or not
-	private transient final AtomicBoolean gotIcon = new AtomicBoolean(false);
+	private transient boolean gotIcon = false;
 
 	/**
 	 * Create a new image entry with an image file
-	 * 
+	 *
 	 * @param file
 	 *            The file (must be an image file)
 	 */
 	public ImageEntry(File file)
 	{
-		this.imageFile.setValue(file);
+		this.imageFile = file;
 	}
 
 	/**
@@ -97,6 +121,8 @@ public class ImageEntry extends ImageContainer
 			// Read the metadata off of the image
 			Map<Tag, String> imageMetadataMap = CalliopeData.getInstance().getMetadataManager().readImageMetadata(this.getFile());
 			this.readFileMetadataFromMap(imageMetadataMap);
+			// Then look up the ground below the image in the background to compute its altitude
+			CalliopeData.getInstance().getElevationData().updateAltitude(this);
 		}
 		catch (Exception e)
 		{
@@ -106,54 +132,79 @@ public class ImageEntry extends ImageContainer
 	}
 
 	/**
-	 * Given a map of Tag -> String metadata, this method stores the given metadata into the image
+	 * @return True if this image's file is on the local disk so its metadata can be read directly, false otherwise
+	 */
+	public boolean isFileLocal()
+	{
+		return true;
+	}
+
+	/**
+	 * Given a map of Tag -> String metadata, this method stores the given metadata into the image. The altitude depends on
+	 * the ground elevation which is looked up separately, see {@link #setGroundElevation(Double)}
 	 *
 	 * @param imageMetadataMap A mapping of tag -> string with the image's metadata
 	 */
-	protected void readFileMetadataFromMap(Map<Tag, String> imageMetadataMap)
+	public void readFileMetadataFromMap(Map<Tag, String> imageMetadataMap)
 	{
 		// Constant meaning that the metadata attribute was not given in the metadata
 		final String UNSPECIFIED = "Unspecified";
-		// Clear the list of raw metadata
-		this.rawMetadata.clear();
-		// For each metadata tag, add an item to the list
-		for (Map.Entry<Tag, String> entry : imageMetadataMap.entrySet())
-			this.rawMetadata.add(new MetadataCustomItem(entry.getKey().getName(), entry.getValue()));
-		// Sort the raw metadata by name for convenience
-		this.rawMetadata.sort(Comparator.comparing(CustomPropertyItem::getName));
+		// Sort the raw metadata by name for convenience, it only becomes a list of items when it's displayed
+		List<Map.Entry<Tag, String>> sortedMetadata = new ArrayList<>(imageMetadataMap.entrySet());
+		sortedMetadata.sort(Comparator.comparing(entry -> entry.getKey().getName()));
+		String[] rawMetadata = new String[sortedMetadata.size() * 2];
+		for (Integer i = 0; i < sortedMetadata.size(); i++)
+		{
+			// Every image has the same tag names so they're shared
+			rawMetadata[i * 2] = sortedMetadata.get(i).getKey().getName().intern();
+			rawMetadata[i * 2 + 1] = sortedMetadata.get(i).getValue();
+		}
+		synchronized (this)
+		{
+			this.rawMetadata = rawMetadata;
+		}
 
 		// Now we parse the raw metadata into something useful to index
 
 		// Starting with date taken, convert the raw date taken as a string into an object
-		this.dateTaken.setValue(LocalDateTime.parse(imageMetadataMap.getOrDefault(StandardTag.DATE_TIME_ORIGINAL, LocalDateTime.now().format(DATE_FORMAT_FOR_DISK)), DATE_FORMAT_FOR_DISK));
-		// Next convert the lat/long/altitude into a location object
-		this.positionTaken.setValue(new Position(
-				Double.parseDouble(imageMetadataMap.getOrDefault(StandardTag.GPS_LATITUDE, "0")),
-				Double.parseDouble(imageMetadataMap.getOrDefault(StandardTag.GPS_LONGITUDE, "0")),
-				Double.parseDouble(imageMetadataMap.getOrDefault(StandardTag.GPS_ALTITUDE, "0"))));
+		this.setDateTaken(LocalDateTime.parse(imageMetadataMap.getOrDefault(StandardTag.DATE_TIME_ORIGINAL, LocalDateTime.now().format(DATE_FORMAT_FOR_DISK)), DATE_FORMAT_FOR_DISK));
+		// Next convert the lat/long/altitude into a location
+		double latitude = Double.parseDouble(imageMetadataMap.getOrDefault(StandardTag.GPS_LATITUDE, "0"));
+		double longitude = Double.parseDouble(imageMetadataMap.getOrDefault(StandardTag.GPS_LONGITUDE, "0"));
+		double elevation = Double.parseDouble(imageMetadataMap.getOrDefault(StandardTag.GPS_ALTITUDE, "0"));
+		this.setPositionTaken(latitude, longitude, elevation);
 		// Then store the maker and model fields separately
-		this.droneMaker.setValue(imageMetadataMap.getOrDefault(StandardTag.MAKE, UNSPECIFIED));
-		this.cameraModel.setValue(imageMetadataMap.getOrDefault(MetadataManager.CustomTags.CAMERA_MODEL_NAME, UNSPECIFIED));
-		// Speed can be stored as a 3D vector, so convert 3 doubles to a vector
-		this.speed.setValue(new Vector3(
+		this.setDroneMaker(imageMetadataMap.getOrDefault(StandardTag.MAKE, UNSPECIFIED));
+		this.setCameraModel(imageMetadataMap.getOrDefault(MetadataManager.CustomTags.CAMERA_MODEL_NAME, UNSPECIFIED));
+		// Speed is a 3D vector, so store 3 doubles
+		this.setSpeed(
 				Double.parseDouble(imageMetadataMap.getOrDefault(MetadataManager.CustomTags.SPEED_X, "0")),
 				Double.parseDouble(imageMetadataMap.getOrDefault(MetadataManager.CustomTags.SPEED_Y, "0")),
-				Double.parseDouble(imageMetadataMap.getOrDefault(MetadataManager.CustomTags.SPEED_Z, "0"))));
-		// Rotation can be stored as a 3D vector, so convert 3 doubles to a vector
-		this.rotation.setValue(new Vector3(
+				Double.parseDouble(imageMetadataMap.getOrDefault(MetadataManager.CustomTags.SPEED_Z, "0")));
+		// Rotation is a 3D vector, so store 3 doubles
+		this.setRotation(
 				Double.parseDouble(imageMetadataMap.getOrDefault(MetadataManager.CustomTags.ROLL, "0")),
 				Double.parseDouble(imageMetadataMap.getOrDefault(MetadataManager.CustomTags.PITCH, "0")),
-				Double.parseDouble(imageMetadataMap.getOrDefault(MetadataManager.CustomTags.YAW, "0"))));
+				Double.parseDouble(imageMetadataMap.getOrDefault(MetadataManager.CustomTags.YAW, "0")));
 
-		// Grab the position this image was taken at
-		Position position = this.positionTaken.getValue();
-		// Set the altitude to the position's elevation - the ground elevation position
-		this.altitude.setValue(position.getElevation() - CalliopeData.getInstance().getElevationData().getGroundElevation(position.getLatitude(), position.getLongitude()));
 		// Store the file type, focal length, width, and height
-		this.fileType.setValue(imageMetadataMap.getOrDefault(StandardTag.FILE_TYPE, UNSPECIFIED));
-		this.focalLength.setValue(Double.parseDouble(imageMetadataMap.getOrDefault(StandardTag.FOCAL_LENGTH, "0")));
-		this.width.setValue(Double.parseDouble(imageMetadataMap.getOrDefault(StandardTag.IMAGE_WIDTH, "0")));
-		this.height.setValue(Double.parseDouble(imageMetadataMap.getOrDefault(StandardTag.IMAGE_HEIGHT, "0")));
+		this.setFileType(imageMetadataMap.getOrDefault(StandardTag.FILE_TYPE, UNSPECIFIED));
+		this.setFocalLength(Double.parseDouble(imageMetadataMap.getOrDefault(StandardTag.FOCAL_LENGTH, "0")));
+		this.setWidth(Double.parseDouble(imageMetadataMap.getOrDefault(StandardTag.IMAGE_WIDTH, "0")));
+		this.setHeight(Double.parseDouble(imageMetadataMap.getOrDefault(StandardTag.IMAGE_HEIGHT, "0")));
+	}
+
+	/**
+	 * Sets the altitude to the position's elevation - the ground elevation at the position. If the ground elevation
+	 * couldn't be found the altitude is left alone
+	 *
+	 * @param groundElevation The elevation of the ground where the image was taken, null, infinite or NaN if it couldn't be found
+	 */
+	public void setGroundElevation(Double groundElevation)
+	{
+		Position position = this.getPositionTaken();
+		if (position != null && groundElevation != null && !groundElevation.isInfinite() && !groundElevation.isNaN())
+			this.setAltitude(position.getElevation() - groundElevation);
 	}
 
 	/**
@@ -197,10 +248,10 @@ public class ImageEntry extends ImageContainer
 	 */
 	public void buildAndStoreIcon()
 	{
-		if (this.gotIcon.get())
+		if (this.gotIcon)
 			return;
 
-		this.gotIcon.set(true);
+		this.gotIcon = true;
 
 		// Thread this off...
 		Task<Image> iconBuilder = new ErrorTask<Image>()
@@ -235,225 +286,483 @@ public class ImageEntry extends ImageContainer
 			}
 		};
 		// Once this finishes, set the icon
-		iconBuilder.setOnSucceeded(event -> this.icon.setValue(iconBuilder.getValue()));
+		iconBuilder.setOnSucceeded(event -> this.treeIconProperty().setValue(iconBuilder.getValue()));
 		// Execute the
 		CalliopeData.getInstance().getExecutor().getBackgroundExecutor().addTask(iconBuilder);
 	}
 
+	/**
+	 * Stores the position without creating a position object unless the position property already exists
+	 *
+	 * @param latitude The latitude the image was taken at
+	 * @param longitude The longitude the image was taken at
+	 * @param elevation The elevation the image was taken at
+	 */
+	private void setPositionTaken(double latitude, double longitude, double elevation)
+	{
+		ObjectProperty<Position> positionTakenProperty;
+		synchronized (this)
+		{
+			positionTakenProperty = this.positionTakenProperty;
+			if (positionTakenProperty == null)
+			{
+				this.latitude = latitude;
+				this.longitude = longitude;
+				this.elevation = elevation;
+				// Set last so the position is never read half written
+				this.hasPositionTaken = true;
+			}
+		}
+		if (positionTakenProperty != null)
+			ImageEntry.runOnFXThread(() -> positionTakenProperty.setValue(new Position(latitude, longitude, elevation)));
+	}
+
+	/**
+	 * Stores the speed without creating a vector unless the speed property already exists
+	 *
+	 * @param x The speed along the x axis
+	 * @param y The speed along the y axis
+	 * @param z The speed along the z axis
+	 */
+	private void setSpeed(double x, double y, double z)
+	{
+		ObjectProperty<Vector3> speedProperty;
+		synchronized (this)
+		{
+			speedProperty = this.speedProperty;
+			if (speedProperty == null)
+			{
+				this.speedX = x;
+				this.speedY = y;
+				this.speedZ = z;
+			}
+		}
+		if (speedProperty != null)
+			ImageEntry.runOnFXThread(() -> speedProperty.setValue(new Vector3(x, y, z)));
+	}
+
+	/**
+	 * Stores the rotation without creating a vector unless the rotation property already exists
+	 *
+	 * @param roll The roll of the drone
+	 * @param pitch The pitch of the drone
+	 * @param yaw The yaw of the drone
+	 */
+	private void setRotation(double roll, double pitch, double yaw)
+	{
+		ObjectProperty<Vector3> rotationProperty;
+		synchronized (this)
+		{
+			rotationProperty = this.rotationProperty;
+			if (rotationProperty == null)
+			{
+				this.roll = roll;
+				this.pitch = pitch;
+				this.yaw = yaw;
+			}
+		}
+		if (rotationProperty != null)
+			ImageEntry.runOnFXThread(() -> rotationProperty.setValue(new Vector3(roll, pitch, yaw)));
+	}
+
+	/**
+	 * Changes a property on the FX thread since the property may be bound to the UI. Background threads wait for the
+	 * change so anything they read from the entry afterwards sees it. Must not be called while holding the entry's lock
+	 *
+	 * @param propertyUpdate The change to make to the property
+	 */
+	private static void runOnFXThread(Runnable propertyUpdate)
+	{
+		if (Platform.isFxApplicationThread())
+		{
+			propertyUpdate.run();
+			return;
+		}
+
+		FutureTask<Void> fxUpdate = new FutureTask<>(propertyUpdate, null);
+		Platform.runLater(fxUpdate);
+		try
+		{
+			fxUpdate.get();
+		}
+		catch (InterruptedException e)
+		{
+			// The change still happens, we just don't wait for it
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException("Could not update an image property on the FX thread!", e.getCause());
+		}
+	}
+
 	///
 	/// Getters/Setters
 	///
 
 	@Override
-	public ObjectProperty<Image> treeIconProperty()
+	public synchronized ObjectProperty<Image> treeIconProperty()
 	{
+		if (this.icon == null)
+			this.icon = new SimpleObjectProperty<>(DEFAULT_IMAGE_ICON);
 		return this.icon;
 	}
 
 	@Override
-	public File getFile()
+	public synchronized File getFile()
 	{
-		return this.imageFile.getValue();
+		return this.imageFileProperty != null ? this.imageFileProperty.getValue() : this.imageFile;
 	}
 
-	public ObjectProperty<File> fileProperty()
+	public synchronized ObjectProperty<File> fileProperty()
 	{
-		return this.imageFile;
+		if (this.imageFileProperty == null)
+			this.imageFileProperty = new SimpleObjectProperty<>(this.imageFile);
+		return this.imageFileProperty;
 	}
 
 	public void setDateTaken(LocalDateTime date)
 	{
-		this.dateTaken.setValue(date);
+		ObjectProperty<LocalDateTime> dateTakenProperty;
+		synchronized (this)
+		{
+			dateTakenProperty = this.dateTakenProperty;
+			if (dateTakenProperty == null)
+			{
+				if (date != null)
+				{
+					this.dateTakenSeconds = date.toEpochSecond(ZoneOffset.UTC);
+					this.dateTakenNanos = date.getNano();
+				}
+				this.hasDateTaken = date != null;
+			}
+		}
+		if (dateTakenProperty != null)
+			ImageEntry.runOnFXThread(() -> dateTakenProperty.setValue(date));
 	}
 
-	public LocalDateTime getDateTaken()
+	public synchronized LocalDateTime getDateTaken()
 	{
-		return dateTaken.getValue();
+		if (this.dateTakenProperty != null)
+			return this.dateTakenProperty.getValue();
+		return this.hasDateTaken ? LocalDateTime.ofEpochSecond(this.dateTakenSeconds, this.dateTakenNanos, ZoneOffset.UTC) : null;
 	}
 
-	public ObjectProperty<LocalDateTime> dateTakenProperty()
+	public synchronized ObjectProperty<LocalDateTime> dateTakenProperty()
 	{
-		return dateTaken;
+		if (this.dateTakenProperty == null)
+			this.dateTakenProperty = new SimpleObjectProperty<>(this.getDateTaken());
+		return this.dateTakenProperty;
 	}
 
 	public void setPositionTaken(Position positionTaken)
 	{
-		this.positionTaken.setValue(positionTaken);
+		ObjectProperty<Position> positionTakenProperty;
+		synchronized (this)
+		{
+			positionTakenProperty = this.positionTakenProperty;
+			if (positionTakenProperty == null)
+			{
+				if (positionTaken != null)
+					this.setPositionTaken(positionTaken.getLatitude(), positionTaken.getLongitude(), positionTaken.getElevation());
+				else
+					this.hasPositionTaken = false;
+			}
+		}
+		if (positionTakenProperty != null)
+			ImageEntry.runOnFXThread(() -> positionTakenProperty.setValue(positionTaken));
 	}
 
-	public Position getPositionTaken()
+	public synchronized Position getPositionTaken()
 	{
-		return positionTaken.getValue();
+		if (this.positionTakenProperty != null)
+			return this.positionTakenProperty.getValue();
+		return this.hasPositionTaken ? new Position(this.latitude, this.longitude, this.elevation) : null;
 	}
 
-	public ObjectProperty<Position> positionTakenProperty()
+	public synchronized ObjectProperty<Position> positionTakenProperty()
 	{
-		return positionTaken;
+		if (this.positionTakenProperty == null)
+			this.positionTakenProperty = new SimpleObjectProperty<>(this.getPositionTaken());
+		return this.positionTakenProperty;
 	}
 
 	public void setDroneMaker(String droneMaker)
 	{
-		this.droneMaker.setValue(droneMaker);
+		StringProperty droneMakerProperty;
+		synchronized (this)
+		{
+			droneMakerProperty = this.droneMakerProperty;
+			if (droneMakerProperty == null)
+				this.droneMaker = droneMaker != null ? droneMaker.intern() : null;
+		}
+		if (droneMakerProperty != null)
+			ImageEntry.runOnFXThread(() -> droneMakerProperty.setValue(droneMaker));
 	}
 
-	public String getDroneMaker()
+	public synchronized String getDroneMaker()
 	{
-		return droneMaker.getValue();
+		return this.droneMakerProperty != null ? this.droneMakerProperty.getValue() : this.droneMaker;
 	}
 
-	public StringProperty droneMakerProperty()
+	public synchronized StringProperty droneMakerProperty()
 	{
-		return this.droneMaker;
+		if (this.droneMakerProperty == null)
+			this.droneMakerProperty = new SimpleStringProperty(this.droneMaker);
+		return this.droneMakerProperty;
 	}
 
 	public void setCameraModel(String cameraModel)
 	{
-		this.cameraModel.setValue(cameraModel);
+		StringProperty cameraModelProperty;
+		synchronized (this)
+		{
+			cameraModelProperty = this.cameraModelProperty;
+			if (cameraModelProperty == null)
+				this.cameraModel = cameraModel != null ? cameraModel.intern() : null;
+		}
+		if (cameraModelProperty != null)
+			ImageEntry.runOnFXThread(() -> cameraModelProperty.setValue(cameraModel));
 	}
 
-	public String getCameraModel()
+	public synchronized String getCameraModel()
 	{
-		return cameraModel.getValue();
+		return this.cameraModelProperty != null ? this.cameraModelProperty.getValue() : this.cameraModel;
 	}
 
-	public StringProperty cameraModelProperty()
+	public synchronized StringProperty cameraModelProperty()
 	{
-		return this.cameraModel;
+		if (this.cameraModelProperty == null)
+			this.cameraModelProperty = new SimpleStringProperty(this.cameraModel);
+		return this.cameraModelProperty;
 	}
 
 	public void setSpeed(Vector3 speed)
 	{
-		this.speed.setValue(speed);
+		ObjectProperty<Vector3> speedProperty;
+		synchronized (this)
+		{
+			speedProperty = this.speedProperty;
+			if (speedProperty == null)
+				this.setSpeed(speed.getX(), speed.getY(), speed.getZ());
+		}
+		if (speedProperty != null)
+			ImageEntry.runOnFXThread(() -> speedProperty.setValue(speed));
 	}
 
-	public Vector3 getSpeed()
+	public synchronized Vector3 getSpeed()
 	{
-		return speed.getValue();
+		return this.speedProperty != null ? this.speedProperty.getValue() : new Vector3(this.speedX, this.speedY, this.speedZ);
 	}
 
-	public ObjectProperty<Vector3> speedProperty()
+	public synchronized ObjectProperty<Vector3> speedProperty()
 	{
-		return this.speed;
+		if (this.speedProperty == null)
+			this.speedProperty = new SimpleObjectProperty<>(this.getSpeed());
+		return this.speedProperty;
 	}
 
 	public void setRotation(Vector3 rotation)
 	{
-		this.rotation.setValue(rotation);
+		ObjectProperty<Vector3> rotationProperty;
+		synchronized (this)
+		{
+			rotationProperty = this.rotationProperty;
+			if (rotationProperty == null)
+				this.setRotation(rotation.getX(), rotation.getY(), rotation.getZ());
+		}
+		if (rotationProperty != null)
+			ImageEntry.runOnFXThread(() -> rotationProperty.setValue(rotation));
 	}
 
-	public Vector3 getRotation()
+	public synchronized Vector3 getRotation()
 	{
-		return rotation.getValue();
+		return this.rotationProperty != null ? this.rotationProperty.getValue() : new Vector3(this.roll, this.pitch, this.yaw);
 	}
 
-	public ObjectProperty<Vector3> rotationProperty()
+	public synchronized ObjectProperty<Vector3> rotationProperty()
 	{
-		return rotation;
+		if (this.rotationProperty == null)
+			this.rotationProperty = new SimpleObjectProperty<>(this.getRotation());
+		return this.rotationProperty;
 	}
 
 	public void setAltitude(Double altitude)
 	{
-		this.altitude.setValue(altitude);
+		DoubleProperty altitudeProperty;
+		synchronized (this)
+		{
+			altitudeProperty = this.altitudeProperty;
+			if (altitudeProperty == null)
+				this.altitude = altitude;
+		}
+		if (altitudeProperty != null)
+			ImageEntry.runOnFXThread(() -> altitudeProperty.setValue(altitude));
 	}
 
-	public double getAltitude()
+	public synchronized double getAltitude()
 	{
-		return this.altitude.getValue();
+		return this.altitudeProperty != null ? this.altitudeProperty.getValue() : this.altitude;
 	}
 
-	public DoubleProperty altitudeProperty()
+	public synchronized DoubleProperty altitudeProperty()
 	{
-		return this.altitude;
+		if (this.altitudeProperty == null)
+			this.altitudeProperty = new SimpleDoubleProperty(this.altitude);
+		return this.altitudeProperty;
 	}
 
 	public void setFileType(String fileType)
 	{
-		this.fileType.setValue(fileType);
+		StringProperty fileTypeProperty;
+		synchronized (this)
+		{
+			fileTypeProperty = this.fileTypeProperty;
+			if (fileTypeProperty == null)
+				this.fileType = fileType != null ? fileType.intern() : null;
+		}
+		if (fileTypeProperty != null)
+			ImageEntry.runOnFXThread(() -> fileTypeProperty.setValue(fileType));
 	}
 
-	public String getFileType()
+	public synchronized String getFileType()
 	{
-		return this.fileType.getValue();
+		return this.fileTypeProperty != null ? this.fileTypeProperty.getValue() : this.fileType;
 	}
 
-	public StringProperty fileTypeProperty()
+	public synchronized StringProperty fileTypeProperty()
 	{
-		return this.fileType;
+		if (this.fileTypeProperty == null)
+			this.fileTypeProperty = new SimpleStringProperty(this.fileType);
+		return this.fileTypeProperty;
 	}
 
 	public void setFocalLength(Double focalLength)
 	{
-		this.focalLength.setValue(focalLength);
+		DoubleProperty focalLengthProperty;
+		synchronized (this)
+		{
+			focalLengthProperty = this.focalLengthProperty;
+			if (focalLengthProperty == null)
+				this.focalLength = focalLength;
+		}
+		if (focalLengthProperty != null)
+			ImageEntry.runOnFXThread(() -> focalLengthProperty.setValue(focalLength));
 	}
 
-	public double getFocalLength()
+	public synchronized double getFocalLength()
 	{
-		return this.focalLength.getValue();
+		return this.focalLengthProperty != null ? this.focalLengthProperty.getValue() : this.focalLength;
 	}
 
-	public DoubleProperty focalLengthProperty()
+	public synchronized DoubleProperty focalLengthProperty()
 	{
-		return this.focalLength;
+		if (this.focalLengthProperty == null)
+			this.focalLengthProperty = new SimpleDoubleProperty(this.focalLength);
+		return this.focalLengthProperty;
 	}
 
 	public void setWidth(Double width)
 	{
-		this.width.setValue(width);
+		DoubleProperty widthProperty;
+		synchronized (this)
+		{
+			widthProperty = this.widthProperty;
+			if (widthProperty == null)
+				this.width = width;
+		}
+		if (widthProperty != null)
+			ImageEntry.runOnFXThread(() -> widthProperty.setValue(width));
 	}
 
-	public double getWidth()
+	public synchronized double getWidth()
 	{
-		return this.width.getValue();
+		return this.widthProperty != null ? this.widthProperty.getValue() : this.width;
 	}
 
-	public DoubleProperty widthProperty()
+	public synchronized DoubleProperty widthProperty()
 	{
-		return this.width;
+		if (this.widthProperty == null)
+			this.widthProperty = new SimpleDoubleProperty(this.width);
+		return this.widthProperty;
 	}
 
 	public void setHeight(Double height)
 	{
-		this.height.setValue(height);
+		DoubleProperty heightProperty;
+		synchronized (this)
+		{
+			heightProperty = this.heightProperty;
+			if (heightProperty == null)
+				this.height = height;
+		}
+		if (heightProperty != null)
+			ImageEntry.runOnFXThread(() -> heightProperty.setValue(height));
 	}
 
-	public double getHeight()
+	public synchronized double getHeight()
 	{
-		return this.height.getValue();
+		return this.heightProperty != null ? this.heightProperty.getValue() : this.height;
 	}
 
-	public DoubleProperty heightProperty()
+	public synchronized DoubleProperty heightProperty()
 	{
-		return this.height;
+		if (this.heightProperty == null)
+			this.heightProperty = new SimpleDoubleProperty(this.height);
+		return this.heightProperty;
 	}
 
 	@Override
 	public void setSiteTaken(Site siteTaken)
 	{
-		this.siteTaken.setValue(siteTaken);
+		ObjectProperty<Site> siteTakenProperty;
+		synchronized (this)
+		{
+			siteTakenProperty = this.siteTakenProperty;
+			if (siteTakenProperty == null)
+				this.siteTaken = siteTaken;
+		}
+		if (siteTakenProperty != null)
+			ImageEntry.runOnFXThread(() -> siteTakenProperty.setValue(siteTaken));
 	}
 
-	public Site getSiteTaken()
+	public synchronized Site getSiteTaken()
 	{
-		return siteTaken.getValue();
+		return this.siteTakenProperty != null ? this.siteTakenProperty.getValue() : this.siteTaken;
 	}
 
-	public ObjectProperty<Site> siteTakenProperty()
+	public synchronized ObjectProperty<Site> siteTakenProperty()
 	{
-		return siteTaken;
+		if (this.siteTakenProperty == null)
+			this.siteTakenProperty = new SimpleObjectProperty<>(this.siteTaken);
+		return this.siteTakenProperty;
 	}
 
+	/**
+	 * @return A new list of the raw metadata as items that can be shown in a property sheet
+	 */
 	public List<MetadataCustomItem> getRawMetadata()
 	{
-		return rawMetadata;
+		String[] rawMetadata;
+		synchronized (this)
+		{
+			rawMetadata = this.rawMetadata;
+		}
+		List<MetadataCustomItem> rawMetadataItems = new ArrayList<>(rawMetadata.length / 2);
+		for (Integer i = 0; i < rawMetadata.length; i = i + 2)
+			rawMetadataItems.add(new MetadataCustomItem(rawMetadata[i], rawMetadata[i + 1]));
+		return rawMetadataItems;
 	}
 
-	public boolean isMetadataEditable()
+	public synchronized boolean isMetadataEditable()
 	{
-		return metadataEditable.getValue();
+		return this.metadataEditable == null || this.metadataEditable.getValue();
 	}
 
-	public BooleanProperty metadataEditableProperty()
+	public synchronized BooleanProperty metadataEditableProperty()
 	{
+		if (this.metadataEditable == null)
+			this.metadataEditable = new SimpleBooleanProperty(true);
 		return this.metadataEditable;
 	}
 }
@@ -0,0 +1,277 @@
+package model.image;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.ImageProcessingException;
+import com.drew.lang.GeoLocation;
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifDirectoryBase;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.drew.metadata.exif.GpsDirectory;
+import com.drew.metadata.file.FileTypeDirectory;
+import com.drew.metadata.jpeg.JpegDirectory;
+import com.drew.metadata.png.PngDirectory;
+import com.thebuzzmedia.exiftool.Tag;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads metadata inside the JVM using metadata-extractor instead of asking an exiftool process. Only the tags Calliope
+ * actually uses are filled in, and each value is formatted the way exiftool prints it with -n so the result can be used
+ * anywhere an exiftool result can. This includes the DJI maker note values (speed, pitch, roll, and yaw) which
+ * metadata-extractor leaves as raw bytes.
+ */
+public class JavaMetadataReader implements MetadataReader
+{
+	// The DJI maker note tags we read, indexed by the name exiftool gives them
+	private static final Map<Integer, String> DJI_MAKERNOTE_TAGS = new HashMap<>();
+	static
+	{
+		DJI_MAKERNOTE_TAGS.put(0x03, "SpeedX");
+		DJI_MAKERNOTE_TAGS.put(0x04, "SpeedY");
+		DJI_MAKERNOTE_TAGS.put(0x05, "SpeedZ");
+		DJI_MAKERNOTE_TAGS.put(0x06, "Pitch");
+		DJI_MAKERNOTE_TAGS.put(0x07, "Yaw");
+		DJI_MAKERNOTE_TAGS.put(0x08, "Roll");
+		DJI_MAKERNOTE_TAGS.put(0x09, "CameraPitch");
+		DJI_MAKERNOTE_TAGS.put(0x0A, "CameraYaw");
+		DJI_MAKERNOTE_TAGS.put(0x0B, "CameraRoll");
+	}
+	// The TIFF field type used for 32 bit floats
+	private static final Integer TIFF_TYPE_FLOAT = 11;
+
+	// The tags we return, indexed by the name exiftool prints for them
+	private final Map<String, Tag> tagsByName = new HashMap<>();
+
+	/**
+	 * Constructor indexes the tags that should be returned
+	 *
+	 * @param tags The tags to return, if two tags share a name the later one is used just like exiftool-lib does
+	 */
+	public JavaMetadataReader(Collection<Tag> tags)
+	{
+		for (Tag tag : tags)
+			this.tagsByName.put(tag.getName(), tag);
+	}
+
+	/**
+	 * Reads a file's metadata with metadata-extractor
+	 *
+	 * @param imageFile The file to read
+	 * @return The image's metadata as a map
+	 * @throws IOException If the image cannot be read or its format isn't understood
+	 */
+	@Override
+	public Map<Tag, String> readImageMetadata(File imageFile) throws IOException
+	{
+		Metadata metadata;
+		try
+		{
+			metadata = ImageMetadataReader.readMetadata(imageFile);
+		}
+		catch (ImageProcessingException e)
+		{
+			throw new IOException("Could not read metadata from " + imageFile.getName() + ": " + e.getMessage(), e);
+		}
+
+		Map<Tag, String> imageMetadata = new HashMap<>();
+
+		FileTypeDirectory fileTypeDirectory = metadata.getFirstDirectoryOfType(FileTypeDirectory.class);
+		this.putString(imageMetadata, "FileType", fileTypeDirectory, FileTypeDirectory.TAG_DETECTED_FILE_TYPE_NAME);
+		this.putString(imageMetadata, "MIMEType", fileTypeDirectory, FileTypeDirectory.TAG_DETECTED_FILE_MIME_TYPE);
+
+		ExifIFD0Directory ifd0Directory = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+		this.putString(imageMetadata, "Make", ifd0Directory, ExifDirectoryBase.TAG_MAKE);
+		this.putString(imageMetadata, "Model", ifd0Directory, ExifDirectoryBase.TAG_MODEL);
+		this.putString(imageMetadata, "Software", ifd0Directory, ExifDirectoryBase.TAG_SOFTWARE);
+		this.putString(imageMetadata, "Artist", ifd0Directory, ExifDirectoryBase.TAG_ARTIST);
+		this.putString(imageMetadata, "Copyright", ifd0Directory, ExifDirectoryBase.TAG_COPYRIGHT);
+		this.putNumber(imageMetadata, "Orientation", ifd0Directory, ExifDirectoryBase.TAG_ORIENTATION);
+		this.putNumber(imageMetadata, "XResolution", ifd0Directory, ExifDirectoryBase.TAG_X_RESOLUTION);
+		this.putNumber(imageMetadata, "YResolution", ifd0Directory, ExifDirectoryBase.TAG_Y_RESOLUTION);
+
+		ExifSubIFDDirectory subIFDDirectory = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
+		this.putString(imageMetadata, "DateTimeOriginal", subIFDDirectory, ExifDirectoryBase.TAG_DATETIME_ORIGINAL);
+		this.putString(imageMetadata, "SubSecTimeOriginal", subIFDDirectory, ExifDirectoryBase.TAG_SUBSECOND_TIME_ORIGINAL);
+		this.putString(imageMetadata, "LensMake", subIFDDirectory, ExifDirectoryBase.TAG_LENS_MAKE);
+		this.putString(imageMetadata, "LensModel", subIFDDirectory, ExifDirectoryBase.TAG_LENS_MODEL);
+		this.putNumber(imageMetadata, "ISO", subIFDDirectory, ExifDirectoryBase.TAG_ISO_EQUIVALENT);
+		this.putNumber(imageMetadata, "ExposureTime", subIFDDirectory, ExifDirectoryBase.TAG_EXPOSURE_TIME);
+		this.putNumber(imageMetadata, "ExposureCompensation", subIFDDirectory, ExifDirectoryBase.TAG_EXPOSURE_BIAS);
+		this.putNumber(imageMetadata, "ExposureProgram", subIFDDirectory, ExifDirectoryBase.TAG_EXPOSURE_PROGRAM);
+		this.putNumber(imageMetadata, "MeteringMode", subIFDDirectory, ExifDirectoryBase.TAG_METERING_MODE);
+		this.putNumber(imageMetadata, "Flash", subIFDDirectory, ExifDirectoryBase.TAG_FLASH);
+		this.putNumber(imageMetadata, "FocalLength", subIFDDirectory, ExifDirectoryBase.TAG_FOCAL_LENGTH);
+		this.putNumber(imageMetadata, "FocalLengthIn35mmFormat", subIFDDirectory, ExifDirectoryBase.TAG_35MM_FILM_EQUIV_FOCAL_LENGTH);
+		this.putNumber(imageMetadata, "WhiteBalance", subIFDDirectory, ExifDirectoryBase.TAG_WHITE_BALANCE_MODE);
+		this.putNumber(imageMetadata, "ColorSpace", subIFDDirectory, ExifDirectoryBase.TAG_COLOR_SPACE);
+		this.putNumber(imageMetadata, "Contrast", subIFDDirectory, ExifDirectoryBase.TAG_CONTRAST);
+		this.putNumber(imageMetadata, "Saturation", subIFDDirectory, ExifDirectoryBase.TAG_SATURATION);
+		this.putNumber(imageMetadata, "Sharpness", subIFDDirectory, ExifDirectoryBase.TAG_SHARPNESS);
+		this.putNumber(imageMetadata, "DigitalZoomRatio", subIFDDirectory, ExifDirectoryBase.TAG_DIGITAL_ZOOM_RATIO);
+		if (subIFDDirectory != null && subIFDDirectory.containsTag(ExifDirectoryBase.TAG_EXIF_VERSION))
+			this.put(imageMetadata, "ExifVersion", new String(subIFDDirectory.getByteArray(ExifDirectoryBase.TAG_EXIF_VERSION), StandardCharsets.US_ASCII).trim());
+
+		// Exiftool reports the size of the actual image data, which for JPEGs and PNGs isn't in the EXIF data
+		JpegDirectory jpegDirectory = metadata.getFirstDirectoryOfType(JpegDirectory.class);
+		PngDirectory pngDirectory = metadata.getFirstDirectoryOfType(PngDirectory.class);
+		if (jpegDirectory != null)
+		{
+			this.putNumber(imageMetadata, "ImageWidth", jpegDirectory, JpegDirectory.TAG_IMAGE_WIDTH);
+			this.putNumber(imageMetadata, "ImageHeight", jpegDirectory, JpegDirectory.TAG_IMAGE_HEIGHT);
+		}
+		else if (pngDirectory != null)
+		{
+			this.putNumber(imageMetadata, "ImageWidth", pngDirectory, PngDirectory.TAG_IMAGE_WIDTH);
+			this.putNumber(imageMetadata, "ImageHeight", pngDirectory, PngDirectory.TAG_IMAGE_HEIGHT);
+		}
+		else
+		{
+			this.putNumber(imageMetadata, "ImageWidth", ifd0Directory, ExifDirectoryBase.TAG_IMAGE_WIDTH);
+			this.putNumber(imageMetadata, "ImageHeight", ifd0Directory, ExifDirectoryBase.TAG_IMAGE_HEIGHT);
+		}
+
+		// Exiftool's GPS position and altitude are signed, so apply the references the same way
+		GpsDirectory gpsDirectory = metadata.getFirstDirectoryOfType(GpsDirectory.class);
+		if (gpsDirectory != null)
+		{
+			GeoLocation geoLocation = gpsDirectory.getGeoLocation();
+			if (geoLocation != null)
+			{
+				this.put(imageMetadata, "GPSLatitude", formatNumber(geoLocation.getLatitude()));
+				this.put(imageMetadata, "GPSLongitude", formatNumber(geoLocation.getLongitude()));
+			}
+			this.putString(imageMetadata, "GPSLatitudeRef", gpsDirectory, GpsDirectory.TAG_LATITUDE_REF);
+			this.putString(imageMetadata, "GPSLongitudeRef", gpsDirectory, GpsDirectory.TAG_LONGITUDE_REF);
+			Double altitude = gpsDirectory.getDoubleObject(GpsDirectory.TAG_ALTITUDE);
+			if (altitude != null)
+			{
+				Integer altitudeRef = gpsDirectory.getInteger(GpsDirectory.TAG_ALTITUDE_REF);
+				this.put(imageMetadata, "GPSAltitude", formatNumber(altitudeRef != null && altitudeRef == 1 ? -altitude : altitude));
+			}
+			this.putNumber(imageMetadata, "GPSAltitudeRef", gpsDirectory, GpsDirectory.TAG_ALTITUDE_REF);
+			this.putNumber(imageMetadata, "GPSSpeed", gpsDirectory, GpsDirectory.TAG_SPEED);
+			this.putString(imageMetadata, "GPSSpeedRef", gpsDirectory, GpsDirectory.TAG_SPEED_REF);
+			this.putNumber(imageMetadata, "GPSDestBearing", gpsDirectory, GpsDirectory.TAG_DEST_BEARING);
+			this.putString(imageMetadata, "GPSDestBearingRef", gpsDirectory, GpsDirectory.TAG_DEST_BEARING_REF);
+		}
+
+		// metadata-extractor doesn't understand DJI maker notes, so read them ourselves
+		if (ifd0Directory != null && subIFDDirectory != null && "DJI".equalsIgnoreCase(ifd0Directory.getString(ExifDirectoryBase.TAG_MAKE)))
+		{
+			byte[] makerNote = subIFDDirectory.getByteArray(ExifDirectoryBase.TAG_MAKERNOTE);
+			if (makerNote != null)
+				this.readDJIMakerNote(imageMetadata, makerNote);
+		}
+
+		return imageMetadata;
+	}
+
+	/**
+	 * Reads the DJI maker note, a TIFF IFD whose values are all single floats stored inside their entries
+	 *
+	 * @param imageMetadata The map to add the maker note values to
+	 * @param makerNote The raw maker note
+	 */
+	private void readDJIMakerNote(Map<Tag, String> imageMetadata, byte[] makerNote)
+	{
+		if (makerNote.length < 2)
+			return;
+		// The maker note uses the same byte order as the rest of the file, which for DJI is almost always little endian
+		ByteBuffer buffer = ByteBuffer.wrap(makerNote).order(ByteOrder.LITTLE_ENDIAN);
+		Integer entryCount = buffer.getShort(0) & 0xFFFF;
+		if (entryCount == 0 || 2 + entryCount * 12 > makerNote.length)
+		{
+			buffer.order(ByteOrder.BIG_ENDIAN);
+			entryCount = buffer.getShort(0) & 0xFFFF;
+		}
+
+		for (Integer entry = 0; entry < entryCount && 2 + (entry + 1) * 12 <= makerNote.length; entry++)
+		{
+			Integer entryOffset = 2 + entry * 12;
+			Integer tagId = buffer.getShort(entryOffset) & 0xFFFF;
+			Integer type = buffer.getShort(entryOffset + 2) & 0xFFFF;
+			Integer count = buffer.getInt(entryOffset + 4);
+			String name = DJI_MAKERNOTE_TAGS.get(tagId);
+			if (name != null && type.equals(TIFF_TYPE_FLOAT) && count == 1)
+				this.put(imageMetadata, name, formatNumber(buffer.getFloat(entryOffset + 8)));
+		}
+	}
+
+	/**
+	 * Stores a string value from a directory if the directory has it
+	 *
+	 * @param imageMetadata The map to store the value in
+	 * @param name The exiftool name of the tag
+	 * @param directory The directory to read from, may be null
+	 * @param tagType The tag to read from the directory
+	 */
+	private void putString(Map<Tag, String> imageMetadata, String name, Directory directory, Integer tagType)
+	{
+		if (directory != null && directory.containsTag(tagType))
+			this.put(imageMetadata, name, directory.getString(tagType).trim());
+	}
+
+	/**
+	 * Stores a numeric value from a directory if the directory has it, rationals are converted to decimals like exiftool does
+	 *
+	 * @param imageMetadata The map to store the value in
+	 * @param name The exiftool name of the tag
+	 * @param directory The directory to read from, may be null
+	 * @param tagType The tag to read from the directory
+	 */
+	private void putNumber(Map<Tag, String> imageMetadata, String name, Directory directory, Integer tagType)
+	{
+		if (directory != null && directory.containsTag(tagType))
+		{
+			Double value = directory.getDoubleObject(tagType);
+			if (value != null)
+				this.put(imageMetadata, name, formatNumber(value));
+		}
+	}
+
+	/**
+	 * Stores a value if it's one of the tags we return
+	 *
+	 * @param imageMetadata The map to store the value in
+	 * @param name The exiftool name of the tag
+	 * @param value The value to store
+	 */
+	private void put(Map<Tag, String> imageMetadata, String name, String value)
+	{
+		Tag tag = this.tagsByName.get(name);
+		if (tag != null && !value.isEmpty())
+			imageMetadata.put(tag, value);
+	}
+
+	/**
+	 * Formats a number without trailing zeros or scientific notation, like exiftool does
+	 *
+	 * @param value The number to format
+	 * @return The formatted number
+	 */
+	private static String formatNumber(Double value)
+	{
+		return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+	}
+
+	/**
+	 * Formats a float without the noise a float picks up when widened to a double
+	 *
+	 * @param value The number to format
+	 * @return The formatted number
+	 */
+	private static String formatNumber(Float value)
+	{
+		return new BigDecimal(value.toString()).stripTrailingZeros().toPlainString();
+	}
+}
@@ -0,0 +1,242 @@
+package model.image;
+
+import com.thebuzzmedia.exiftool.Tag;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A least recently used cache of image metadata that is kept on disk between runs. Each entry is keyed by the file's
+ * absolute path and remembers the file's size and last modified time, so an entry is only used if the file hasn't
+ * changed since it was read. The cache is loaded the first time it's used and written back with {@link #save()}
+ */
+public class MetadataCache
+{
+	// Written at the start of the cache file, bump the version whenever the format or the values read change
+	private static final Integer FILE_MAGIC = 0x43414C4D;
+	private static final Integer FILE_VERSION = 1;
+	// Values longer than this are never cached, it keeps every value well inside the limit of a modified UTF-8 string
+	private static final Integer MAX_VALUE_LENGTH = 16384;
+
+	// The file the cache is stored in
+	private final File cacheFile;
+	// The maximum number of files to remember
+	private final Integer maxEntries;
+	// The tags we cache, indexed by name so the cache file only needs to store names
+	private final Map<String, Tag> tagsByName = new HashMap<>();
+
+	// Each cached file indexed by absolute path, in access order so the eldest entry is the least recently used
+	private final Map<String, CacheEntry> entries;
+	// Set once the cache file has been read
+	private Boolean loaded = false;
+	// Set when entries have changed since the cache was last saved
+	private Boolean dirty = false;
+
+	// The number of lookups answered by the cache and the number that had to be read
+	private Long hits = 0L;
+	private Long misses = 0L;
+
+	/**
+	 * Constructor just stores the cache settings, the cache file isn't read until the cache is first used
+	 *
+	 * @param cacheFile The file the cache is stored in
+	 * @param maxEntries The maximum number of files to remember
+	 * @param tags The tags that may be cached, if two tags share a name the later one is used just like exiftool-lib does
+	 */
+	public MetadataCache(File cacheFile, Integer maxEntries, Collection<Tag> tags)
+	{
+		this.cacheFile = cacheFile;
+		this.maxEntries = maxEntries;
+		for (Tag tag : tags)
+			this.tagsByName.put(tag.getName(), tag);
+		this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest)
+			{
+				return this.size() > MetadataCache.this.maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Gets a file's cached metadata if the file hasn't changed since it was cached
+	 *
+	 * @param imageFile The file to look up
+	 * @return The file's metadata, or null if the file isn't cached or has changed
+	 */
+	public synchronized Map<Tag, String> get(File imageFile)
+	{
+		this.load();
+		CacheEntry cacheEntry = this.entries.get(imageFile.getAbsolutePath());
+		if (cacheEntry == null || cacheEntry.size != imageFile.length() || cacheEntry.lastModified != imageFile.lastModified())
+		{
+			this.misses++;
+			return null;
+		}
+		this.hits++;
+
+		Map<Tag, String> imageMetadata = new HashMap<>();
+		for (Map.Entry<String, String> tagValue : cacheEntry.tagValues.entrySet())
+		{
+			Tag tag = this.tagsByName.get(tagValue.getKey());
+			if (tag != null)
+				imageMetadata.put(tag, tagValue.getValue());
+		}
+		return imageMetadata;
+	}
+
+	/**
+	 * Remembers a file's metadata, evicting the least recently used file if the cache is full
+	 *
+	 * @param imageFile The file the metadata was read from
+	 * @param imageMetadata The file's metadata
+	 */
+	public synchronized void put(File imageFile, Map<Tag, String> imageMetadata)
+	{
+		this.load();
+		Map<String, String> tagValues = new HashMap<>();
+		for (Map.Entry<Tag, String> tagValue : imageMetadata.entrySet())
+		{
+			// A file with a huge value is rare, so just read it again next time
+			if (tagValue.getValue().length() > MAX_VALUE_LENGTH)
+				return;
+			tagValues.put(tagValue.getKey().getName(), tagValue.getValue());
+		}
+		this.entries.put(imageFile.getAbsolutePath(), new CacheEntry(imageFile.length(), imageFile.lastModified(), tagValues));
+		this.dirty = true;
+	}
+
+	/**
+	 * Writes the cache to disk if it has changed. The cache is written to a temporary file first so that a crash part
+	 * way through never leaves a broken cache behind
+	 *
+	 * @throws IOException If the cache could not be written
+	 */
+	public synchronized void save() throws IOException
+	{
+		if (!this.dirty)
+			return;
+
+		File parentDirectory = this.cacheFile.getAbsoluteFile().getParentFile();
+		if (!parentDirectory.isDirectory() && !parentDirectory.mkdirs())
+			throw new IOException("Could not create the metadata cache directory " + parentDirectory.getAbsolutePath());
+		File tempFile = new File(parentDirectory, this.cacheFile.getName() + ".tmp");
+		// Entries are written least recently used first, so reading them back in order keeps the same eviction order
+		try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile)))))
+		{
+			outputStream.writeInt(FILE_MAGIC);
+			outputStream.writeInt(FILE_VERSION);
+			outputStream.writeInt(this.entries.size());
+			for (Map.Entry<String, CacheEntry> entry : this.entries.entrySet())
+			{
+				CacheEntry cacheEntry = entry.getValue();
+				outputStream.writeUTF(entry.getKey());
+				outputStream.writeLong(cacheEntry.size);
+				outputStream.writeLong(cacheEntry.lastModified);
+				outputStream.writeShort(cacheEntry.tagValues.size());
+				for (Map.Entry<String, String> tagValue : cacheEntry.tagValues.entrySet())
+				{
+					outputStream.writeUTF(tagValue.getKey());
+					outputStream.writeUTF(tagValue.getValue());
+				}
+			}
+		}
+		Files.move(tempFile.toPath(), this.cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		this.dirty = false;
+	}
+
+	/**
+	 * Reads the cache file the first time the cache is used. A missing, old, or broken cache file just means we start
+	 * with an empty cache
+	 */
+	private void load()
+	{
+		if (this.loaded)
+			return;
+		this.loaded = true;
+		if (!this.cacheFile.isFile())
+			return;
+
+		try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(this.cacheFile)))))
+		{
+			if (inputStream.readInt() != FILE_MAGIC || inputStream.readInt() != FILE_VERSION)
+				return;
+			Integer entryCount = inputStream.readInt();
+			for (Integer i = 0; i < entryCount; i++)
+			{
+				String path = inputStream.readUTF();
+				Long size = inputStream.readLong();
+				Long lastModified = inputStream.readLong();
+				Integer tagCount = inputStream.readUnsignedShort();
+				Map<String, String> tagValues = new HashMap<>();
+				for (Integer j = 0; j < tagCount; j++)
+					tagValues.put(inputStream.readUTF(), inputStream.readUTF());
+				this.entries.put(path, new CacheEntry(size, lastModified, tagValues));
+			}
+		}
+		catch (IOException e)
+		{
+			// Anything we managed to read before the error is still valid, so keep it
+		}
+	}
+
+	///
+	/// Getters
+	///
+
+	public synchronized Integer getSize()
+	{
+		return this.entries.size();
+	}
+
+	public synchronized Long getHits()
+	{
+		return this.hits;
+	}
+
+	public synchronized Long getMisses()
+	{
+		return this.misses;
+	}
+
+	/**
+	 * A single cached file
+	 */
+	private static class CacheEntry
+	{
+		// The file's size and last modified time when its metadata was read
+		private final long size;
+		private final long lastModified;
+		// The file's metadata indexed by tag name
+		private final Map<String, String> tagValues;
+
+		/**
+		 * Constructor just stores the fields
+		 *
+		 * @param size The file's size
+		 * @param lastModified The file's last modified time
+		 * @param tagValues The file's metadata indexed by tag name
+		 */
+		private CacheEntry(long size, long lastModified, Map<String, String> tagValues)
+		{
+			this.size = size;
+			this.lastModified = lastModified;
+			this.tagValues = tagValues;
+		}
+	}
+}
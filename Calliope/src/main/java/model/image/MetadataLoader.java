@@ -0,0 +1,199 @@
+package model.image;
+
+import model.CalliopeData;
+import model.dataSources.DirectoryManager;
+import org.apache.commons.lang.exception.ExceptionUtils;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Reads image metadata in the background after images have been added to the image tree. Every image starts out on a low
+ * priority queue, and images the user looks at or that an operation is waiting for are moved onto a high priority queue
+ * which is always read first. A single loader thread takes small batches off the queues so a newly prioritized image
+ * never waits long behind the rest of the import
+ */
+public class MetadataLoader
+{
+	// The maximum number of images read at once, small so high priority images get picked up quickly
+	private static final Integer BATCH_SIZE = 50;
+
+	// Images whose metadata hasn't been read yet, each with a future that completes once it has been
+	private final Map<ImageEntry, CompletableFuture<Void>> pendingImages = new HashMap<>();
+	// Images someone is waiting on, read before anything else. The most recently requested image is at the front
+	private final Deque<ImageEntry> highPriorityImages = new ArrayDeque<>();
+	// Every other image, read in the order it was imported
+	private final Deque<ImageEntry> lowPriorityImages = new ArrayDeque<>();
+	// The thread reading metadata, or null if there's nothing to read
+	private Thread loaderThread = null;
+
+	/**
+	 * Queues every image in a directory to have its metadata read at low priority
+	 *
+	 * @param imageDirectory The directory containing images that need their metadata read
+	 */
+	public synchronized void loadLater(ImageDirectory imageDirectory)
+	{
+		imageDirectory.flattened().filter(imageContainer -> imageContainer instanceof ImageEntry).map(imageContainer -> (ImageEntry) imageContainer).forEach(imageEntry ->
+		{
+			if (!this.pendingImages.containsKey(imageEntry))
+			{
+				this.pendingImages.put(imageEntry, new CompletableFuture<>());
+				this.lowPriorityImages.addLast(imageEntry);
+			}
+		});
+		this.startLoading();
+	}
+
+	/**
+	 * Moves images to the front of the queue
+	 *
+	 * @param imageEntries The images to read next
+	 * @return A future that completes once every one of the images has had its metadata read
+	 */
+	public synchronized CompletableFuture<Void> prioritize(Collection<ImageEntry> imageEntries)
+	{
+		List<CompletableFuture<Void>> imagesLoaded = new ArrayList<>();
+		for (ImageEntry imageEntry : imageEntries)
+		{
+			CompletableFuture<Void> imageLoaded = this.pendingImages.get(imageEntry);
+			// Images that aren't pending have either been read already or were never queued
+			if (imageLoaded != null)
+			{
+				this.highPriorityImages.addFirst(imageEntry);
+				imagesLoaded.add(imageLoaded);
+			}
+		}
+		this.startLoading();
+		return CompletableFuture.allOf(imagesLoaded.toArray(new CompletableFuture[0]));
+	}
+
+	/**
+	 * Blocks until the given images have had their metadata read, reading them before anything else
+	 *
+	 * @param imageEntries The images that need their metadata
+	 * @throws InterruptedException If the thread was interrupted while waiting
+	 */
+	public void waitForMetadata(Collection<ImageEntry> imageEntries) throws InterruptedException
+	{
+		try
+		{
+			this.prioritize(imageEntries).get();
+		}
+		catch (ExecutionException ignored)
+		{
+			// Futures are only ever completed normally, a failed read is reported when it happens
+		}
+	}
+
+	/**
+	 * @param imageEntry The image to test
+	 * @return True if the image is still waiting to have its metadata read, false otherwise
+	 */
+	public synchronized Boolean isPending(ImageEntry imageEntry)
+	{
+		return this.pendingImages.containsKey(imageEntry);
+	}
+
+	/**
+	 * Starts the loader thread if there's work to do and it isn't already running
+	 */
+	private void startLoading()
+	{
+		if (this.loaderThread == null && !this.pendingImages.isEmpty())
+		{
+			this.loaderThread = new Thread(this::loadPendingImages, "metadata-loader");
+			this.loaderThread.setDaemon(true);
+			this.loaderThread.start();
+		}
+	}
+
+	/**
+	 * Takes the next batch of images to read, high priority images first
+	 *
+	 * @return The next batch of images, or an empty list if there's nothing left to read in which case the loader thread should stop
+	 */
+	private synchronized List<ImageEntry> nextBatch()
+	{
+		List<ImageEntry> batch = new ArrayList<>();
+		// Images may be on both queues or queued more than once, so skip any image already taken
+		while (batch.size() < BATCH_SIZE && !this.highPriorityImages.isEmpty())
+		{
+			ImageEntry imageEntry = this.highPriorityImages.pollFirst();
+			if (this.pendingImages.containsKey(imageEntry) && !batch.contains(imageEntry))
+				batch.add(imageEntry);
+		}
+		while (batch.size() < BATCH_SIZE && !this.lowPriorityImages.isEmpty())
+		{
+			ImageEntry imageEntry = this.lowPriorityImages.pollFirst();
+			if (this.pendingImages.containsKey(imageEntry) && !batch.contains(imageEntry))
+				batch.add(imageEntry);
+		}
+		if (batch.isEmpty())
+			this.loaderThread = null;
+		return batch;
+	}
+
+	/**
+	 * Marks an image as read, completing the future of anything waiting on it
+	 *
+	 * @param imageEntry The image that was read
+	 */
+	private synchronized void finishImage(ImageEntry imageEntry)
+	{
+		CompletableFuture<Void> imageLoaded = this.pendingImages.remove(imageEntry);
+		if (imageLoaded != null)
+			imageLoaded.complete(null);
+	}
+
+	/**
+	 * Runs on the loader thread, reads batches until both queues are empty and then saves the metadata cache
+	 */
+	private void loadPendingImages()
+	{
+		List<ImageEntry> batch;
+		while (!(batch = this.nextBatch()).isEmpty())
+		{
+			try
+			{
+				// Images on the local disk are read together, the rest know how to read their own metadata. Each image is
+				// marked as read as soon as it's done so whoever is waiting on it doesn't wait for the whole batch
+				DirectoryManager.readImageMetadata(batch.stream().filter(ImageEntry::isFileLocal).collect(Collectors.toList()), this::finishImage);
+				batch.stream().filter(imageEntry -> !imageEntry.isFileLocal()).forEach(imageEntry ->
+				{
+					imageEntry.readFileMetadataFromImage();
+					this.finishImage(imageEntry);
+				});
+			}
+			catch (Exception e)
+			{
+				CalliopeData.getInstance().getErrorDisplay().notify("Error reading image metadata!\n" + ExceptionUtils.getStackTrace(e));
+			}
+			finally
+			{
+				// Even if the read failed we mark the images as done so nothing waits on them forever
+				batch.forEach(this::finishImage);
+			}
+		}
+
+		// Remember what we just read and looked up so importing these images again skips doing it again
+		try
+		{
+			CalliopeData.getInstance().getMetadataManager().saveMetadataCache();
+			CalliopeData.getInstance().getElevationData().saveElevationCache();
+		}
+		catch (IOException e)
+		{
+			CalliopeData.getInstance().getErrorDisplay().notify("Error saving the image metadata and elevation caches!\n" + ExceptionUtils.getStackTrace(e));
+		}
+	}
+}
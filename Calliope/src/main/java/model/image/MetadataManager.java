@@ -1,11 +1,11 @@
 package model.image;
 
-import com.thebuzzmedia.exiftool.ExifTool;
-import com.thebuzzmedia.exiftool.ExifToolBuilder;
 import com.thebuzzmedia.exiftool.Tag;
+import com.thebuzzmedia.exiftool.core.StandardFormat;
 import com.thebuzzmedia.exiftool.core.StandardTag;
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.ReadOnlyBooleanWrapper;
+import model.settings.SettingsData;
 import model.util.ErrorDisplay;
 import org.apache.commons.compress.utils.IOUtils;
 import org.apache.commons.lang.exception.ExceptionUtils;
@@ -15,26 +15,65 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
 /**
  * Class containing utils for writing & reading metadata
  */
 public class MetadataManager
 {
-	// A reference to the EXIF tool object used to read and write metadata
-	private ExifTool exifTool;
+	// The maximum number of files read by a single exiftool command
+	private static final Integer BATCH_SIZE = 250;
+	// The maximum number of files whose metadata is remembered between runs
+	private static final Integer CACHE_SIZE = 200000;
+
+	// The pool of EXIF tool processes used to read and write metadata
+	private ExifToolPool exifToolPool;
+	// Reads metadata without leaving the JVM, used for the file types the user picked
+	private final MetadataReader javaMetadataReader = new JavaMetadataReader(this.getTagsToRead());
+	// The in-process reader to use for each lower case file extension, anything not in here is read by exiftool
+	private volatile Map<String, MetadataReader> inProcessReaders = new HashMap<>();
+	// The number of files read in-process so far
+	private final AtomicLong filesReadInProcess = new AtomicLong(0);
+	// Metadata read in previous runs, stored in the user's home directory so re-importing the same files is quick
+	private final MetadataCache metadataCache = new MetadataCache(new File(System.getProperty("user.home"), ".calliope" + File.separator + "metadataCache.bin"), CACHE_SIZE, this.getTagsToRead());
+	// The threads that read batches of files, each exiftool reader borrows its own exiftool process from the pool
+	private final ExecutorService batchReaders = Executors.newCachedThreadPool(runnable ->
+	{
+		Thread thread = new Thread(runnable, "metadata-batch-reader");
+		thread.setDaemon(true);
+		return thread;
+	});
 	// Flag that is used in testing if we have found exiftool or not
 	private final ReadOnlyBooleanWrapper exifToolFound = new ReadOnlyBooleanWrapper(false);
 
 	/**
-	 * Metadata Manager constructor just starts the exif tool process
+	 * Metadata Manager constructor just prepares the pool of exif tool processes, sized by the user's settings, and picks
+	 * which file types are read in-process
 	 */
-	public MetadataManager(ErrorDisplay errorDisplay)
+	public MetadataManager(ErrorDisplay errorDisplay, SettingsData settings)
 	{
+		// Pick the file types to read without exiftool, and update them whenever the setting changes
+		this.setInProcessFileTypes(settings.getInProcessMetadataFileTypes());
+		settings.inProcessMetadataFileTypesProperty().addListener((observable, oldValue, newValue) -> this.setInProcessFileTypes(newValue));
+
+		String exifToolPath = null;
 		// If we're on windows, we can use our own exiftool.exe executable
 		if (SystemUtils.IS_OS_WINDOWS)
 		{
@@ -61,14 +100,24 @@ public class MetadataManager
 					errorDisplay.notify("Error copying exiftool from jar to temporary directory!\n" + ExceptionUtils.getStackTrace(e));
 				}
 			}
-			// Open a connection to the exiftool file
-			this.exifTool = new ExifToolBuilder().withPath(exiftoolFile).enableStayOpen().build();
-			this.exifToolFound.setValue(true);
+			// Use the exiftool file we just copied
+			exifToolPath = exiftoolFile.getAbsolutePath();
 		}
 		// Otherwise we test the path, if exiftool is in our path use that one
 		else if (System.getProperty("exiftool.path", "exiftool") != null)
 		{
-			this.exifTool = new ExifToolBuilder().enableStayOpen().build();
+			exifToolPath = System.getProperty("exiftool.path", "exiftool");
+		}
+
+		if (exifToolPath != null)
+		{
+			// Processes are started as they're needed, and the pool grows or shrinks whenever the setting changes
+			this.exifToolPool = new ExifToolPool(exifToolPath, settings.getExifToolProcesses());
+			settings.exifToolProcessesProperty().addListener((observable, oldValue, newValue) ->
+			{
+				if (newValue != null)
+					this.exifToolPool.setMaxProcesses(newValue);
+			});
 			this.exifToolFound.setValue(true);
 		}
 	}
@@ -177,6 +226,34 @@ public class MetadataManager
 		}
 	}
 
+	/**
+	 * Sets the file types that are read in-process instead of by exiftool
+	 *
+	 * @param fileTypes A comma separated list of file extensions, such as "jpg,jpeg"
+	 */
+	private void setInProcessFileTypes(String fileTypes)
+	{
+		Map<String, MetadataReader> inProcessReaders = new HashMap<>();
+		if (fileTypes != null)
+			for (String fileType : fileTypes.split(","))
+				if (!fileType.trim().isEmpty())
+					inProcessReaders.put(fileType.trim().replaceFirst("^\\.", "").toLowerCase(Locale.ROOT), this.javaMetadataReader);
+		this.inProcessReaders = inProcessReaders;
+	}
+
+	/**
+	 * Gets the in-process reader for a file based on its extension
+	 *
+	 * @param imageFile The file to read
+	 * @return The reader to use, or null if the file should be read by exiftool
+	 */
+	private MetadataReader getInProcessReader(File imageFile)
+	{
+		String fileName = imageFile.getName();
+		Integer extensionStart = fileName.lastIndexOf('.');
+		return extensionStart == -1 ? null : this.inProcessReaders.get(fileName.substring(extensionStart + 1).toLowerCase(Locale.ROOT));
+	}
+
 	/**
 	 * Function used to read a file's metadata
 	 *
@@ -185,13 +262,185 @@ public class MetadataManager
 	 * @throws IOException If the image cannot be read, throw an exception
 	 */
 	public Map<Tag, String> readImageMetadata(File imageFile) throws IOException
+	{
+		// Try reading the file in-process first, if that fails let exiftool have a go since it understands more formats
+		MetadataReader inProcessReader = this.getInProcessReader(imageFile);
+		if (inProcessReader != null)
+		{
+			try
+			{
+				Map<Tag, String> imageMetadata = inProcessReader.readImageMetadata(imageFile);
+				this.filesReadInProcess.incrementAndGet();
+				return imageMetadata;
+			}
+			catch (IOException | RuntimeException e)
+			{
+				if (this.exifToolPool == null)
+					throw e instanceof IOException ? (IOException) e : new IOException("Could not read metadata from " + imageFile.getName(), e);
+			}
+		}
+
+		if (this.exifToolPool == null)
+			throw new IOException("Exiftool was not found, so the metadata of " + imageFile.getName() + " could not be read");
+		// Ask a free exiftool process to get our image's metadata
+		List<Tag> tags = this.getTagsToRead();
+		return this.exifToolPool.run(process -> process.getExifTool().getImageMeta(imageFile, tags));
+	}
+
+	/**
+	 * Function used to read the metadata of many files at once. Files that haven't changed since they were last read come
+	 * straight out of the metadata cache. Of the rest, files whose type is read in-process are placed on one work queue
+	 * and read in parallel by one reader per CPU core. Every other file is split into batches which are placed on a second
+	 * work queue, and one reader per exiftool process in the pool takes batches off of it. Each batch is a single exiftool
+	 * command, and each file's metadata is handed back as soon as exiftool prints it. Everything read is added to the
+	 * cache, call {@link #saveMetadataCache()} to keep it for the next run
+	 *
+	 * @param imageFiles The files to read
+	 * @param onFileRead Called with each file and its metadata as soon as the file has been read. Readers run in parallel so this may be called from several threads at once
+	 * @return The files that could not be read, these should be retried one at a time
+	 * @throws IOException If exiftool could not be run
+	 */
+	public List<File> readImageMetadata(List<File> imageFiles, BiConsumer<File, Map<Tag, String>> onFileRead) throws IOException
+	{
+		List<File> unreadFiles = Collections.synchronizedList(new ArrayList<>());
+		List<Future<Void>> readers = new ArrayList<>();
+		// Anything that has to be read gets cached once it's handed back
+		BiConsumer<File, Map<Tag, String>> onFileReadAndCache = (imageFile, imageMetadata) ->
+		{
+			this.metadataCache.put(imageFile, imageMetadata);
+			onFileRead.accept(imageFile, imageMetadata);
+		};
+
+		// Split the files by which backend reads them, skipping files we've already got in the cache
+		Queue<File> inProcessFiles = new ConcurrentLinkedQueue<>();
+		List<File> exifToolFiles = new ArrayList<>();
+		for (File imageFile : imageFiles)
+		{
+			Map<Tag, String> cachedMetadata = this.metadataCache.get(imageFile);
+			if (cachedMetadata != null)
+				onFileRead.accept(imageFile, cachedMetadata);
+			else if (this.getInProcessReader(imageFile) != null)
+				inProcessFiles.add(imageFile);
+			else
+				exifToolFiles.add(imageFile);
+		}
+
+		// Start one in-process reader per core, each reads files until the queue is empty. Anything it can't read is
+		// handed back so that exiftool can try it
+		for (Integer i = 0; i < Math.min(Runtime.getRuntime().availableProcessors(), inProcessFiles.size()); i++)
+		{
+			readers.add(this.batchReaders.submit(() ->
+			{
+				File imageFile;
+				while ((imageFile = inProcessFiles.poll()) != null && !Thread.currentThread().isInterrupted())
+				{
+					try
+					{
+						Map<Tag, String> imageMetadata = this.getInProcessReader(imageFile).readImageMetadata(imageFile);
+						this.filesReadInProcess.incrementAndGet();
+						onFileReadAndCache.accept(imageFile, imageMetadata);
+					}
+					catch (IOException | RuntimeException e)
+					{
+						unreadFiles.add(imageFile);
+					}
+				}
+				return null;
+			}));
+		}
+
+		if (!exifToolFiles.isEmpty())
+		{
+			// Without exiftool these files can't be read as a batch
+			if (this.exifToolPool == null)
+				unreadFiles.addAll(exifToolFiles);
+			else
+			{
+				List<Tag> tags = this.getTagsToRead();
+				Integer readerCount = this.exifToolPool.getMaxProcesses();
+				// Make the batches small enough that every process in the pool gets a share
+				Integer batchSize = Math.max(1, Math.min(BATCH_SIZE, (int) Math.ceil((double) exifToolFiles.size() / readerCount)));
+				Queue<List<File>> batches = new ConcurrentLinkedQueue<>();
+				for (Integer batchStart = 0; batchStart < exifToolFiles.size(); batchStart = batchStart + batchSize)
+					batches.add(exifToolFiles.subList(batchStart, Math.min(batchStart + batchSize, exifToolFiles.size())));
+
+				// Start one reader per process, each reads batches until the queue is empty
+				for (Integer i = 0; i < Math.min(readerCount, batches.size()); i++)
+				{
+					readers.add(this.batchReaders.submit(() ->
+					{
+						List<File> batch;
+						while ((batch = batches.poll()) != null)
+							unreadFiles.addAll(this.readBatch(batch, tags, onFileReadAndCache));
+						return null;
+					}));
+				}
+			}
+		}
+
+		// Wait for every reader to finish
+		try
+		{
+			for (Future<Void> reader : readers)
+				reader.get();
+		}
+		catch (InterruptedException e)
+		{
+			readers.forEach(reader -> reader.cancel(true));
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while reading image metadata");
+		}
+		catch (ExecutionException e)
+		{
+			readers.forEach(reader -> reader.cancel(true));
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new IOException("Error reading image metadata", e.getCause());
+		}
+		return unreadFiles;
+	}
+
+	/**
+	 * Reads a batch of files with a single exiftool command on a process borrowed from the pool
+	 *
+	 * @param batch The files to read
+	 * @param tags The tags to read from each file
+	 * @param onFileRead Called with each file and its metadata as soon as the file has been read
+	 * @return The files in the batch that exiftool could not read any metadata from
+	 * @throws IOException If exiftool could not be run
+	 */
+	private List<File> readBatch(List<File> batch, List<Tag> tags, BiConsumer<File, Map<Tag, String>> onFileRead) throws IOException
+	{
+		// Use the same arguments exiftool-lib uses for a single file, except with every file in the batch at the end
+		List<String> arguments = new ArrayList<>(StandardFormat.NUMERIC.getArgs());
+		arguments.add("-S");
+		for (Tag tag : tags)
+			arguments.add("-" + tag.getName());
+		for (File imageFile : batch)
+			arguments.add(imageFile.getAbsolutePath());
+		arguments.add("-execute");
+
+		BatchTagHandler batchTagHandler = new BatchTagHandler(batch, tags, onFileRead);
+		this.exifToolPool.run(process ->
+		{
+			process.execute(arguments, batchTagHandler);
+			return null;
+		});
+
+		// Anything exiftool didn't print tags for couldn't be read
+		return batch.stream().filter(imageFile -> !batchTagHandler.getFilesRead().contains(imageFile)).collect(Collectors.toList());
+	}
+
+	/**
+	 * @return Every tag we read from an image, our standard tags followed by our custom tags
+	 */
+	private List<Tag> getTagsToRead()
 	{
 		// This is a list of our standard tags
 		List<Tag> tags = new ArrayList<>(Arrays.asList(StandardTag.values()));
 		// Add our custom tags
 		tags.addAll(Arrays.asList(CustomTags.values()));
-		// Ask exiftool to get our image's metadata
-		return this.exifTool.getImageMeta(imageFile, tags);
+		return tags;
 	}
 
 	/**
@@ -211,18 +460,45 @@ public class MetadataManager
 	}
 
 	/**
-	 * Called to stop the ExifTool process
+	 * @return The pool of exiftool processes, used to show how busy the pool is
+	 */
+	public ExifToolPool getExifToolPool()
+	{
+		return this.exifToolPool;
+	}
+
+	/**
+	 * @return A short human readable description of how metadata is being read, used to show import progress
+	 */
+	public String getReaderStatus()
+	{
+		String inProcessStatus = this.metadataCache.getHits() + " files cached, " + this.filesReadInProcess.get() + " files read in-process";
+		return this.exifToolPool == null ? inProcessStatus : inProcessStatus + ", " + this.exifToolPool.getStatus();
+	}
+
+	/**
+	 * Writes any newly read metadata to the metadata cache file so it can be used the next time Calliope runs
+	 *
+	 * @throws IOException If the cache file could not be written
+	 */
+	public void saveMetadataCache() throws IOException
+	{
+		this.metadataCache.save();
+	}
+
+	/**
+	 * Called to stop the ExifTool processes and save the metadata cache
 	 */
 	public void shutdown()
 	{
-		if (this.exifTool != null)
+		this.batchReaders.shutdownNow();
+		try
 		{
-			// Close the exiftool process
-			try
-			{
-				this.exifTool.close();
-			}
-			catch (Exception ignored) {}
+			this.metadataCache.save();
 		}
+		catch (IOException ignored) {}
+		// Close the exiftool processes
+		if (this.exifToolPool != null)
+			this.exifToolPool.shutdown();
 	}
 }
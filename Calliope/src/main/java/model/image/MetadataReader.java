@@ -0,0 +1,22 @@
+package model.image;
+
+import com.thebuzzmedia.exiftool.Tag;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * A backend that reads an image file's metadata in the same form exiftool would return it
+ */
+public interface MetadataReader
+{
+	/**
+	 * Reads a file's metadata
+	 *
+	 * @param imageFile The file to read
+	 * @return The image's metadata as a map, values are formatted the way exiftool formats them with -n
+	 * @throws IOException If the image cannot be read
+	 */
+	Map<Tag, String> readImageMetadata(File imageFile) throws IOException;
+}
@@ -26,6 +26,15 @@ public class SettingsData
 	private ObjectProperty<DistanceUnits> distanceUnits = new SimpleObjectProperty<>(DistanceUnits.Meters);
 	private ObjectProperty<Double> popupDelaySec = new SimpleDoubleProperty(10).asObject();
 	private BooleanProperty disablePopups = new SimpleBooleanProperty(false);
+	private ObjectProperty<Integer> exifToolProcesses = new SimpleIntegerProperty(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2))).asObject();
+	private StringProperty inProcessMetadataFileTypes = new SimpleStringProperty("jpg,jpeg,tif,tiff");
+	private BooleanProperty lazyMetadataLoading = new SimpleBooleanProperty(false);
+	private ObjectProperty<Double> elevationGridSize = new SimpleDoubleProperty(10).asObject();
+	private StringProperty offlineElevationDirectory = new SimpleStringProperty("");
+	private ObjectProperty<Integer> concurrentUploads = new SimpleIntegerProperty(3).asObject();
+	private ObjectProperty<Integer> uploadPartSizeMB = new SimpleIntegerProperty(512).asObject();
+	private BooleanProperty adaptiveUploadPartSize = new SimpleBooleanProperty(false);
+	private BooleanProperty streamUploads = new SimpleBooleanProperty(false);
 
 	/**
 	 * Constructor adds all settings Calliope will use to the dictionary
@@ -48,6 +57,15 @@ public class SettingsData
 		this.distanceUnits.setValue(otherSettings.getDistanceUnits());
 		this.popupDelaySec.setValue(otherSettings.getPopupDelaySec());
 		this.disablePopups.setValue(otherSettings.getDisablePopups());
+		this.exifToolProcesses.setValue(otherSettings.getExifToolProcesses());
+		this.inProcessMetadataFileTypes.setValue(otherSettings.getInProcessMetadataFileTypes());
+		this.lazyMetadataLoading.setValue(otherSettings.getLazyMetadataLoading());
+		this.elevationGridSize.setValue(otherSettings.getElevationGridSize());
+		this.offlineElevationDirectory.setValue(otherSettings.getOfflineElevationDirectory());
+		this.concurrentUploads.setValue(otherSettings.getConcurrentUploads());
+		this.uploadPartSizeMB.setValue(otherSettings.getUploadPartSizeMB());
+		this.adaptiveUploadPartSize.setValue(otherSettings.getAdaptiveUploadPartSize());
+		this.streamUploads.setValue(otherSettings.getStreamUploads());
 	}
 
 	/**
@@ -61,6 +79,15 @@ public class SettingsData
 		settingList.add(new CustomPropertyItem<>("Distance Units: ", "Units", "The units to be used by the program", distanceUnits, DistanceUnits.class));
 		settingList.add(new CustomPropertyItem<>("Popup Hide Delay (in seconds): ", "Options", "How many seconds the popup should wait before disappearing", popupDelaySec, Double.class));
 		settingList.add(new CustomPropertyItem<>("Disable Popups: ", "Options", "Lose some program functionality to avoid popups at all costs", disablePopups, Boolean.class));
+		settingList.add(new CustomPropertyItem<>("Metadata Reader Processes: ", "Options", "How many exiftool processes may read image metadata at the same time during an import", exifToolProcesses, Integer.class));
+		settingList.add(new CustomPropertyItem<>("In-Process Metadata File Types: ", "Options", "Comma separated file extensions whose metadata is read inside Calliope instead of by exiftool, which is much faster for common formats like JPEG", inProcessMetadataFileTypes, String.class));
+		settingList.add(new CustomPropertyItem<>("Load Metadata In Background: ", "Options", "Show imported images right away and read their metadata in the background, images you select are read first", lazyMetadataLoading, Boolean.class));
+		settingList.add(new CustomPropertyItem<>("Elevation Grid Size (in meters): ", "Options", "Images taken within a cell of this size share one ground elevation lookup, smaller cells are more accurate but need more web requests", elevationGridSize, Double.class));
+		settingList.add(new CustomPropertyItem<>("Offline Elevation Data Directory: ", "Options", "A directory of SRTM .hgt or GeoTIFF elevation tiles to use instead of the elevation web service, useful at sites without a connection", offlineElevationDirectory, String.class));
+		settingList.add(new CustomPropertyItem<>("Concurrent Upload Parts: ", "Options", "How many TAR file parts may be uploaded to CyVerse at the same time, each over its own connection", concurrentUploads, Integer.class));
+		settingList.add(new CustomPropertyItem<>("Upload Part Size (in MB): ", "Options", "How large each TAR file part sent to CyVerse should be, smaller parts are cheaper to send again if an upload fails", uploadPartSizeMB, Integer.class));
+		settingList.add(new CustomPropertyItem<>("Adapt Upload Part Size: ", "Options", "Start with the upload part size and then grow or shrink parts based on how fast and how reliably they upload", adaptiveUploadPartSize, Boolean.class));
+		settingList.add(new CustomPropertyItem<>("Stream Uploads Without Temporary Files: ", "Options", "Write each TAR file part straight to CyVerse instead of building it on disk first, so uploads don't need any free disk space", streamUploads, Boolean.class));
 	}
 
 	/**
@@ -402,4 +429,139 @@ public class SettingsData
 	{
 		return disablePopups;
 	}
+
+	public void setExifToolProcesses(Integer exifToolProcesses)
+	{
+		this.exifToolProcesses.set(exifToolProcesses);
+	}
+
+	public Integer getExifToolProcesses()
+	{
+		return this.exifToolProcesses.get();
+	}
+
+	public ObjectProperty<Integer> exifToolProcessesProperty()
+	{
+		return this.exifToolProcesses;
+	}
+
+	public void setInProcessMetadataFileTypes(String inProcessMetadataFileTypes)
+	{
+		this.inProcessMetadataFileTypes.set(inProcessMetadataFileTypes);
+	}
+
+	public String getInProcessMetadataFileTypes()
+	{
+		return this.inProcessMetadataFileTypes.get();
+	}
+
+	public StringProperty inProcessMetadataFileTypesProperty()
+	{
+		return this.inProcessMetadataFileTypes;
+	}
+
+	public void setLazyMetadataLoading(Boolean lazyMetadataLoading)
+	{
+		this.lazyMetadataLoading.set(lazyMetadataLoading);
+	}
+
+	public Boolean getLazyMetadataLoading()
+	{
+		return this.lazyMetadataLoading.get();
+	}
+
+	public BooleanProperty lazyMetadataLoadingProperty()
+	{
+		return this.lazyMetadataLoading;
+	}
+
+	public void setElevationGridSize(Double elevationGridSize)
+	{
+		this.elevationGridSize.setValue(elevationGridSize);
+	}
+
+	public Double getElevationGridSize()
+	{
+		return this.elevationGridSize.getValue();
+	}
+
+	public ObjectProperty<Double> elevationGridSizeProperty()
+	{
+		return this.elevationGridSize;
+	}
+
+	public void setOfflineElevationDirectory(String offlineElevationDirectory)
+	{
+		this.offlineElevationDirectory.setValue(offlineElevationDirectory);
+	}
+
+	public String getOfflineElevationDirectory()
+	{
+		return this.offlineElevationDirectory.getValue();
+	}
+
+	public StringProperty offlineElevationDirectoryProperty()
+	{
+		return this.offlineElevationDirectory;
+	}
+
+	public void setConcurrentUploads(Integer concurrentUploads)
+	{
+		this.concurrentUploads.set(concurrentUploads);
+	}
+
+	public Integer getConcurrentUploads()
+	{
+		return this.concurrentUploads.get();
+	}
+
+	public ObjectProperty<Integer> concurrentUploadsProperty()
+	{
+		return this.concurrentUploads;
+	}
+
+	public void setUploadPartSizeMB(Integer uploadPartSizeMB)
+	{
+		this.uploadPartSizeMB.set(uploadPartSizeMB);
+	}
+
+	public Integer getUploadPartSizeMB()
+	{
+		return this.uploadPartSizeMB.get();
+	}
+
+	public ObjectProperty<Integer> uploadPartSizeMBProperty()
+	{
+		return this.uploadPartSizeMB;
+	}
+
+	public void setAdaptiveUploadPartSize(Boolean adaptiveUploadPartSize)
+	{
+		this.adaptiveUploadPartSize.set(adaptiveUploadPartSize);
+	}
+
+	public Boolean getAdaptiveUploadPartSize()
+	{
+		return this.adaptiveUploadPartSize.get();
+	}
+
+	public BooleanProperty adaptiveUploadPartSizeProperty()
+	{
+		return this.adaptiveUploadPartSize;
+	}
+
+	public void setStreamUploads(Boolean streamUploads)
+	{
+		this.streamUploads.set(streamUploads);
+	}
+
+	public Boolean getStreamUploads()
+	{
+		return this.streamUploads.get();
+	}
+
+	public BooleanProperty streamUploadsProperty()
+	{
+		return this.streamUploads;
+	}
 }
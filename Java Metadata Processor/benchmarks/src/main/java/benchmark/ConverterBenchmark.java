@@ -0,0 +1,67 @@
+package benchmark;
+
+import com.drew.imaging.ImageProcessingException;
+import com.drew.metadata.Metadata;
+import model.CompiledMetadataConverter;
+import model.IndexableRecord;
+import model.MetadataConverter;
+import model.MetadataParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting parsed metadata into indexable metadata, both from the raw string map and through the compiled
+ * converter.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class ConverterBenchmark
+{
+	private Map<String, String> rawMetadata;
+	private Metadata metadata;
+
+	private final MetadataConverter converter = new MetadataConverter();
+	private final CompiledMetadataConverter compiledConverter = new CompiledMetadataConverter();
+	private final IndexableRecord record = new IndexableRecord();
+
+	@Setup
+	public void setup() throws IOException, ImageProcessingException
+	{
+		this.rawMetadata = Fixtures.rawMetadata();
+		this.metadata = new MetadataParser().read(Fixtures.write(Fixtures.Kind.JPEG)).getMetadata();
+	}
+
+	/**
+	 * The string map converter used by the single file and bulk list entry points
+	 */
+	@Benchmark
+	public Map<String, Object> convertRawMap()
+	{
+		return this.converter.convertRawToIndexable(this.rawMetadata);
+	}
+
+	/**
+	 * The compiled converter used by the indexing pipeline
+	 */
+	@Benchmark
+	public boolean convertCompiled()
+	{
+		return this.compiledConverter.convert(this.metadata, this.record);
+	}
+}
@@ -0,0 +1,250 @@
+package benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generates synthetic drone images for the benchmarks. Each image carries the same GPS and date tags a real drone
+ * image does, surrounded by enough image data that reading the whole file is noticeably more expensive than reading
+ * just its metadata.
+ */
+public class Fixtures
+{
+	// The size of the fake image data stored in each fixture
+	private static final int IMAGE_DATA_SIZE = 8 * 1024 * 1024;
+
+	// TIFF field types
+	private static final short TYPE_BYTE = 1;
+	private static final short TYPE_ASCII = 2;
+	private static final short TYPE_LONG = 4;
+	private static final short TYPE_RATIONAL = 5;
+
+	/**
+	 * The kinds of fixture that can be generated
+	 */
+	public enum Kind
+	{
+		JPEG("jpg"),
+		TIFF("tif"),
+		DNG("dng");
+
+		// The file extension used for this kind of fixture
+		private final String extension;
+
+		Kind(String extension)
+		{
+			this.extension = extension;
+		}
+	}
+
+	/**
+	 * Writes a fixture into a temporary file that is deleted when the JVM exits
+	 *
+	 * @param kind The kind of fixture to write
+	 * @return The file the fixture was written to
+	 * @throws IOException If the file could not be written
+	 */
+	public static File write(Kind kind) throws IOException
+	{
+		File file = File.createTempFile("fixture", "." + kind.extension);
+		file.deleteOnExit();
+		Files.write(file.toPath(), create(kind));
+		return file;
+	}
+
+	/**
+	 * Creates the bytes of a fixture
+	 *
+	 * @param kind The kind of fixture to create
+	 * @return The fixture's bytes
+	 */
+	public static byte[] create(Kind kind)
+	{
+		switch (kind)
+		{
+			case JPEG:
+				return jpeg();
+			case TIFF:
+				// Plain TIFFs usually store their IFD up front with the strips after it
+				return tiff(false, false);
+			case DNG:
+				// DNGs written by cameras tend to put the IFD after the raw data
+				return tiff(true, true);
+			default:
+				throw new IllegalArgumentException("Unknown fixture kind " + kind);
+		}
+	}
+
+	/**
+	 * @return The raw metadata map MetadataParser produces for the fixtures, as fed into MetadataConverter
+	 */
+	public static Map<String, String> rawMetadata()
+	{
+		Map<String, String> rawMetadata = new HashMap<>();
+		rawMetadata.put("[Exif IFD0] Image Width", "4000 pixels");
+		rawMetadata.put("[Exif IFD0] Date/Time", "2018:06:01 12:34:56");
+		rawMetadata.put("[Exif IFD0] Make", "DJI");
+		rawMetadata.put("[Exif IFD0] Model", "FC6310");
+		rawMetadata.put("[Exif SubIFD] Exposure Time", "1/500 sec");
+		rawMetadata.put("[Exif SubIFD] F-Number", "f/5.6");
+		rawMetadata.put("[Exif SubIFD] ISO Speed Ratings", "100");
+		rawMetadata.put("[GPS] GPS Latitude Ref", "N");
+		rawMetadata.put("[GPS] GPS Latitude", "32° 14' 23.45\"");
+		rawMetadata.put("[GPS] GPS Longitude Ref", "W");
+		rawMetadata.put("[GPS] GPS Longitude", "-110° 57' 12.34\"");
+		rawMetadata.put("[GPS] GPS Altitude", "750 metres");
+		rawMetadata.put("[File] File Name", "DJI_0001.JPG");
+		rawMetadata.put("[File] File Size", "8388608 bytes");
+		return rawMetadata;
+	}
+
+	/**
+	 * Creates a JPEG with an Exif APP1 segment, some other APP segments, and a block of scan data
+	 *
+	 * @return The JPEG's bytes
+	 */
+	private static byte[] jpeg()
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		// Start of image
+		out.write(0xFF);
+		out.write(0xD8);
+
+		// APP1 holding the Exif TIFF
+		byte[] exifHeader = "Exif\0\0".getBytes(StandardCharsets.US_ASCII);
+		byte[] exifTiff = tiff(false, false, 0);
+		writeSegment(out, 0xE1, concat(exifHeader, exifTiff));
+
+		// APP2 segments such as ICC profiles or FlashPix previews, which the metadata readers don't need
+		for (int i = 0; i < 4; i++)
+			writeSegment(out, 0xE2, new byte[60000]);
+
+		// Start of scan followed by the compressed image data
+		writeSegment(out, 0xDA, new byte[] { 3, 1, 0, 2, 0x11, 3, 0x11, 0, 0x3F, 0 });
+		byte[] scan = new byte[IMAGE_DATA_SIZE];
+		Arrays.fill(scan, (byte) 0x12);
+		out.write(scan, 0, scan.length);
+
+		// End of image
+		out.write(0xFF);
+		out.write(0xD9);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Creates a little endian TIFF holding image data
+	 *
+	 * @param dng If the TIFF should be tagged as a DNG
+	 * @param ifdAfterData If the IFD should be stored after the image data instead of before it
+	 * @return The TIFF's bytes
+	 */
+	private static byte[] tiff(boolean dng, boolean ifdAfterData)
+	{
+		return tiff(dng, ifdAfterData, IMAGE_DATA_SIZE);
+	}
+
+	/**
+	 * Creates a little endian TIFF with an IFD0 holding the image width and date and a GPS IFD holding the location
+	 *
+	 * @param dng If the TIFF should be tagged as a DNG
+	 * @param ifdAfterData If the IFD should be stored after the image data instead of before it
+	 * @param imageDataSize The number of bytes of image data to store
+	 * @return The TIFF's bytes
+	 */
+	private static byte[] tiff(boolean dng, boolean ifdAfterData, int imageDataSize)
+	{
+		byte[] date = "2018:06:01 12:34:56\0".getBytes(StandardCharsets.US_ASCII);
+		int ifd0Entries = dng ? 4 : 3;
+		int gpsEntries = 5;
+
+		// Work out where everything goes
+		int ifd0Offset = 8 + (ifdAfterData ? imageDataSize : 0);
+		int dateOffset = ifd0Offset + 2 + ifd0Entries * 12 + 4;
+		int gpsOffset = dateOffset + date.length;
+		int latitudeOffset = gpsOffset + 2 + gpsEntries * 12 + 4;
+		int longitudeOffset = latitudeOffset + 24;
+		int altitudeOffset = longitudeOffset + 24;
+		int metadataEnd = altitudeOffset + 8;
+		int totalSize = ifdAfterData ? metadataEnd : metadataEnd + imageDataSize;
+
+		ByteBuffer buffer = ByteBuffer.allocate(totalSize).order(ByteOrder.LITTLE_ENDIAN);
+		// Header
+		buffer.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(ifd0Offset);
+
+		// IFD0
+		buffer.position(ifd0Offset);
+		buffer.putShort((short) ifd0Entries);
+		writeEntry(buffer, 0x0100, TYPE_LONG, 1, 4000);
+		writeEntry(buffer, 0x0132, TYPE_ASCII, date.length, dateOffset);
+		writeEntry(buffer, 0x8825, TYPE_LONG, 1, gpsOffset);
+		if (dng)
+			// DNGVersion 1.4.0.0 stored inline
+			writeEntry(buffer, 0xC612, TYPE_BYTE, 4, 0x00000401);
+		buffer.putInt(0);
+		buffer.put(date);
+
+		// GPS IFD
+		buffer.putShort((short) gpsEntries);
+		writeEntry(buffer, 0x0001, TYPE_ASCII, 2, 'N');
+		writeEntry(buffer, 0x0002, TYPE_RATIONAL, 3, latitudeOffset);
+		writeEntry(buffer, 0x0003, TYPE_ASCII, 2, 'W');
+		writeEntry(buffer, 0x0004, TYPE_RATIONAL, 3, longitudeOffset);
+		writeEntry(buffer, 0x0006, TYPE_RATIONAL, 1, altitudeOffset);
+		buffer.putInt(0);
+		buffer.putInt(32).putInt(1).putInt(14).putInt(1).putInt(2345).putInt(100);
+		buffer.putInt(110).putInt(1).putInt(57).putInt(1).putInt(1234).putInt(100);
+		buffer.putInt(7501).putInt(10);
+
+		return buffer.array();
+	}
+
+	/**
+	 * Writes a single 12 byte IFD entry
+	 *
+	 * @param buffer The buffer to write into
+	 * @param tag The tag id
+	 * @param type The field type
+	 * @param count The number of values
+	 * @param valueOrOffset The value if it fits in 4 bytes, otherwise the offset of the value
+	 */
+	private static void writeEntry(ByteBuffer buffer, int tag, short type, int count, int valueOrOffset)
+	{
+		buffer.putShort((short) tag).putShort(type).putInt(count).putInt(valueOrOffset);
+	}
+
+	/**
+	 * Writes a JPEG marker segment
+	 *
+	 * @param out The stream to write into
+	 * @param marker The marker byte following 0xFF
+	 * @param payload The segment's payload
+	 */
+	private static void writeSegment(ByteArrayOutputStream out, int marker, byte[] payload)
+	{
+		int length = payload.length + 2;
+		out.write(0xFF);
+		out.write(marker);
+		out.write((length >> 8) & 0xFF);
+		out.write(length & 0xFF);
+		out.write(payload, 0, payload.length);
+	}
+
+	/**
+	 * @return The two arrays joined together
+	 */
+	private static byte[] concat(byte[] first, byte[] second)
+	{
+		byte[] joined = new byte[first.length + second.length];
+		System.arraycopy(first, 0, joined, 0, first.length);
+		System.arraycopy(second, 0, joined, first.length, second.length);
+		return joined;
+	}
+}
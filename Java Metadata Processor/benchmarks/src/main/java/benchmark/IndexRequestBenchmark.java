@@ -0,0 +1,132 @@
+package benchmark;
+
+import com.drew.imaging.ImageProcessingException;
+import model.CompiledMetadataConverter;
+import model.IndexableRecord;
+import model.MetadataConverter;
+import model.MetadataIndexer;
+import model.MetadataParser;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serializing index request sources and building the NDJSON body of bulk requests
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class IndexRequestBenchmark
+{
+	private final MetadataIndexer indexer = new MetadataIndexer();
+	private Map<String, Object> cleanedMetadata;
+	private final IndexableRecord record = new IndexableRecord();
+
+	@Setup
+	public void setup() throws IOException, ImageProcessingException
+	{
+		this.cleanedMetadata = new MetadataConverter().convertRawToIndexable(Fixtures.rawMetadata());
+		new CompiledMetadataConverter().convert(new MetadataParser().read(Fixtures.write(Fixtures.Kind.JPEG)).getMetadata(), this.record);
+	}
+
+	/**
+	 * Serializing a single source from the converted map
+	 */
+	@Benchmark
+	public IndexRequest buildFromMap()
+	{
+		return this.indexer.buildIndexRequest(this.cleanedMetadata);
+	}
+
+	/**
+	 * Serializing a single source from a compiled record
+	 */
+	@Benchmark
+	public IndexRequest buildFromRecord() throws IOException
+	{
+		return this.indexer.buildIndexRequest(this.record);
+	}
+
+	/**
+	 * Building a bulk request of converted maps and writing its body
+	 */
+	@Benchmark
+	public long bulkBodyFromMaps(BulkSize bulkSize) throws IOException
+	{
+		BulkRequest bulkRequest = new BulkRequest();
+		for (int i = 0; i < bulkSize.documents; i++)
+			bulkRequest.add(this.indexer.buildIndexRequest(this.cleanedMetadata));
+		return writeBulkBody(bulkRequest);
+	}
+
+	/**
+	 * Building a bulk request of compiled records and writing its body
+	 */
+	@Benchmark
+	public long bulkBodyFromRecords(BulkSize bulkSize) throws IOException
+	{
+		BulkRequest bulkRequest = new BulkRequest();
+		for (int i = 0; i < bulkSize.documents; i++)
+			bulkRequest.add(this.indexer.buildIndexRequest(this.record));
+		return writeBulkBody(bulkRequest);
+	}
+
+	/**
+	 * Writes a bulk request's body the same way the rest client does, an action line followed by the source line
+	 *
+	 * @param bulkRequest The bulk request to write
+	 * @return The size of the body in bytes
+	 * @throws IOException If the body could not be written
+	 */
+	private static long writeBulkBody(BulkRequest bulkRequest) throws IOException
+	{
+		try (BytesStreamOutput body = new BytesStreamOutput())
+		{
+			for (Object request : bulkRequest.requests())
+			{
+				IndexRequest indexRequest = (IndexRequest) request;
+				try (XContentBuilder action = XContentFactory.jsonBuilder(body))
+				{
+					action.startObject().startObject("index")
+							.field("_index", indexRequest.index())
+							.field("_type", indexRequest.type())
+							.endObject().endObject();
+				}
+				body.write('\n');
+				indexRequest.source().writeTo(body);
+				body.write('\n');
+			}
+			return body.size();
+		}
+	}
+
+	/**
+	 * The number of documents in each bulk request, only used by the bulk benchmarks
+	 */
+	@State(Scope.Benchmark)
+	public static class BulkSize
+	{
+		@Param({ "1000", "10000" })
+		public int documents;
+	}
+}
@@ -0,0 +1,79 @@
+package benchmark;
+
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.ImageProcessingException;
+import com.drew.metadata.Metadata;
+import model.MetadataParser;
+import model.MetadataReadResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading metadata from JPEG, TIFF, and DNG files. The full reader is measured alongside MetadataParser so
+ * the benefit of the header-only path is visible.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Benchmark)
+public class ParserBenchmark
+{
+	// The kind of image to parse
+	@Param({ "JPEG", "TIFF", "DNG" })
+	public Fixtures.Kind kind;
+
+	private File fixture;
+	private MetadataParser parser;
+	private Metadata metadata;
+
+	@Setup
+	public void setup() throws IOException, ImageProcessingException
+	{
+		this.fixture = Fixtures.write(this.kind);
+		this.parser = new MetadataParser();
+		this.metadata = this.parser.read(this.fixture).getMetadata();
+	}
+
+	/**
+	 * MetadataParser's read, which tries the header-only path first
+	 */
+	@Benchmark
+	public MetadataReadResult read() throws IOException, ImageProcessingException
+	{
+		return this.parser.read(this.fixture);
+	}
+
+	/**
+	 * metadata-extractor's own reader, which reads the whole file
+	 */
+	@Benchmark
+	public Metadata readFull() throws IOException, ImageProcessingException
+	{
+		return ImageMetadataReader.readMetadata(this.fixture);
+	}
+
+	/**
+	 * Flattening parsed metadata into the raw key -> value map
+	 */
+	@Benchmark
+	public Map<String, String> flatten()
+	{
+		return this.parser.flatten(this.metadata);
+	}
+}
@@ -1,17 +1,26 @@
 package controller;
 
+import model.BulkIndexer;
+import model.BulkSpool;
+import model.DirectoryWatcher;
 import model.DroneLogger;
+import model.IndexManifest;
+import model.IndexingPipeline;
 import model.MetadataIndexer;
-import model.MetadataParser;
-import org.apache.commons.io.FileUtils;
+import model.PathListener;
+import model.ProcessorSettings;
+import model.SpoolReplayer;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Primary class entry point into the program
@@ -19,30 +28,67 @@ import java.util.stream.Collectors;
 public class DroneMetadata
 {
 	private static final String[] ACCEPTED_EXTENSIONS = { "jpg", "JPG", "jpeg", "JPEG", "tiff", "TIFF", "tif", "TIF", "psd", "PSD", "png", "PNG", "bmp", "BMP", "gif", "GIF", "ico", "ICO" };
+	// The name of the manifest file written into an indexed directory if no other location is given
+	private static final String DEFAULT_MANIFEST_NAME = ".metadata-index-manifest";
+	// The manifest path used to disable the manifest completely
+	private static final String NO_MANIFEST = "none";
 
 	/**
-	 * Main expects one command line argument, a file or directory to index
+	 * Main expects one command line argument, a file or directory to index, optionally preceded by --name=value options
 	 *
-	 * @param args Should contain a single argument with a file name
+	 * @param args Should contain any options followed by a single argument with a file name
 	 */
 	public static void main(String[] args)
 	{
+		// Any argument starting with -- is an option, everything else is a file to index
+		ProcessorSettings settings = new ProcessorSettings();
+		List<String> fileArguments = new ArrayList<>();
+		for (String argument : args)
+		{
+			if (argument.startsWith("--"))
+			{
+				if (!settings.applyOption(argument))
+				{
+					DroneLogger.logError("Unknown or invalid option given! (" + argument + ")");
+					System.exit(1);
+				}
+			}
+			else
+			{
+				fileArguments.add(argument);
+			}
+		}
+
+		// Replaying a spool doesn't index any files
+		if (settings.getReplayDirectory() != null)
+		{
+			DroneMetadata.replaySpool(settings);
+			return;
+		}
+
+		// In daemon mode every argument is a directory to watch, and we never return
+		if (settings.isDaemon())
+		{
+			DroneMetadata.runDaemon(fileArguments, settings);
+			return;
+		}
+
 		// Expect one command line argument with the name of the file to process
-		if (args.length == 0)
+		if (fileArguments.size() == 0)
 		{
 			DroneLogger.logError("Too few command line arguments given, execute with one argument, the file to indexSingle!");
 			System.exit(1);
 		}
 
 		// We got too many arguments
-		if (args.length > 1)
+		if (fileArguments.size() > 1)
 		{
 			DroneLogger.logError("Too many command line arguments given, execute with one argument, the file to indexSingle!");
 			System.exit(1);
 		}
 
 		// Pull the one command line argument
-		String filePath = args[0];
+		String filePath = fileArguments.get(0);
 		// Create the file
 		File fileToIndex = new File(filePath);
 
@@ -63,15 +109,15 @@ public class DroneMetadata
 		// Process the file
 		DroneLogger.logDebug("Input file/directory validated, beginning processing...");
 
-		// If it's a directory, use bulk insert
-		if (fileToIndex.isDirectory())
+		// If it's a directory or an archive of images, use bulk insert
+		if (fileToIndex.isDirectory() || IndexingPipeline.isArchive(fileToIndex))
 		{
-			DroneMetadata.indexDirectory(fileToIndex);
+			DroneMetadata.indexDirectory(fileToIndex, settings);
 		}
-		// If it's a file use single insert
+		// If it's a single image it still goes through the pipeline so it gets the same id and fields
 		else if (fileToIndex.isFile())
 		{
-			DroneMetadata.indexFile(fileToIndex);
+			DroneMetadata.indexFile(fileToIndex, settings);
 		}
 		// Do nothing
 		else
@@ -82,25 +128,19 @@ public class DroneMetadata
 	}
 
 	/**
-	 * Given a valid file this function indexes it
+	 * Given a valid file this function indexes it. The file goes through a pipeline of its own so it is converted the
+	 * same way, and gets the same document id from the manifest, as it would if its directory were indexed
 	 *
 	 * @param file The file to index into elastic search
+	 * @param settings The settings used to configure the pipeline
 	 */
-	private static void indexFile(File file)
+	private static void indexFile(File file, ProcessorSettings settings)
 	{
 		// Grab the file's extension, if it's valid we continue
 		String extension = FilenameUtils.getExtension(file.getAbsolutePath());
 		if (Arrays.stream(ACCEPTED_EXTENSIONS).anyMatch(extension::equals))
 		{
-			// The metadata parser used to parse the image file
-			MetadataParser parser = new MetadataParser();
-			// The raw metadata as key->value pairs from the parser
-			Map<String, String> rawMetadata = parser.parse(file);
-			// Print out a status message
-			DroneLogger.logDebug("Metadata parsed, begin indexing...");
-			// Index the metadata into elasticsearch
-			MetadataIndexer indexer = new MetadataIndexer();
-			indexer.indexSingle(rawMetadata);
+			DroneMetadata.indexDirectory(file, settings);
 		}
 		// Invalid file extension so throw this file away
 		else
@@ -111,19 +151,225 @@ public class DroneMetadata
 	}
 
 	/**
-	 * Works like indexFile, except it performs the operation on an entire directory recursively using bulk optimizations
+	 * Indexes an entire directory recursively using a parallel pipeline that sends bulk requests as soon as they fill
+	 * up. Archives and single images are indexed the same way.
+	 *
+	 * @param directory The directory, archive or image to index
+	 * @param settings The settings used to size the indexing pipeline
+	 */
+	private static void indexDirectory(File directory, ProcessorSettings settings)
+	{
+		try (MetadataIndexer indexer = new MetadataIndexer())
+		{
+			// Open the manifest so files indexed on an earlier run can be skipped
+			IndexManifest manifest = DroneMetadata.openManifest(directory, settings);
+			// Create the pipeline and start the parser, converter, and flusher stages
+			IndexingPipeline pipeline = new IndexingPipeline(settings, indexer, ACCEPTED_EXTENSIONS, manifest);
+			pipeline.start();
+			// Walk the directory on this thread, feeding files into the pipeline. A single file is walked as itself
+			pipeline.walk(directory);
+			// Wait for every file to be indexed
+			pipeline.finish();
+			DroneMetadata.writeMetrics(pipeline, settings);
+			if (manifest != null)
+				manifest.close();
+		}
+		catch (IOException e)
+		{
+			DroneLogger.logError("Error reading the files to index!");
+			e.printStackTrace();
+		}
+		catch (InterruptedException e)
+		{
+			DroneLogger.logError("Indexing was interrupted before it could finish!");
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Sends every segment in a spool directory to elasticsearch
+	 *
+	 * @param settings The settings containing the spool directory and bulk limits
+	 */
+	private static void replaySpool(ProcessorSettings settings)
+	{
+		File directory = new File(settings.getReplayDirectory());
+		if (!directory.isDirectory() || !directory.canRead())
+		{
+			DroneLogger.logError("Given spool directory does not exist or is unreadable! (" + directory + ")");
+			System.exit(1);
+		}
+
+		try (MetadataIndexer indexer = new MetadataIndexer(); BulkIndexer bulkIndexer = new BulkIndexer(indexer, settings))
+		{
+			new SpoolReplayer(new BulkSpool(directory), bulkIndexer).replay();
+		}
+		catch (IOException e)
+		{
+			DroneLogger.logError("Error replaying the spool!");
+			e.printStackTrace();
+		}
+		catch (InterruptedException e)
+		{
+			DroneLogger.logError("Replaying was interrupted before it could finish!");
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Runs the processor as a long-lived daemon which indexes files as they appear in watched directories, or as their
+	 * paths are written to standard input or a local socket. Reusing one JVM and one elasticsearch client avoids paying
+	 * startup costs for every file during a bulk upload.
+	 *
+	 * @param directoryPaths The directories to watch
+	 * @param settings The settings used to configure the daemon
+	 */
+	private static void runDaemon(List<String> directoryPaths, ProcessorSettings settings)
+	{
+		// We need somewhere to get files from
+		if (directoryPaths.isEmpty() && !settings.shouldReadStdin() && settings.getSocketPort() == null)
+		{
+			DroneLogger.logError("Daemon mode needs at least one directory to watch, --stdin, or --socket-port!");
+			System.exit(1);
+		}
+
+		// A daemon never finishes, so the index would be left without refreshes or replicas forever
+		if (settings.isBulkLoad())
+		{
+			DroneLogger.logError("The bulk load profile can't be used in daemon mode!");
+			System.exit(1);
+		}
+
+		// Make sure every watched directory is valid
+		List<File> directories = new ArrayList<>();
+		for (String directoryPath : directoryPaths)
+		{
+			File directory = new File(directoryPath);
+			if (!directory.isDirectory() || !directory.canRead())
+			{
+				DroneLogger.logError("Given directory to watch does not exist or is unreadable! (" + directoryPath + ")");
+				System.exit(1);
+			}
+			directories.add(directory);
+		}
+
+		try
+		{
+			// A daemon may watch many directories, so the manifest is only used if a location was given
+			String manifestPath = settings.getManifestPath();
+			IndexManifest manifest = manifestPath == null || NO_MANIFEST.equals(manifestPath) ? null : new IndexManifest(new File(manifestPath));
+
+			MetadataIndexer indexer = new MetadataIndexer();
+			IndexingPipeline pipeline = new IndexingPipeline(settings, indexer, ACCEPTED_EXTENSIONS, manifest);
+			pipeline.start();
+
+			// Start watching each directory
+			DirectoryWatcher watcher = new DirectoryWatcher(pipeline, settings.getDebounceMillis());
+			for (File directory : directories)
+				watcher.watch(directory, settings.shouldScanExisting());
+			watcher.start();
+
+			// Listen for paths on a socket if requested
+			PathListener pathListener = new PathListener(pipeline);
+			if (settings.getSocketPort() != null)
+				pathListener.listen(settings.getSocketPort());
+
+			// Rewrite the metrics files every so often so a running daemon can be watched
+			ScheduledExecutorService metricsWriter = Executors.newSingleThreadScheduledExecutor(runnable ->
+			{
+				Thread thread = new Thread(runnable, "metrics-writer");
+				thread.setDaemon(true);
+				return thread;
+			});
+			if (settings.getMetricsPath() != null)
+				metricsWriter.scheduleAtFixedRate(() -> DroneMetadata.writeMetrics(pipeline, settings), settings.getMetricsIntervalMillis(), settings.getMetricsIntervalMillis(), TimeUnit.MILLISECONDS);
+
+			// When we're asked to stop, drain everything that's in flight before exiting
+			Runtime.getRuntime().addShutdownHook(new Thread(() ->
+			{
+				DroneLogger.logDebug("Shutting down, indexing remaining files...");
+				try
+				{
+					pathListener.close();
+					watcher.close();
+					metricsWriter.shutdown();
+					pipeline.finish();
+					DroneMetadata.writeMetrics(pipeline, settings);
+					if (manifest != null)
+						manifest.close();
+					indexer.close();
+				}
+				catch (IOException e)
+				{
+					DroneLogger.logError("Error shutting down the daemon cleanly!");
+					e.printStackTrace();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}));
+
+			DroneLogger.logDebug("Daemon started, waiting for files...");
+
+			if (settings.shouldReadStdin())
+			{
+				pathListener.read(System.in);
+				// Standard input closing means our caller is done with us, unless we still have other sources
+				if (directories.isEmpty() && settings.getSocketPort() == null)
+					System.exit(0);
+			}
+
+			// Sleep forever, the worker threads do all the work until we're killed
+			new CountDownLatch(1).await();
+		}
+		catch (IOException e)
+		{
+			DroneLogger.logError("Error starting the daemon!");
+			e.printStackTrace();
+			System.exit(1);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Writes a pipeline's stage metrics to the metrics files if a metrics path was given
+	 *
+	 * @param pipeline The pipeline to report on
+	 * @param settings The settings which may contain a metrics path
+	 */
+	private static void writeMetrics(IndexingPipeline pipeline, ProcessorSettings settings)
+	{
+		if (settings.getMetricsPath() == null)
+			return;
+		try
+		{
+			pipeline.getMetrics().writeFiles(settings.getMetricsPath());
+		}
+		catch (IOException e)
+		{
+			DroneLogger.logError("Could not write the metrics files! " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Opens the manifest used to checkpoint a directory's indexing progress
 	 *
-	 * @param directory The directory to recursively index
+	 * @param directory The directory or archive being indexed
+	 * @param settings The settings which may contain a manifest location
+	 * @return The manifest or null if the manifest is disabled
+	 * @throws IOException If the manifest exists but could not be read
 	 */
-	private static void indexDirectory(File directory)
+	private static IndexManifest openManifest(File directory, ProcessorSettings settings) throws IOException
 	{
-		// The files in a all subdirecties (recursive)
-		Collection<File> files = FileUtils.listFiles(directory, ACCEPTED_EXTENSIONS, true);
-		// Map the list of files to their metadata using the parser
-		MetadataParser parser = new MetadataParser();
-		List<Map<String, String>> rawMetadata = files.stream().map(parser::parse).collect(Collectors.toList());
-		// Index these files in bulk
-		MetadataIndexer indexer = new MetadataIndexer();
-		indexer.indexBulk(rawMetadata);
+		String manifestPath = settings.getManifestPath();
+		if (NO_MANIFEST.equals(manifestPath))
+			return null;
+		// An archive's manifest goes next to it
+		File manifestDirectory = directory.isDirectory() ? directory : directory.getAbsoluteFile().getParentFile();
+		return new IndexManifest(manifestPath == null ? new File(manifestDirectory, DEFAULT_MANIFEST_NAME) : new File(manifestPath));
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,113 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An input stream over a window of a file. Skips move the read position without touching the disk, so segments that
+ * aren't needed cost nothing. Every byte actually read counts against a byte budget, and once the budget is spent
+ * further reads throw a ByteBudgetExceededException.
+ */
+public class BoundedChannelInputStream extends InputStream
+{
+	// The channel to read from
+	private final FileChannel channel;
+	// The offset into the channel where this window ends
+	private final long windowEnd;
+	// The maximum number of bytes that may be read off of the disk
+	private final long byteBudget;
+
+	// The current read position in the channel
+	private long position;
+	// The number of bytes read off of the disk so far
+	private long bytesRead = 0;
+	// Set if a read was refused because of the byte budget
+	private Boolean budgetExceeded = false;
+
+	/**
+	 * Constructor just assigns fields, no data is read until it is asked for
+	 *
+	 * @param channel The channel to read from
+	 * @param windowOffset The offset into the channel where this window starts
+	 * @param windowLength The length of this window
+	 * @param byteBudget The maximum number of bytes that may be read off of the disk
+	 */
+	public BoundedChannelInputStream(FileChannel channel, long windowOffset, long windowLength, long byteBudget)
+	{
+		this.channel = channel;
+		this.position = windowOffset;
+		this.windowEnd = windowOffset + windowLength;
+		this.byteBudget = byteBudget;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		byte[] single = new byte[1];
+		return this.read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException
+	{
+		if (length == 0)
+			return 0;
+		if (this.position >= this.windowEnd)
+			return -1;
+
+		int toRead = (int) Math.min(length, this.windowEnd - this.position);
+		if (this.bytesRead + toRead > this.byteBudget)
+		{
+			this.budgetExceeded = true;
+			throw new ByteBudgetExceededException(this.byteBudget);
+		}
+
+		int read = this.channel.read(ByteBuffer.wrap(buffer, offset, toRead), this.position);
+		if (read > 0)
+		{
+			this.position += read;
+			this.bytesRead += read;
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long count)
+	{
+		long skipped = Math.max(0, Math.min(count, this.windowEnd - this.position));
+		this.position += skipped;
+		return skipped;
+	}
+
+	@Override
+	public int available()
+	{
+		return (int) Math.min(Integer.MAX_VALUE, this.windowEnd - this.position);
+	}
+
+	/**
+	 * @return The current read position in the channel
+	 */
+	public long getPosition()
+	{
+		return this.position;
+	}
+
+	/**
+	 * @return The number of bytes read off of the disk so far
+	 */
+	public long getBytesRead()
+	{
+		return this.bytesRead;
+	}
+
+	/**
+	 * @return True if a read was refused because the byte budget was spent
+	 */
+	public Boolean isBudgetExceeded()
+	{
+		return this.budgetExceeded;
+	}
+}
@@ -0,0 +1,153 @@
+package model;
+
+import com.drew.lang.BufferBoundsException;
+import com.drew.lang.RandomAccessReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A random access reader over a window of a file that only reads the pages it is asked for. Used to follow a TIFF's
+ * IFD chain without pulling the image data in between. Every page read off of the disk counts against a byte budget,
+ * and once the budget is spent further reads throw a ByteBudgetExceededException.
+ */
+public class BoundedFileReader extends RandomAccessReader
+{
+	// The number of bytes read off of the disk at once
+	private static final int PAGE_SIZE = 8192;
+
+	// The channel to read from
+	private final FileChannel channel;
+	// The offset into the channel where this window starts
+	private final long windowOffset;
+	// The length of this window
+	private final long windowLength;
+	// The maximum number of bytes that may be read off of the disk
+	private final long byteBudget;
+
+	// Pages that have already been read, keyed by page index
+	private final Map<Integer, byte[]> pages = new HashMap<>();
+	// The number of bytes read off of the disk so far
+	private long bytesRead = 0;
+	// Set if a read was refused because of the byte budget
+	private Boolean budgetExceeded = false;
+
+	/**
+	 * Constructor just assigns fields, no data is read until it is asked for
+	 *
+	 * @param channel The channel to read from
+	 * @param windowOffset The offset into the channel where this window starts
+	 * @param windowLength The length of this window
+	 * @param byteBudget The maximum number of bytes that may be read off of the disk
+	 */
+	public BoundedFileReader(FileChannel channel, long windowOffset, long windowLength, long byteBudget)
+	{
+		this.channel = channel;
+		this.windowOffset = windowOffset;
+		this.windowLength = windowLength;
+		this.byteBudget = byteBudget;
+	}
+
+	@Override
+	public int toUnshiftedOffset(int localOffset)
+	{
+		return localOffset;
+	}
+
+	@Override
+	public byte getByte(int index) throws IOException
+	{
+		this.validateIndex(index, 1);
+		return this.getPage(index / PAGE_SIZE)[index % PAGE_SIZE];
+	}
+
+	@Override
+	public byte[] getBytes(int index, int count) throws IOException
+	{
+		this.validateIndex(index, count);
+		byte[] bytes = new byte[count];
+		// Copy the bytes page by page
+		int copied = 0;
+		while (copied < count)
+		{
+			int position = index + copied;
+			byte[] page = this.getPage(position / PAGE_SIZE);
+			int offsetInPage = position % PAGE_SIZE;
+			int toCopy = Math.min(count - copied, page.length - offsetInPage);
+			System.arraycopy(page, offsetInPage, bytes, copied, toCopy);
+			copied += toCopy;
+		}
+		return bytes;
+	}
+
+	@Override
+	protected void validateIndex(int index, int bytesRequested) throws IOException
+	{
+		if (!this.isValidIndex(index, bytesRequested))
+			throw new BufferBoundsException(index, bytesRequested, this.windowLength);
+	}
+
+	@Override
+	protected boolean isValidIndex(int index, int bytesRequested)
+	{
+		return bytesRequested >= 0 && index >= 0 && (long) index + (long) bytesRequested <= this.windowLength;
+	}
+
+	@Override
+	public long getLength()
+	{
+		return this.windowLength;
+	}
+
+	/**
+	 * Returns a page of the window, reading it off of the disk if we haven't seen it yet
+	 *
+	 * @param pageIndex The index of the page to read
+	 * @return The bytes in the page, the last page may be shorter than the page size
+	 * @throws IOException If the page could not be read or reading it would exceed the byte budget
+	 */
+	private byte[] getPage(int pageIndex) throws IOException
+	{
+		byte[] page = this.pages.get(pageIndex);
+		if (page == null)
+		{
+			long pageStart = (long) pageIndex * PAGE_SIZE;
+			int pageLength = (int) Math.min(PAGE_SIZE, this.windowLength - pageStart);
+			if (this.bytesRead + pageLength > this.byteBudget)
+			{
+				this.budgetExceeded = true;
+				throw new ByteBudgetExceededException(this.byteBudget);
+			}
+
+			// Read the whole page, a single read may return fewer bytes than asked for
+			ByteBuffer buffer = ByteBuffer.allocate(pageLength);
+			while (buffer.hasRemaining())
+				if (this.channel.read(buffer, this.windowOffset + pageStart + buffer.position()) < 0)
+					throw new BufferBoundsException("File ended before the expected length");
+
+			page = buffer.array();
+			this.bytesRead += pageLength;
+			this.pages.put(pageIndex, page);
+		}
+		return page;
+	}
+
+	/**
+	 * @return The number of bytes read off of the disk so far
+	 */
+	public long getBytesRead()
+	{
+		return this.bytesRead;
+	}
+
+	/**
+	 * @return True if a read was refused because the byte budget was spent
+	 */
+	public Boolean isBudgetExceeded()
+	{
+		return this.budgetExceeded;
+	}
+}
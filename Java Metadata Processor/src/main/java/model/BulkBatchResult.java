@@ -0,0 +1,168 @@
+package model;
+
+/**
+ * The outcome of a single bulk request once every retry has finished. Items are in the same order as the bulk
+ * request that was submitted.
+ */
+public class BulkBatchResult
+{
+	// The sequence number of the batch, used when reporting
+	private final long batchNumber;
+	// The id each item was indexed as, or null if the item failed
+	private final String[] ids;
+	// True for each item that was indexed as a new document rather than overwriting an existing one
+	private final boolean[] created;
+	// The reason each failed item failed, or null if the item was indexed
+	private final String[] failures;
+	// The number of item retries that were needed
+	private long retries = 0;
+	// Set if the cluster could not be reached at all
+	private Boolean unreachable = false;
+	// The time taken to send the batch including every retry, in nanoseconds
+	private long durationNanos = 0;
+
+	/**
+	 * Constructor creates a result with every item marked as failed until told otherwise
+	 *
+	 * @param batchNumber The sequence number of the batch
+	 * @param size The number of items in the batch
+	 */
+	public BulkBatchResult(long batchNumber, int size)
+	{
+		this.batchNumber = batchNumber;
+		this.ids = new String[size];
+		this.created = new boolean[size];
+		this.failures = new String[size];
+	}
+
+	/**
+	 * Marks an item as indexed
+	 *
+	 * @param item The index of the item in the batch
+	 * @param id The id the item was indexed as
+	 * @param created True if the item was a new document, false if it overwrote an existing one
+	 */
+	void indexed(int item, String id, boolean created)
+	{
+		this.ids[item] = id;
+		this.created[item] = created;
+		this.failures[item] = null;
+	}
+
+	/**
+	 * Marks an item as failed
+	 *
+	 * @param item The index of the item in the batch
+	 * @param failure The reason the item failed
+	 */
+	void failed(int item, String failure)
+	{
+		this.ids[item] = null;
+		this.failures[item] = failure;
+	}
+
+	/**
+	 * Records that some items had to be retried
+	 *
+	 * @param count The number of items retried
+	 */
+	void retried(int count)
+	{
+		this.retries += count;
+	}
+
+	/**
+	 * Records that the cluster could not be reached, so the failed items never got to elasticsearch
+	 */
+	void unreachable()
+	{
+		this.unreachable = true;
+	}
+
+	/**
+	 * Records how long the batch took to send
+	 *
+	 * @param durationNanos The time taken including every retry, in nanoseconds
+	 */
+	void finished(long durationNanos)
+	{
+		this.durationNanos = durationNanos;
+	}
+
+	///
+	/// Getters
+	///
+
+	public long getBatchNumber()
+	{
+		return this.batchNumber;
+	}
+
+	public int size()
+	{
+		return this.ids.length;
+	}
+
+	public Boolean isFailed(int item)
+	{
+		return this.ids[item] == null;
+	}
+
+	public String getId(int item)
+	{
+		return this.ids[item];
+	}
+
+	public Boolean isCreated(int item)
+	{
+		return this.created[item];
+	}
+
+	public String getFailure(int item)
+	{
+		return this.failures[item];
+	}
+
+	public long getRetries()
+	{
+		return this.retries;
+	}
+
+	public Boolean isUnreachable()
+	{
+		return this.unreachable;
+	}
+
+	public long getDurationNanos()
+	{
+		return this.durationNanos;
+	}
+
+	public long getIndexedCount()
+	{
+		long indexed = 0;
+		for (String id : this.ids)
+			if (id != null)
+				indexed++;
+		return indexed;
+	}
+
+	public long getCreatedCount()
+	{
+		long created = 0;
+		for (int i = 0; i < this.ids.length; i++)
+			if (this.ids[i] != null && this.created[i])
+				created++;
+		return created;
+	}
+
+	public long getOverwrittenCount()
+	{
+		return this.getIndexedCount() - this.getCreatedCount();
+	}
+
+	public long getFailedCount()
+	{
+		return this.ids.length - this.getIndexedCount();
+	}
+}
@@ -0,0 +1,288 @@
+package model;
+
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.rest.RestStatus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Sends bulk requests to elasticsearch with a bounded number in flight at once. Submitting blocks while every slot is
+ * busy, which pushes back on whoever is producing documents. Documents that elasticsearch rejects because it is
+ * overloaded (429 or 503) are retried on their own with exponential backoff, everything else is reported as failed.
+ */
+public class BulkIndexer implements Closeable
+{
+	// The index settings turned off while bulk loading
+	private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
+	private static final String NUMBER_OF_REPLICAS_SETTING = "index.number_of_replicas";
+	// The longest we'll ever wait between two retries
+	private static final long MAX_BACKOFF_MILLIS = 30000L;
+
+	// The indexer used to send bulk requests
+	private final MetadataIndexer indexer;
+	// The maximum number of bulk requests in flight at once
+	private final int concurrency;
+	// The number of times a rejected document is retried
+	private final int maxRetries;
+	// The time waited before the first retry
+	private final long initialBackoffMillis;
+
+	// One permit for each bulk request that may be in flight
+	private final Semaphore inFlight;
+	// The threads that send bulk requests
+	private final ExecutorService senders;
+	// Used to number each batch
+	private final AtomicLong batchCounter = new AtomicLong(0);
+
+	// The index settings as they were before bulk loading began, or null if we aren't bulk loading
+	private Settings settingsBeforeBulkLoad = null;
+
+	/**
+	 * Constructor starts the sender threads
+	 *
+	 * @param indexer The indexer used to send bulk requests
+	 * @param settings The settings containing the concurrency and retry limits
+	 */
+	public BulkIndexer(MetadataIndexer indexer, ProcessorSettings settings)
+	{
+		this.indexer = indexer;
+		this.concurrency = settings.getBulkConcurrency();
+		this.maxRetries = settings.getBulkRetries();
+		this.initialBackoffMillis = settings.getBulkBackoffMillis();
+		this.inFlight = new Semaphore(this.concurrency);
+		this.senders = Executors.newFixedThreadPool(this.concurrency);
+	}
+
+	/**
+	 * Sends a bulk request on a sender thread, blocking until a sender is free
+	 *
+	 * @param bulkRequest The bulk request to send
+	 * @param onComplete Called on the sender thread with the result once every retry is finished
+	 * @throws InterruptedException If the thread was interrupted while waiting for a free sender
+	 */
+	public void submit(BulkRequest bulkRequest, Consumer<BulkBatchResult> onComplete) throws InterruptedException
+	{
+		this.inFlight.acquire();
+		long batchNumber = this.batchCounter.incrementAndGet();
+		try
+		{
+			this.senders.submit(() ->
+			{
+				try
+				{
+					onComplete.accept(this.send(batchNumber, bulkRequest));
+				}
+				// A bad callback must not leak the permit
+				catch (RuntimeException e)
+				{
+					DroneLogger.logError("Unexpected error finishing bulk batch " + batchNumber + ": " + e.getMessage());
+				}
+				finally
+				{
+					this.inFlight.release();
+				}
+			});
+		}
+		catch (RuntimeException e)
+		{
+			this.inFlight.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Waits for every submitted bulk request to finish
+	 *
+	 * @throws InterruptedException If the thread was interrupted while waiting
+	 */
+	public void awaitCompletion() throws InterruptedException
+	{
+		this.inFlight.acquire(this.concurrency);
+		this.inFlight.release(this.concurrency);
+	}
+
+	/**
+	 * Waits for every submitted bulk request to finish and stops the sender threads
+	 */
+	@Override
+	public void close()
+	{
+		try
+		{
+			this.awaitCompletion();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		this.senders.shutdown();
+	}
+
+	/**
+	 * Turns off refreshes and replicas on the index so a large load goes in as fast as possible. The previous settings
+	 * are remembered so endBulkLoad can put them back.
+	 *
+	 * @throws IOException If the index settings could not be read or changed
+	 */
+	public synchronized void beginBulkLoad() throws IOException
+	{
+		if (this.settingsBeforeBulkLoad != null)
+			return;
+		this.settingsBeforeBulkLoad = this.indexer.getIndexSettings(REFRESH_INTERVAL_SETTING, NUMBER_OF_REPLICAS_SETTING);
+		this.indexer.updateIndexSettings(Settings.builder()
+				.put(REFRESH_INTERVAL_SETTING, "-1")
+				.put(NUMBER_OF_REPLICAS_SETTING, 0)
+				.build());
+		DroneLogger.logDebug("Bulk load profile enabled, refreshes and replicas are off until indexing finishes");
+	}
+
+	/**
+	 * Puts back the index settings changed by beginBulkLoad and refreshes the index so everything indexed is searchable
+	 *
+	 * @throws IOException If the index settings could not be changed
+	 */
+	public synchronized void endBulkLoad() throws IOException
+	{
+		if (this.settingsBeforeBulkLoad == null)
+			return;
+		// Settings that weren't set explicitly before go back to their defaults
+		Settings.Builder restored = Settings.builder();
+		for (String name : new String[] { REFRESH_INTERVAL_SETTING, NUMBER_OF_REPLICAS_SETTING })
+		{
+			String value = this.settingsBeforeBulkLoad.get(name);
+			if (value == null)
+				restored.putNull(name);
+			else
+				restored.put(name, value);
+		}
+		this.indexer.updateIndexSettings(restored.build());
+		this.indexer.refreshIndex();
+		this.settingsBeforeBulkLoad = null;
+		DroneLogger.logDebug("Bulk load profile disabled, index settings restored");
+	}
+
+	/**
+	 * Sends a bulk request, retrying rejected items until they succeed or run out of retries
+	 *
+	 * @param batchNumber The sequence number of the batch
+	 * @param bulkRequest The bulk request to send
+	 * @return The result of every item in the bulk request
+	 */
+	private BulkBatchResult send(long batchNumber, BulkRequest bulkRequest)
+	{
+		long startTime = System.nanoTime();
+		List<DocWriteRequest<?>> requests = bulkRequest.requests();
+		BulkBatchResult result = new BulkBatchResult(batchNumber, requests.size());
+
+		// The items still to be sent, as indices into the original request
+		List<Integer> pending = new ArrayList<>(requests.size());
+		for (int i = 0; i < requests.size(); i++)
+			pending.add(i);
+
+		BulkRequest attemptRequest = bulkRequest;
+		for (int attempt = 0; !pending.isEmpty(); attempt++)
+		{
+			boolean canRetry = attempt < this.maxRetries;
+			List<Integer> rejected = new ArrayList<>();
+			try
+			{
+				BulkResponse response = this.indexer.sendBulk(attemptRequest);
+				BulkItemResponse[] items = response.getItems();
+				for (int i = 0; i < items.length; i++)
+				{
+					int item = pending.get(i);
+					if (!items[i].isFailed())
+						result.indexed(item, items[i].getId(), items[i].getResponse().getResult() == DocWriteResponse.Result.CREATED);
+					else if (canRetry && isRetryable(items[i].status()))
+						rejected.add(item);
+					else
+					{
+						result.failed(item, items[i].getFailureMessage());
+						DroneLogger.logDebug("Bulk batch " + batchNumber + " item " + item + " failed: " + items[i].getFailureMessage());
+					}
+				}
+			}
+			// The whole request was rejected, retry all of it if the cluster is just busy
+			catch (ElasticsearchStatusException e)
+			{
+				if (canRetry && isRetryable(e.status()))
+					rejected.addAll(pending);
+				else
+				{
+					DroneLogger.logError("Bulk batch " + batchNumber + " was rejected! " + e.getMessage());
+					pending.forEach(item -> result.failed(item, e.getMessage()));
+				}
+			}
+			// The cluster couldn't be reached, retrying straight away won't help
+			catch (IOException e)
+			{
+				DroneLogger.logError("Error connecting to the elasticsearch client! " + e.getMessage());
+				pending.forEach(item -> result.failed(item, e.getMessage()));
+				result.unreachable();
+			}
+			// Anything else is a bug or a response we don't understand, fail the whole attempt so the items are still reported
+			catch (RuntimeException e)
+			{
+				DroneLogger.logError("Unexpected error sending bulk batch " + batchNumber + "! " + e.getMessage());
+				pending.forEach(item -> result.failed(item, e.toString()));
+				rejected.clear();
+			}
+
+			pending = rejected;
+			if (!pending.isEmpty())
+			{
+				result.retried(pending.size());
+				long backoff = Math.min(MAX_BACKOFF_MILLIS, this.initialBackoffMillis << Math.min(attempt, 20));
+				DroneLogger.logDebug("Bulk batch " + batchNumber + ": " + pending.size() + " documents rejected, retrying in " + backoff + "ms");
+				try
+				{
+					Thread.sleep(backoff);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					pending.forEach(item -> result.failed(item, "Interrupted before the document could be retried"));
+					break;
+				}
+				// Only resend the rejected documents
+				attemptRequest = new BulkRequest();
+				for (Integer item : pending)
+					attemptRequest.add(requests.get(item));
+			}
+		}
+
+		// Report how the batch went
+		result.finished(System.nanoTime() - startTime);
+		DroneLogger.logDebug("Bulk batch " + batchNumber + ": " + result.getIndexedCount() + " indexed (" + result.getCreatedCount() + " new, " +
+				result.getOverwrittenCount() + " overwritten), " + result.getFailedCount() + " failed, " +
+				result.getRetries() + " retried (" + requests.size() + " documents, " + bulkRequest.estimatedSizeInBytes() + " bytes, " +
+				(result.getDurationNanos() / 1_000_000) + "ms)");
+
+		return result;
+	}
+
+	/**
+	 * Tests if a rejection means the cluster is temporarily overloaded and the request is worth retrying
+	 *
+	 * @param status The status returned by elasticsearch
+	 * @return True if the request should be retried
+	 */
+	private static boolean isRetryable(RestStatus status)
+	{
+		return status == RestStatus.TOO_MANY_REQUESTS || status == RestStatus.SERVICE_UNAVAILABLE;
+	}
+}
@@ -0,0 +1,166 @@
+package model;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A directory of gzip compressed segment files, each holding the NDJSON body of one bulk request exactly as the
+ * _bulk endpoint expects it. Documents can be spooled here while elasticsearch is unreachable and replayed later.
+ * Segments are written to a temporary name and renamed once complete, so a reader never sees half a segment.
+ */
+public class BulkSpool
+{
+	// The file extension of a finished segment
+	private static final String SEGMENT_EXTENSION = ".ndjson.gz";
+	// The file extension of a segment that's still being written
+	private static final String TEMPORARY_EXTENSION = ".tmp";
+
+	// The directory the segments are stored in
+	private final File directory;
+	// Used to give each segment written by this process a unique name
+	private final AtomicLong segmentCounter = new AtomicLong(0);
+	// Unique to this process so two processes spooling into the same directory don't collide
+	private final long sessionId = System.currentTimeMillis();
+
+	/**
+	 * Constructor creates the spool directory if it doesn't exist yet
+	 *
+	 * @param directory The directory the segments are stored in
+	 * @throws IOException If the directory could not be created
+	 */
+	public BulkSpool(File directory) throws IOException
+	{
+		this.directory = directory;
+		Files.createDirectories(directory.toPath());
+	}
+
+	/**
+	 * Writes a bulk request as a new segment
+	 *
+	 * @param bulkRequest The bulk request to write, only index requests are supported
+	 * @return The segment that was written
+	 * @throws IOException If the segment could not be written
+	 */
+	public File writeSegment(BulkRequest bulkRequest) throws IOException
+	{
+		String name = "segment-" + this.sessionId + "-" + String.format("%06d", this.segmentCounter.incrementAndGet());
+		File temporary = new File(this.directory, name + TEMPORARY_EXTENSION);
+		File segment = new File(this.directory, name + SEGMENT_EXTENSION);
+
+		try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)), 65536))
+		{
+			for (DocWriteRequest<?> request : bulkRequest.requests())
+				writeIndexRequest(out, (IndexRequest) request);
+		}
+		Files.move(temporary.toPath(), segment.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		return segment;
+	}
+
+	/**
+	 * @return Every finished segment in the spool, oldest first
+	 */
+	public List<File> listSegments()
+	{
+		File[] files = this.directory.listFiles((dir, name) -> name.endsWith(SEGMENT_EXTENSION));
+		if (files == null)
+			return Collections.emptyList();
+		return Arrays.stream(files).sorted().collect(Collectors.toList());
+	}
+
+	/**
+	 * Reads a segment back into a bulk request
+	 *
+	 * @param segment The segment to read
+	 * @return The bulk request stored in the segment
+	 * @throws IOException If the segment could not be read or parsed
+	 */
+	public static BulkRequest readSegment(File segment) throws IOException
+	{
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try (InputStream in = new GZIPInputStream(new FileInputStream(segment), 65536))
+		{
+			byte[] buffer = new byte[65536];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				body.write(buffer, 0, read);
+		}
+		byte[] bytes = body.toByteArray();
+		return new BulkRequest().add(bytes, 0, bytes.length, XContentType.JSON);
+	}
+
+	/**
+	 * @return The directory the segments are stored in
+	 */
+	public File getDirectory()
+	{
+		return this.directory;
+	}
+
+	/**
+	 * Writes an index request as an action line followed by a source line
+	 *
+	 * @param out The stream to write to
+	 * @param indexRequest The index request to write
+	 * @throws IOException If the stream could not be written to
+	 */
+	private static void writeIndexRequest(OutputStream out, IndexRequest indexRequest) throws IOException
+	{
+		XContentBuilder action = XContentFactory.jsonBuilder(new NonClosingOutputStream(out));
+		action.startObject().startObject("index");
+		action.field("_index", indexRequest.index());
+		action.field("_type", indexRequest.type());
+		if (indexRequest.id() != null)
+			action.field("_id", indexRequest.id());
+		action.endObject().endObject();
+		action.close();
+		out.write('\n');
+		indexRequest.source().writeTo(out);
+		out.write('\n');
+	}
+
+	/**
+	 * Lets an XContentBuilder be closed without closing the segment it writes into
+	 */
+	private static class NonClosingOutputStream extends FilterOutputStream
+	{
+		NonClosingOutputStream(OutputStream out)
+		{
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException
+		{
+			this.out.write(bytes, offset, length);
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			this.flush();
+		}
+	}
+}
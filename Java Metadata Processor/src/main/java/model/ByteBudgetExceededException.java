@@ -0,0 +1,21 @@
+package model;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a header-only metadata read needs more bytes than it is allowed to read
+ */
+public class ByteBudgetExceededException extends IOException
+{
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor creates a message with the budget that was exceeded
+	 *
+	 * @param byteBudget The maximum number of bytes that could be read
+	 */
+	public ByteBudgetExceededException(long byteBudget)
+	{
+		super("Reading metadata required more than " + byteBudget + " bytes");
+	}
+}
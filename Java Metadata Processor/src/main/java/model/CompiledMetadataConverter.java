@@ -0,0 +1,188 @@
+package model;
+
+import com.drew.lang.Rational;
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.StringValue;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.GpsDirectory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Converts parsed metadata straight into an indexable record. Unlike MetadataConverter this does not flatten the
+ * metadata into strings first, it reads the few tags we index from their directories by tag id and decodes the raw
+ * values directly. Instances keep a small amount of state so each converter thread should use its own.
+ */
+public class CompiledMetadataConverter
+{
+	// The format of dates stored in exif and in the index
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy:MM:dd HH:mm:ss");
+	// The length of a date in the yyyy:MM:dd HH:mm:ss format
+	private static final int DATE_LENGTH = 19;
+
+	// The upload date is the same for every image converted in the same second, so only format it once per second
+	private long uploadDateSecond = Long.MIN_VALUE;
+	private String uploadDate;
+
+	/**
+	 * Fills in a record from parsed metadata. The record is reset first so it can be reused between images.
+	 *
+	 * @param metadata The metadata read from the image
+	 * @param record The record to fill in
+	 * @return True if the metadata had every required field, false if the image can't be indexed
+	 */
+	public boolean convert(Metadata metadata, IndexableRecord record)
+	{
+		record.reset();
+
+		// Latitude, longitude, and create date are required
+		GpsDirectory gpsDirectory = metadata.getFirstDirectoryOfType(GpsDirectory.class);
+		ExifIFD0Directory ifd0Directory = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+		if (gpsDirectory == null || ifd0Directory == null)
+			return false;
+
+		double latitude = readCoordinate(gpsDirectory, GpsDirectory.TAG_LATITUDE, GpsDirectory.TAG_LATITUDE_REF, 'S');
+		double longitude = readCoordinate(gpsDirectory, GpsDirectory.TAG_LONGITUDE, GpsDirectory.TAG_LONGITUDE_REF, 'W');
+		if (Double.isNaN(latitude) || Double.isNaN(longitude))
+			return false;
+
+		byte[] createDate = readDate(ifd0Directory, ExifIFD0Directory.TAG_DATETIME);
+		if (createDate == null)
+			return false;
+
+		record.setLatitude(latitude);
+		record.setLongitude(longitude);
+		record.setCreateDate(createDate);
+		record.setUploadDate(this.currentUploadDate());
+
+		// Altitude is optional
+		Rational altitude = gpsDirectory.getRational(GpsDirectory.TAG_ALTITUDE);
+		if (altitude != null && altitude.getDenominator() != 0)
+			record.setAltitude(altitude.floatValue());
+
+		return true;
+	}
+
+	/**
+	 * Decodes a GPS coordinate stored as degrees, minutes, and seconds rationals into decimal degrees
+	 *
+	 * @param directory The GPS directory
+	 * @param valueTag The tag holding the degrees, minutes, and seconds
+	 * @param referenceTag The tag holding the hemisphere reference
+	 * @param negativeReference The hemisphere reference that makes the coordinate negative
+	 * @return The coordinate in decimal degrees, or NaN if it is missing or malformed
+	 */
+	private static double readCoordinate(Directory directory, int valueTag, int referenceTag, char negativeReference)
+	{
+		Rational[] degMinSec = directory.getRationalArray(valueTag);
+		if (degMinSec == null || degMinSec.length != 3)
+			return Double.NaN;
+		int reference = firstCharacter(directory.getObject(referenceTag));
+		if (reference == -1)
+			return Double.NaN;
+
+		double decimal = Math.abs(degMinSec[0].doubleValue()) + degMinSec[1].doubleValue() / 60.0 + degMinSec[2].doubleValue() / 3600.0;
+		if (Double.isNaN(decimal) || Double.isInfinite(decimal))
+			return Double.NaN;
+		return Character.toUpperCase(reference) == negativeReference ? -decimal : decimal;
+	}
+
+	/**
+	 * Reads a date stored as yyyy:MM:dd HH:mm:ss without decoding it to a string
+	 *
+	 * @param directory The directory holding the date
+	 * @param tag The tag holding the date
+	 * @return The ASCII bytes of the date, or null if it is missing or malformed
+	 */
+	private static byte[] readDate(Directory directory, int tag)
+	{
+		Object value = directory.getObject(tag);
+		byte[] date;
+		if (value instanceof StringValue)
+			date = ((StringValue) value).getBytes();
+		else if (value instanceof String)
+			date = ((String) value).getBytes(StandardCharsets.US_ASCII);
+		else
+			return null;
+
+		if (date.length != DATE_LENGTH)
+			return null;
+		// Check the separators are where we expect them
+		if (date[4] != ':' || date[7] != ':' || date[10] != ' ' || date[13] != ':' || date[16] != ':')
+			return null;
+
+		int year = digits(date, 0, 4);
+		int month = digits(date, 5, 2);
+		int day = digits(date, 8, 2);
+		int hour = digits(date, 11, 2);
+		int minute = digits(date, 14, 2);
+		int second = digits(date, 17, 2);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59)
+			return null;
+		// Dates like February 30th would be rejected by elasticsearch along with the rest of the document
+		if (day > Month.of(month).length(Year.isLeap(year)))
+			return null;
+		return date;
+	}
+
+	/**
+	 * Parses a run of ASCII digits
+	 *
+	 * @param bytes The bytes to parse
+	 * @param offset The offset of the first digit
+	 * @param count The number of digits
+	 * @return The number, or -1 if any byte isn't a digit
+	 */
+	private static int digits(byte[] bytes, int offset, int count)
+	{
+		int value = 0;
+		for (int i = offset; i < offset + count; i++)
+		{
+			int digit = bytes[i] - '0';
+			if (digit < 0 || digit > 9)
+				return -1;
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the first character of a string tag value
+	 *
+	 * @param value The raw tag value
+	 * @return The first character, or -1 if the value is empty or not a string
+	 */
+	private static int firstCharacter(Object value)
+	{
+		if (value instanceof StringValue)
+		{
+			byte[] bytes = ((StringValue) value).getBytes();
+			return bytes.length == 0 ? -1 : bytes[0] & 0xFF;
+		}
+		else if (value instanceof String)
+		{
+			String string = (String) value;
+			return string.isEmpty() ? -1 : string.charAt(0);
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The current time formatted as an upload date, re-formatted at most once a second
+	 */
+	private String currentUploadDate()
+	{
+		long second = System.currentTimeMillis() / 1000L;
+		if (second != this.uploadDateSecond)
+		{
+			this.uploadDate = LocalDateTime.now().format(DATE_FORMAT);
+			this.uploadDateSecond = second;
+		}
+		return this.uploadDate;
+	}
+}
@@ -0,0 +1,95 @@
+package model;
+
+import org.elasticsearch.common.hash.MurmurHash3;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Computes a stable document id from an image's contents so indexing the same image twice overwrites the first
+ * document instead of duplicating it. Hashing a whole image would cost as much as reading it, so only the size plus
+ * the first and last few KB are hashed. Those hold the metadata segments and the end of the compressed image data,
+ * which differ between any two real photos.
+ */
+public class ContentHasher
+{
+	// The number of bytes sampled from each end of the image
+	private static final int SAMPLE_SIZE = 8 * 1024;
+	// Seed for the hash, changing it changes every document id
+	private static final long SEED = 0x5EED_D0C5L;
+
+	/**
+	 * Computes the content hash of a file
+	 *
+	 * @param file The file to hash
+	 * @return The content hash as 32 hex characters
+	 * @throws IOException If the file could not be read
+	 */
+	public static String hash(File file) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			return hash(channel, 0, channel.size());
+		}
+	}
+
+	/**
+	 * Computes the content hash of an image stored in a window of a file
+	 *
+	 * @param channel The channel containing the image
+	 * @param offset The offset of the image in the channel
+	 * @param length The length of the image
+	 * @return The content hash as 32 hex characters
+	 * @throws IOException If the image could not be read
+	 */
+	public static String hash(FileChannel channel, long offset, long length) throws IOException
+	{
+		// Small images are hashed whole, otherwise just the head and tail
+		int headLength = (int) Math.min(length, SAMPLE_SIZE);
+		int tailLength = (int) Math.min(length - headLength, SAMPLE_SIZE);
+
+		ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + headLength + tailLength);
+		buffer.putLong(length);
+		readFully(channel, buffer, offset, headLength);
+		readFully(channel, buffer, offset + length - tailLength, tailLength);
+
+		MurmurHash3.Hash128 hash = MurmurHash3.hash128(buffer.array(), 0, buffer.position(), SEED, new MurmurHash3.Hash128());
+		return String.format("%016x%016x", hash.h1, hash.h2);
+	}
+
+	/**
+	 * Returns how many bytes hashing an image reads
+	 *
+	 * @param length The length of the image
+	 * @return The number of bytes read from the image
+	 */
+	public static long bytesSampled(long length)
+	{
+		return Math.min(length, 2L * SAMPLE_SIZE);
+	}
+
+	/**
+	 * Reads bytes from a channel into a buffer, a single read may return fewer bytes than asked for
+	 *
+	 * @param channel The channel to read from
+	 * @param buffer The buffer to read into
+	 * @param position The position in the channel to start reading at
+	 * @param count The number of bytes to read
+	 * @throws IOException If the channel ended early or could not be read
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position, int count) throws IOException
+	{
+		buffer.limit(buffer.position() + count);
+		while (buffer.hasRemaining())
+		{
+			int read = channel.read(buffer, position);
+			if (read < 0)
+				throw new IOException("File ended before the expected length");
+			position += read;
+		}
+		buffer.limit(buffer.capacity());
+	}
+}
@@ -0,0 +1,300 @@
+package model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches directories for new or modified images and submits them into an indexing pipeline once they stop changing.
+ * Drone uploads write files over several seconds, so a file is only submitted once it has gone a full debounce period
+ * without any events and its size has stopped growing.
+ */
+public class DirectoryWatcher implements Closeable
+{
+	// The pipeline that settled files are submitted into
+	private final IndexingPipeline pipeline;
+	// How long a file must go without changing before it is submitted
+	private final Long debounceMillis;
+
+	// The watch service notifying us of changes
+	private final WatchService watchService;
+	// A mapping of watch key -> directory that key watches, needed to resolve event paths
+	private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+	// Files that have changed recently and are waiting to settle
+	private final Map<Path, PendingFile> pendingFiles = new HashMap<>();
+
+	// The thread that reads events off of the watch service
+	private Thread eventThread;
+	// The thread that submits files once they've settled
+	private ScheduledExecutorService settleExecutor;
+
+	/**
+	 * Constructor creates the watch service but does not start watching
+	 *
+	 * @param pipeline The pipeline to submit files into
+	 * @param debounceMillis How long a file must go without changing before it is submitted
+	 * @throws IOException If the watch service could not be created
+	 */
+	public DirectoryWatcher(IndexingPipeline pipeline, Long debounceMillis) throws IOException
+	{
+		this.pipeline = pipeline;
+		this.debounceMillis = debounceMillis;
+		this.watchService = FileSystems.getDefault().newWatchService();
+	}
+
+	/**
+	 * Recursively registers a directory and all its sub-directories with the watch service
+	 *
+	 * @param directory The directory to watch
+	 * @param submitExisting If images already in the directory should be queued for indexing
+	 * @throws IOException If the directory could not be registered
+	 */
+	public void watch(File directory, Boolean submitExisting) throws IOException
+	{
+		Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>()
+		{
+			@Override
+			public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attributes) throws IOException
+			{
+				DirectoryWatcher.this.register(path);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path path, BasicFileAttributes attributes)
+			{
+				if (submitExisting && attributes.isRegularFile())
+					DirectoryWatcher.this.fileChanged(path);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path path, IOException exception)
+			{
+				DroneLogger.logError("Could not read file while registering watched directory (" + path + ")");
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	/**
+	 * Registers a single directory with the watch service
+	 *
+	 * @param directory The directory to register
+	 * @throws IOException If the directory could not be registered
+	 */
+	private synchronized void register(Path directory) throws IOException
+	{
+		WatchKey watchKey = directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		this.watchedDirectories.put(watchKey, directory);
+		DroneLogger.logDebug("Watching directory " + directory);
+	}
+
+	/**
+	 * Starts the threads that read watch events and submit settled files
+	 */
+	public void start()
+	{
+		this.eventThread = new Thread(this::processEvents, "directory-watcher");
+		this.eventThread.setDaemon(true);
+		this.eventThread.start();
+
+		// Check for settled files a few times per debounce period
+		long checkPeriod = Math.max(50L, this.debounceMillis / 4);
+		this.settleExecutor = Executors.newSingleThreadScheduledExecutor();
+		this.settleExecutor.scheduleWithFixedDelay(this::submitSettledFiles, checkPeriod, checkPeriod, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Reads events off of the watch service until it is closed
+	 */
+	private void processEvents()
+	{
+		try
+		{
+			while (true)
+			{
+				WatchKey watchKey = this.watchService.take();
+				Path directory;
+				synchronized (this)
+				{
+					directory = this.watchedDirectories.get(watchKey);
+				}
+				if (directory != null)
+				{
+					for (WatchEvent<?> event : watchKey.pollEvents())
+					{
+						// If too many events happened at once some were lost, rescan the directory to find them
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+						{
+							DroneLogger.logError("Watch events were lost, rescanning " + directory);
+							this.rescan(directory);
+							continue;
+						}
+
+						Path changed = directory.resolve((Path) event.context());
+						// New sub-directories need to be watched too, and may already contain files
+						if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed))
+							this.rescan(changed);
+						else
+							this.fileChanged(changed);
+					}
+				}
+
+				// If the key is no longer valid the directory was deleted
+				if (!watchKey.reset())
+				{
+					synchronized (this)
+					{
+						this.watchedDirectories.remove(watchKey);
+					}
+				}
+			}
+		}
+		catch (InterruptedException | ClosedWatchServiceException ignored)
+		{
+			// The watcher was closed, just exit
+		}
+	}
+
+	/**
+	 * Watches a directory and treats every file inside of it as changed
+	 *
+	 * @param directory The directory to rescan
+	 */
+	private void rescan(Path directory)
+	{
+		try
+		{
+			this.watch(directory.toFile(), true);
+		}
+		catch (IOException e)
+		{
+			DroneLogger.logError("Could not watch directory " + directory + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Called whenever an image file is created or modified, resets its debounce timer
+	 *
+	 * @param path The file that changed
+	 */
+	private synchronized void fileChanged(Path path)
+	{
+		if (this.pipeline.isAccepted(path.toFile()))
+			this.pendingFiles.put(path, new PendingFile(System.currentTimeMillis(), path.toFile().length()));
+	}
+
+	/**
+	 * Submits every pending file that has gone a full debounce period without changing
+	 */
+	private void submitSettledFiles()
+	{
+		List<Path> settled = new ArrayList<>();
+		synchronized (this)
+		{
+			long now = System.currentTimeMillis();
+			Iterator<Map.Entry<Path, PendingFile>> iterator = this.pendingFiles.entrySet().iterator();
+			while (iterator.hasNext())
+			{
+				Map.Entry<Path, PendingFile> pending = iterator.next();
+				if (now - pending.getValue().lastChanged >= this.debounceMillis)
+				{
+					// Some writers don't generate modify events for every write, so make sure the size is stable too
+					long currentSize = pending.getKey().toFile().length();
+					if (currentSize == pending.getValue().size)
+					{
+						settled.add(pending.getKey());
+						iterator.remove();
+					}
+					else
+					{
+						pending.setValue(new PendingFile(now, currentSize));
+					}
+				}
+			}
+		}
+
+		// Submit outside of the lock since the pipeline may block us if it's full
+		try
+		{
+			for (Path path : settled)
+				if (Files.isRegularFile(path))
+					this.pipeline.submit(path.toFile());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (IllegalStateException e)
+		{
+			DroneLogger.logError("Could not submit settled files, " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Stops watching and submits any files that were still waiting to settle
+	 *
+	 * @throws IOException If the watch service could not be closed
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		this.watchService.close();
+		if (this.settleExecutor != null)
+		{
+			this.settleExecutor.shutdown();
+			try
+			{
+				this.settleExecutor.awaitTermination(1, TimeUnit.MINUTES);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		// Don't lose files that were still being debounced
+		synchronized (this)
+		{
+			for (Map.Entry<Path, PendingFile> pending : this.pendingFiles.entrySet())
+				pending.setValue(new PendingFile(0, pending.getKey().toFile().length()));
+		}
+		this.submitSettledFiles();
+	}
+
+	/**
+	 * A file waiting for its debounce period to expire
+	 */
+	private static class PendingFile
+	{
+		// The last time the file was seen to change
+		private final long lastChanged;
+		// The size of the file the last time it was seen to change
+		private final long size;
+
+		PendingFile(long lastChanged, long size)
+		{
+			this.lastChanged = lastChanged;
+			this.size = size;
+		}
+	}
+}
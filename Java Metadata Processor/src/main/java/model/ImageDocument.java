@@ -0,0 +1,139 @@
+package model;
+
+import com.drew.metadata.Metadata;
+import org.elasticsearch.action.index.IndexRequest;
+
+import java.io.File;
+
+/**
+ * A single image as it travels through the indexing pipeline. Each stage fills in a little more of the document.
+ */
+public class ImageDocument
+{
+	// The file that the image is stored in, for images inside an archive this is the archive
+	private final File file;
+	// The name of the image inside the archive, or null if the image is a file of its own
+	private final String entryName;
+	// The offset of the image's bytes in the file
+	private final long offset;
+	// The size of the image when it was discovered
+	private final long size;
+	// The modification time of the file when it was discovered
+	private final long lastModified;
+
+	// The metadata read by the parser stage
+	private Metadata metadata;
+	// The number of bytes the parser stage had to read to get the metadata
+	private long bytesRead;
+	// The document id derived from the image's contents by the parser stage
+	private String contentHash;
+	// The index request built by the converter stage
+	private IndexRequest indexRequest;
+
+	/**
+	 * Constructor just assigns fields
+	 *
+	 * @param file The file that the image is stored in
+	 * @param size The size of the file when it was discovered
+	 * @param lastModified The modification time of the file when it was discovered
+	 */
+	public ImageDocument(File file, long size, long lastModified)
+	{
+		this(file, null, 0, size, lastModified);
+	}
+
+	/**
+	 * Constructor just assigns fields
+	 *
+	 * @param file The file that the image is stored in
+	 * @param entryName The name of the image inside the archive, or null if the image is a file of its own
+	 * @param offset The offset of the image's bytes in the file
+	 * @param size The size of the image
+	 * @param lastModified The modification time of the file when it was discovered
+	 */
+	public ImageDocument(File file, String entryName, long offset, long size, long lastModified)
+	{
+		this.file = file;
+		this.entryName = entryName;
+		this.offset = offset;
+		this.size = size;
+		this.lastModified = lastModified;
+	}
+
+	///
+	/// Getters/Setters
+	///
+
+	public File getFile()
+	{
+		return this.file;
+	}
+
+	/**
+	 * @return The path the image is stored at, images inside an archive are addressed as archive!/entry
+	 */
+	public String getPath()
+	{
+		return this.entryName == null ? this.file.getAbsolutePath() : this.file.getAbsolutePath() + "!/" + this.entryName;
+	}
+
+	public Boolean isArchiveEntry()
+	{
+		return this.entryName != null;
+	}
+
+	public long getOffset()
+	{
+		return this.offset;
+	}
+
+	public long getSize()
+	{
+		return this.size;
+	}
+
+	public long getLastModified()
+	{
+		return this.lastModified;
+	}
+
+	public Metadata getMetadata()
+	{
+		return this.metadata;
+	}
+
+	public void setMetadata(Metadata metadata)
+	{
+		this.metadata = metadata;
+	}
+
+	public long getBytesRead()
+	{
+		return this.bytesRead;
+	}
+
+	public void setBytesRead(long bytesRead)
+	{
+		this.bytesRead = bytesRead;
+	}
+
+	public String getContentHash()
+	{
+		return this.contentHash;
+	}
+
+	public void setContentHash(String contentHash)
+	{
+		this.contentHash = contentHash;
+	}
+
+	public IndexRequest getIndexRequest()
+	{
+		return this.indexRequest;
+	}
+
+	public void setIndexRequest(IndexRequest indexRequest)
+	{
+		this.indexRequest = indexRequest;
+	}
+}
@@ -0,0 +1,183 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An on-disk checkpoint of every file that has been processed. Each line records a file's size, modification time,
+ * and the id of the document it was indexed as. Lines are only appended once elasticsearch acknowledges the bulk
+ * request containing that file, so a crashed run can be resumed by simply running it again.
+ */
+public class IndexManifest
+{
+	// Document id recorded for files that were processed but did not contain enough metadata to be indexed
+	public static final String NOT_INDEXABLE = "-";
+
+	// The file that the manifest is stored in
+	private final File manifestFile;
+	// Every entry in the manifest, keyed by absolute file path
+	private final Map<String, Entry> entries = new HashMap<>();
+	// The number of lines in the manifest file, used to decide when it should be compacted
+	private Integer linesOnDisk = 0;
+
+	// The output stream used to append new entries
+	private FileOutputStream appendStream;
+	// The writer wrapping the append stream
+	private Writer appendWriter;
+
+	/**
+	 * Constructor reads any existing manifest off of the disk
+	 *
+	 * @param manifestFile The file to read and write the manifest to
+	 * @throws IOException If the manifest exists but could not be read
+	 */
+	public IndexManifest(File manifestFile) throws IOException
+	{
+		this.manifestFile = manifestFile;
+		if (manifestFile.exists())
+		{
+			try (BufferedReader reader = Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8))
+			{
+				String line;
+				while ((line = reader.readLine()) != null)
+				{
+					// Format is size \t modified \t id \t path, the path is last so it may contain tabs
+					String[] parts = line.split("\t", 4);
+					// A partially written line means we crashed while writing, ignore it
+					if (parts.length == 4)
+					{
+						try
+						{
+							this.entries.put(parts[3], new Entry(Long.parseLong(parts[0]), Long.parseLong(parts[1]), parts[2]));
+							this.linesOnDisk++;
+						}
+						catch (NumberFormatException ignored) {}
+					}
+				}
+			}
+		}
+		DroneLogger.logDebug("Loaded " + this.entries.size() + " entries from manifest " + manifestFile.getAbsolutePath());
+	}
+
+	/**
+	 * Tests if a file has already been processed and has not changed since
+	 *
+	 * @param path The absolute path of the file
+	 * @param size The current size of the file
+	 * @param lastModified The current modification time of the file
+	 * @return True if the file can be skipped
+	 */
+	public synchronized Boolean isUnchanged(String path, long size, long lastModified)
+	{
+		Entry entry = this.entries.get(path);
+		return entry != null && entry.size == size && entry.lastModified == lastModified;
+	}
+
+	/**
+	 * Returns the document id a file was previously indexed as, so that re-indexing a changed file overwrites the old
+	 * document instead of creating a duplicate
+	 *
+	 * @param path The absolute path of the file
+	 * @return The previous document id or null if the file was never indexed
+	 */
+	public synchronized String getDocumentId(String path)
+	{
+		Entry entry = this.entries.get(path);
+		return entry == null || NOT_INDEXABLE.equals(entry.documentId) ? null : entry.documentId;
+	}
+
+	/**
+	 * Records that a file was processed. Entries are buffered until commit() is called.
+	 *
+	 * @param path The absolute path of the file
+	 * @param size The size of the file when it was read
+	 * @param lastModified The modification time of the file when it was read
+	 * @param documentId The document id the file was indexed as, or NOT_INDEXABLE
+	 * @throws IOException If the entry could not be written
+	 */
+	public synchronized void record(String path, long size, long lastModified, String documentId) throws IOException
+	{
+		// Paths with line breaks can't be stored, they'll just be processed again next time
+		if (path.indexOf('\n') != -1 || path.indexOf('\r') != -1)
+			return;
+
+		if (this.appendWriter == null)
+		{
+			this.appendStream = new FileOutputStream(this.manifestFile, true);
+			this.appendWriter = new BufferedWriter(new OutputStreamWriter(this.appendStream, StandardCharsets.UTF_8));
+		}
+		this.appendWriter.write(size + "\t" + lastModified + "\t" + documentId + "\t" + path + "\n");
+		this.entries.put(path, new Entry(size, lastModified, documentId));
+		this.linesOnDisk++;
+	}
+
+	/**
+	 * Forces every recorded entry onto the disk. Called after each acknowledged bulk request.
+	 *
+	 * @throws IOException If the entries could not be written
+	 */
+	public synchronized void commit() throws IOException
+	{
+		if (this.appendWriter != null)
+		{
+			this.appendWriter.flush();
+			this.appendStream.getFD().sync();
+		}
+	}
+
+	/**
+	 * Commits any pending entries and rewrites the manifest without superseded lines if it has grown too large
+	 *
+	 * @throws IOException If the manifest could not be written
+	 */
+	public synchronized void close() throws IOException
+	{
+		this.commit();
+		if (this.appendWriter != null)
+		{
+			this.appendWriter.close();
+			this.appendWriter = null;
+			this.appendStream = null;
+		}
+
+		// Only compact if at least half of the lines on disk are stale
+		if (this.linesOnDisk > this.entries.size() * 2)
+		{
+			File compacted = new File(this.manifestFile.getAbsolutePath() + ".tmp");
+			try (BufferedWriter writer = Files.newBufferedWriter(compacted.toPath(), StandardCharsets.UTF_8))
+			{
+				for (Map.Entry<String, Entry> entry : this.entries.entrySet())
+					writer.write(entry.getValue().size + "\t" + entry.getValue().lastModified + "\t" + entry.getValue().documentId + "\t" + entry.getKey() + "\n");
+			}
+			Files.move(compacted.toPath(), this.manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			this.linesOnDisk = this.entries.size();
+		}
+	}
+
+	/**
+	 * A single manifest entry
+	 */
+	private static class Entry
+	{
+		private final long size;
+		private final long lastModified;
+		private final String documentId;
+
+		Entry(long size, long lastModified, String documentId)
+		{
+			this.size = size;
+			this.lastModified = lastModified;
+			this.documentId = documentId;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package model;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+
+/**
+ * A fixed layout holder for the handful of fields we index for each image. One record is reused for every image a
+ * converter thread processes, so converting an image does not allocate a map, tuples, or boxed values.
+ */
+public class IndexableRecord
+{
+	// The index field names, these match the keys produced by MetadataConverter
+	private static final String ALTITUDE_FIELD = "altitude";
+	private static final String CREATE_DATE_FIELD = "createDate";
+	private static final String UPLOAD_DATE_FIELD = "uploadDate";
+	private static final String LOCATION_FIELD = "location";
+	private static final String STORAGE_PATH_FIELD = "storagePath";
+
+	// The latitude of the image in decimal degrees
+	private double latitude;
+	// The longitude of the image in decimal degrees
+	private double longitude;
+	// The altitude of the image, only valid if hasAltitude is true
+	private float altitude;
+	private boolean hasAltitude;
+	// The date the image was taken as yyyy:MM:dd HH:mm:ss ASCII bytes, referenced directly from the parsed metadata
+	private byte[] createDate;
+	// The date the image was uploaded as yyyy:MM:dd HH:mm:ss
+	private String uploadDate;
+	// Where the image is stored, or null if it isn't known
+	private String storagePath;
+
+	/**
+	 * Clears the record so it can be filled in for the next image
+	 */
+	public void reset()
+	{
+		this.latitude = 0;
+		this.longitude = 0;
+		this.altitude = 0;
+		this.hasAltitude = false;
+		this.createDate = null;
+		this.uploadDate = null;
+		this.storagePath = null;
+	}
+
+	/**
+	 * Writes the record as a JSON object with the same shape MetadataConverter produces, plus the storage path if known
+	 *
+	 * @param builder The builder to write into
+	 * @return The builder that was written into
+	 * @throws IOException If the builder could not be written to
+	 */
+	public XContentBuilder writeTo(XContentBuilder builder) throws IOException
+	{
+		builder.startObject();
+		if (this.hasAltitude)
+			builder.field(ALTITUDE_FIELD, this.altitude);
+		builder.field(CREATE_DATE_FIELD).utf8Value(this.createDate, 0, this.createDate.length);
+		builder.field(UPLOAD_DATE_FIELD, this.uploadDate);
+		builder.field(LOCATION_FIELD, Double.toString(this.latitude) + "," + Double.toString(this.longitude));
+		if (this.storagePath != null)
+			builder.field(STORAGE_PATH_FIELD, this.storagePath);
+		builder.endObject();
+		return builder;
+	}
+
+	///
+	/// Getters/Setters
+	///
+
+	public double getLatitude()
+	{
+		return this.latitude;
+	}
+
+	public void setLatitude(double latitude)
+	{
+		this.latitude = latitude;
+	}
+
+	public double getLongitude()
+	{
+		return this.longitude;
+	}
+
+	public void setLongitude(double longitude)
+	{
+		this.longitude = longitude;
+	}
+
+	public float getAltitude()
+	{
+		return this.altitude;
+	}
+
+	public boolean hasAltitude()
+	{
+		return this.hasAltitude;
+	}
+
+	public void setAltitude(float altitude)
+	{
+		this.altitude = altitude;
+		this.hasAltitude = true;
+	}
+
+	public byte[] getCreateDate()
+	{
+		return this.createDate;
+	}
+
+	public void setCreateDate(byte[] createDate)
+	{
+		this.createDate = createDate;
+	}
+
+	public String getUploadDate()
+	{
+		return this.uploadDate;
+	}
+
+	public void setUploadDate(String uploadDate)
+	{
+		this.uploadDate = uploadDate;
+	}
+
+	public String getStoragePath()
+	{
+		return this.storagePath;
+	}
+
+	public void setStoragePath(String storagePath)
+	{
+		this.storagePath = storagePath;
+	}
+}
@@ -0,0 +1,721 @@
+package model;
+
+import com.drew.imaging.ImageProcessingException;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.FilenameUtils;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A bounded producer/consumer pipeline used to index large numbers of images. Files are walked, parsed by a pool of
+ * parser workers, converted by a pool of converter workers, and finally flushed to elasticsearch in bulk chunks. Each
+ * stage is connected by a bounded queue so memory use stays flat regardless of how many files are indexed.
+ */
+public class IndexingPipeline
+{
+	// Marker placed into a queue to tell the stage reading from it to stop
+	private static final ImageDocument END_OF_DOCUMENTS = new ImageDocument(null, 0, 0);
+	// Archives that are opened and have the images inside them indexed in place
+	private static final String[] ARCHIVE_EXTENSIONS = { "tar", "TAR" };
+
+	// The settings used to size the pipeline
+	private final ProcessorSettings settings;
+	// The indexer used to build index requests
+	private final MetadataIndexer indexer;
+	// Sends bulk requests to elasticsearch with bounded concurrency and retries
+	private final BulkIndexer bulkIndexer;
+	// If set every bulk request is written here instead of being sent to elasticsearch
+	private BulkSpool spool = null;
+	// If set bulk requests that can't reach elasticsearch are written here so they aren't lost
+	private BulkSpool failureSpool = null;
+	// The file extensions that will be accepted by the pipeline
+	private final String[] acceptedExtensions;
+	// The manifest of already processed files, or null if every file should be processed
+	private final IndexManifest manifest;
+
+	// The parser used by each parser worker, it has no state so it can be shared
+	private final MetadataParser parser;
+	// Queues connecting each stage of the pipeline
+	private final BlockingQueue<ImageDocument> fileQueue;
+	private final BlockingQueue<ImageDocument> parsedQueue;
+	private final BlockingQueue<ImageDocument> requestQueue;
+
+	// Held while files are submitted, finish takes it exclusively so no file can be queued behind the end markers
+	private final ReentrantReadWriteLock submitLock = new ReentrantReadWriteLock();
+	// Set once finish has started, after which no more files are accepted
+	private Boolean finishing = false;
+
+	// The thread pools that run each stage
+	private ExecutorService parserPool;
+	private ExecutorService converterPool;
+	private ExecutorService flusherPool;
+
+	// Counters and timings for each stage, used to print a summary and written out as a metrics report
+	private final ProcessorMetrics metrics = new ProcessorMetrics();
+	private final ProcessorMetrics.Counter filesDiscovered = this.metrics.counter("files_discovered_total", "Images found by walking directories and scanning archives");
+	private final ProcessorMetrics.Counter archivesScanned = this.metrics.counter("archives_scanned_total", "Archives whose images were indexed in place");
+	private final ProcessorMetrics.Counter filesUnchanged = this.metrics.counter("files_unchanged_total", "Images skipped because the manifest says they are unchanged");
+	private final ProcessorMetrics.Counter filesParsed = this.metrics.counter("files_parsed_total", "Images whose metadata was parsed");
+	private final ProcessorMetrics.Counter filesReadHeaderOnly = this.metrics.counter("files_read_header_only_total", "Images parsed by reading only their header");
+	private final ProcessorMetrics.Counter bytesParsed = this.metrics.counter("bytes_parsed_total", "Total size of every parsed image");
+	private final ProcessorMetrics.Counter bytesRead = this.metrics.counter("bytes_read_total", "Bytes actually read from disk to parse and hash images");
+	private final ProcessorMetrics.Counter documentsSkipped = this.metrics.counter("documents_skipped_total", "Images that could not be parsed or had too little metadata to index");
+	private final ProcessorMetrics.Counter documentsIndexed = this.metrics.counter("documents_indexed_total", "Documents acknowledged by elasticsearch");
+	private final ProcessorMetrics.Counter documentsCreated = this.metrics.counter("documents_created_total", "Documents indexed as new documents");
+	private final ProcessorMetrics.Counter documentsOverwritten = this.metrics.counter("documents_overwritten_total", "Documents that overwrote an existing document");
+	private final ProcessorMetrics.Counter documentsFailed = this.metrics.counter("documents_failed_total", "Documents that could not be indexed or spooled");
+	private final ProcessorMetrics.Counter documentsRejected = this.metrics.counter("documents_rejected_total", "Documents elasticsearch rejected as overloaded and that were retried");
+	private final ProcessorMetrics.Counter documentsSpooled = this.metrics.counter("documents_spooled_total", "Documents written into a spool");
+	private final ProcessorMetrics.Counter bulkRequestsSent = this.metrics.counter("bulk_requests_total", "Bulk requests sent to elasticsearch");
+	private final ProcessorMetrics.Histogram walkTime = this.metrics.histogram("walk_seconds", "Time taken to walk each directory, including waiting for space in the pipeline");
+	private final ProcessorMetrics.Histogram parseTime = this.metrics.histogram("parse_seconds", "Time taken to parse and hash each image");
+	private final ProcessorMetrics.Histogram convertTime = this.metrics.histogram("convert_seconds", "Time taken to convert each image into an index request");
+	private final ProcessorMetrics.Histogram bulkTime = this.metrics.histogram("bulk_seconds", "Time taken to send each bulk request, including retries");
+
+	/**
+	 * Constructor initializes the queues between each stage but does not start any threads
+	 *
+	 * @param settings The settings used to size the pipeline
+	 * @param indexer The indexer used to send bulk requests
+	 * @param acceptedExtensions The file extensions that should be indexed
+	 * @param manifest The manifest used to skip unchanged files, or null to process every file
+	 */
+	public IndexingPipeline(ProcessorSettings settings, MetadataIndexer indexer, String[] acceptedExtensions, IndexManifest manifest)
+	{
+		this.settings = settings;
+		this.indexer = indexer;
+		this.acceptedExtensions = acceptedExtensions;
+		this.manifest = manifest;
+		this.bulkIndexer = new BulkIndexer(indexer, settings);
+		this.parser = new MetadataParser(settings.getHeaderByteBudget());
+		this.fileQueue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+		this.parsedQueue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+		this.requestQueue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+
+		// A full queue shows which stage is the bottleneck, it's the one reading from it
+		this.metrics.gauge("file_queue_depth", "Images waiting to be parsed", this.fileQueue::size);
+		this.metrics.gauge("parsed_queue_depth", "Images waiting to be converted", this.parsedQueue::size);
+		this.metrics.gauge("request_queue_depth", "Index requests waiting to be grouped into a bulk request", this.requestQueue::size);
+	}
+
+	/**
+	 * Starts the parser, converter, and bulk flusher threads. If bulk loading was requested the index is switched into
+	 * its bulk load profile first.
+	 *
+	 * @throws IOException If a spool directory could not be created or the bulk load profile could not be applied
+	 */
+	public void start() throws IOException
+	{
+		if (this.settings.getSpoolDirectory() != null)
+			this.spool = new BulkSpool(new File(this.settings.getSpoolDirectory()));
+		else if (this.settings.getFailureSpoolDirectory() != null)
+			this.failureSpool = new BulkSpool(new File(this.settings.getFailureSpoolDirectory()));
+
+		// There's nothing to bulk load into when everything is going to the spool
+		if (this.settings.isBulkLoad() && this.spool == null)
+			this.bulkIndexer.beginBulkLoad();
+
+		this.parserPool = Executors.newFixedThreadPool(this.settings.getParserThreads());
+		for (int i = 0; i < this.settings.getParserThreads(); i++)
+			this.parserPool.submit(this::runParser);
+
+		this.converterPool = Executors.newFixedThreadPool(this.settings.getConverterThreads());
+		for (int i = 0; i < this.settings.getConverterThreads(); i++)
+			this.converterPool.submit(this::runConverter);
+
+		this.flusherPool = Executors.newSingleThreadExecutor();
+		this.flusherPool.submit(this::runFlusher);
+	}
+
+	/**
+	 * Recursively walks a directory and submits every accepted image into the pipeline. This is the producer stage and
+	 * runs on the calling thread, blocking whenever the parsers fall behind.
+	 *
+	 * @param directory The directory to walk
+	 * @throws IOException If the directory could not be walked
+	 * @throws InterruptedException If the thread was interrupted while waiting for space in the pipeline
+	 * @throws IllegalStateException If the pipeline has started finishing
+	 */
+	public void walk(File directory) throws IOException, InterruptedException
+	{
+		long startTime = System.nanoTime();
+		this.beginSubmit();
+		try
+		{
+			Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>()
+			{
+				@Override
+				public FileVisitResult visitFile(Path path, BasicFileAttributes attributes)
+				{
+					// Only submit regular files with an accepted extension
+					if (attributes.isRegularFile() && IndexingPipeline.this.isAccepted(path.toFile()))
+					{
+						try
+						{
+							IndexingPipeline.this.submit(path.toFile(), attributes.size(), attributes.lastModifiedTime().toMillis());
+						}
+						catch (InterruptedException e)
+						{
+							// Re-throw as unchecked so we can escape the file visitor
+							throw new WalkInterruptedException(e);
+						}
+					}
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path path, IOException exception)
+				{
+					// Skip files we can't read rather than stopping the whole walk
+					DroneLogger.logError("Could not read file during directory walk (" + path + ")");
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+		catch (WalkInterruptedException e)
+		{
+			throw (InterruptedException) e.getCause();
+		}
+		finally
+		{
+			this.submitLock.readLock().unlock();
+			this.walkTime.recordSince(startTime);
+		}
+	}
+
+	/**
+	 * Submits a single file into the pipeline, blocking if the pipeline is full
+	 *
+	 * @param file The file to index
+	 * @throws InterruptedException If the thread was interrupted while waiting for space in the pipeline
+	 * @throws IllegalStateException If the pipeline has started finishing
+	 */
+	public void submit(File file) throws InterruptedException
+	{
+		this.beginSubmit();
+		try
+		{
+			this.submit(file, file.length(), file.lastModified());
+		}
+		finally
+		{
+			this.submitLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Takes the submit lock so finish can't start until this submission is queued. The caller must release it
+	 *
+	 * @throws IllegalStateException If the pipeline has started finishing
+	 */
+	private void beginSubmit()
+	{
+		this.submitLock.readLock().lock();
+		if (this.finishing)
+		{
+			this.submitLock.readLock().unlock();
+			throw new IllegalStateException("The indexing pipeline is finishing and no longer accepts files");
+		}
+	}
+
+	/**
+	 * Submits a single file into the pipeline, blocking if the pipeline is full. Archives have each image inside them
+	 * submitted instead.
+	 *
+	 * @param file The file to index
+	 * @param size The size of the file
+	 * @param lastModified The modification time of the file
+	 * @throws InterruptedException If the thread was interrupted while waiting for space in the pipeline
+	 */
+	private void submit(File file, long size, long lastModified) throws InterruptedException
+	{
+		if (IndexingPipeline.isArchive(file))
+			this.submitArchive(file, lastModified);
+		else
+			this.submit(new ImageDocument(file, size, lastModified));
+	}
+
+	/**
+	 * Submits every image inside a tar archive into the pipeline. Only the tar headers are read here, the data of
+	 * each entry is skipped over, and each image is later read in place by the parser stage.
+	 *
+	 * @param archive The archive to index
+	 * @param lastModified The modification time of the archive, used for every image inside it
+	 * @throws InterruptedException If the thread was interrupted while waiting for space in the pipeline
+	 */
+	private void submitArchive(File archive, long lastModified) throws InterruptedException
+	{
+		try (FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ))
+		{
+			// The tar stream must read straight from the channel so the channel position is the start of each entry's data
+			BoundedChannelInputStream inputStream = new BoundedChannelInputStream(channel, 0, channel.size(), Long.MAX_VALUE);
+			TarArchiveInputStream tarInputStream = new TarArchiveInputStream(inputStream);
+			TarArchiveEntry entry;
+			while ((entry = tarInputStream.getNextTarEntry()) != null)
+				if (entry.isFile() && this.isImage(new File(entry.getName())))
+					this.submit(new ImageDocument(archive, entry.getName(), inputStream.getPosition(), entry.getSize(), lastModified));
+
+			this.archivesScanned.increment();
+			DroneLogger.logDebug("Scanned archive " + archive.getAbsolutePath() + " reading " + inputStream.getBytesRead() + " of " + channel.size() + " bytes");
+		}
+		catch (IOException e)
+		{
+			DroneLogger.logError("Could not read the archive! File is " + archive.getAbsolutePath() + " (" + e.getMessage() + ")");
+		}
+	}
+
+	/**
+	 * Submits a single image into the pipeline unless the manifest says it is unchanged, blocking if the pipeline is full
+	 *
+	 * @param document The image to index
+	 * @throws InterruptedException If the thread was interrupted while waiting for space in the pipeline
+	 */
+	private void submit(ImageDocument document) throws InterruptedException
+	{
+		this.filesDiscovered.increment();
+		// If this image was processed on an earlier run and hasn't changed, skip it
+		if (this.manifest != null && this.manifest.isUnchanged(document.getPath(), document.getSize(), document.getLastModified()))
+		{
+			this.filesUnchanged.increment();
+			return;
+		}
+		this.fileQueue.put(document);
+	}
+
+	/**
+	 * Tests if a file is an image or an archive that this pipeline accepts
+	 *
+	 * @param file The file to test
+	 * @return True if the file should be indexed, false otherwise
+	 */
+	public Boolean isAccepted(File file)
+	{
+		return this.isImage(file) || IndexingPipeline.isArchive(file);
+	}
+
+	/**
+	 * Tests if a file has an image extension that this pipeline accepts
+	 *
+	 * @param file The file to test
+	 * @return True if the file is an image that should be indexed, false otherwise
+	 */
+	private Boolean isImage(File file)
+	{
+		String extension = FilenameUtils.getExtension(file.getName());
+		return Arrays.stream(this.acceptedExtensions).anyMatch(extension::equals);
+	}
+
+	/**
+	 * Tests if a file is an archive whose images should be indexed
+	 *
+	 * @param file The file to test
+	 * @return True if the file is an archive, false otherwise
+	 */
+	public static Boolean isArchive(File file)
+	{
+		String extension = FilenameUtils.getExtension(file.getName());
+		return Arrays.stream(ARCHIVE_EXTENSIONS).anyMatch(extension::equals);
+	}
+
+	/**
+	 * Signals that no more files will be submitted and waits for every stage to drain. Submissions already in progress
+	 * are queued first, any made afterwards are refused
+	 *
+	 * @throws InterruptedException If the thread was interrupted while waiting for the pipeline to finish
+	 */
+	public void finish() throws InterruptedException
+	{
+		this.submitLock.writeLock().lockInterruptibly();
+		try
+		{
+			this.finishing = true;
+		}
+		finally
+		{
+			this.submitLock.writeLock().unlock();
+		}
+
+		// Stop the parsers once they've drained the file queue
+		for (int i = 0; i < this.settings.getParserThreads(); i++)
+			this.fileQueue.put(END_OF_DOCUMENTS);
+		this.awaitTermination(this.parserPool);
+
+		// Stop the converters once they've drained the parsed queue
+		for (int i = 0; i < this.settings.getConverterThreads(); i++)
+			this.parsedQueue.put(END_OF_DOCUMENTS);
+		this.awaitTermination(this.converterPool);
+
+		// Stop the flusher once it's sent the last bulk request
+		this.requestQueue.put(END_OF_DOCUMENTS);
+		this.awaitTermination(this.flusherPool);
+		// Wait for the last bulk requests to come back
+		this.bulkIndexer.close();
+
+		// Put the index back the way it was if we were bulk loading
+		try
+		{
+			this.bulkIndexer.endBulkLoad();
+		}
+		catch (IOException e)
+		{
+			DroneLogger.logError("Could not restore the index settings after bulk loading! " + e.getMessage());
+		}
+
+		// Make sure every acknowledged file is written to the manifest
+		this.commitManifest();
+
+		DroneLogger.logDebug("Indexing finished. Files discovered: " + this.filesDiscovered.get() +
+				" (" + this.archivesScanned.get() + " archives)" +
+				", unchanged: " + this.filesUnchanged.get() +
+				", parsed: " + this.filesParsed.get() +
+				" (" + this.filesReadHeaderOnly.get() + " header only, " + this.bytesRead.get() + " of " + this.bytesParsed.get() + " bytes read)" +
+				", skipped: " + this.documentsSkipped.get() +
+				", indexed: " + this.documentsIndexed.get() + " (" + this.documentsCreated.get() + " new, " + this.documentsOverwritten.get() + " overwritten)" +
+				", failed: " + this.documentsFailed.get() +
+				", rejected: " + this.documentsRejected.get() +
+				", spooled: " + this.documentsSpooled.get() +
+				", bulk requests: " + this.bulkRequestsSent.get());
+	}
+
+	/**
+	 * @return The counters and timings of every stage in the pipeline
+	 */
+	public ProcessorMetrics getMetrics()
+	{
+		return this.metrics;
+	}
+
+	/**
+	 * Shuts down a stage's thread pool and waits for its threads to exit
+	 *
+	 * @param pool The pool to wait for
+	 * @throws InterruptedException If the thread was interrupted while waiting
+	 */
+	private void awaitTermination(ExecutorService pool) throws InterruptedException
+	{
+		pool.shutdown();
+		while (!pool.awaitTermination(1, TimeUnit.MINUTES))
+			DroneLogger.logDebug("Still waiting for the indexing pipeline to drain...");
+	}
+
+	/**
+	 * Parser stage, takes files off the file queue and reads their raw metadata
+	 */
+	private void runParser()
+	{
+		try
+		{
+			ImageDocument document;
+			while ((document = this.fileQueue.take()) != END_OF_DOCUMENTS)
+			{
+				long startTime = System.nanoTime();
+				// Images are read in place, whether they're a file of their own or inside an archive
+				try (FileChannel channel = FileChannel.open(document.getFile().toPath(), StandardOpenOption.READ))
+				{
+					MetadataReadResult readResult = this.parser.read(channel, document.getOffset(), document.getSize());
+					document.setBytesRead(readResult.getBytesRead());
+					document.setMetadata(readResult.getMetadata());
+					document.setContentHash(ContentHasher.hash(channel, document.getOffset(), document.getSize()));
+					this.parseTime.recordSince(startTime);
+
+					this.filesParsed.increment();
+					this.bytesParsed.add(document.getSize());
+					this.bytesRead.add(readResult.getBytesRead() + ContentHasher.bytesSampled(document.getSize()));
+					if (readResult.isHeaderOnly())
+						this.filesReadHeaderOnly.increment();
+					DroneLogger.logDebug("Read " + readResult.getBytesRead() + " of " + document.getSize() + " bytes" + (readResult.isHeaderOnly() ? " (header only)" : "") + " from " + document.getPath());
+
+					this.parsedQueue.put(document);
+				}
+				// If the image could not be processed skip it and print an error
+				catch (ImageProcessingException | IOException e)
+				{
+					this.documentsSkipped.increment();
+					DroneLogger.logError("Could not process the image metadata! File is " + document.getPath());
+				}
+				// A corrupt file must not take the worker down with it
+				catch (RuntimeException e)
+				{
+					this.documentsSkipped.increment();
+					DroneLogger.logError("Unexpected error parsing " + document.getPath() + ": " + e.getMessage());
+				}
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Converter stage, takes metadata off the parsed queue, converts it, and serializes it into an index request. Each
+	 * worker reuses one converter and one record for every image so conversion produces almost no garbage.
+	 */
+	private void runConverter()
+	{
+		CompiledMetadataConverter converter = new CompiledMetadataConverter();
+		IndexableRecord record = new IndexableRecord();
+		try
+		{
+			ImageDocument document;
+			while ((document = this.parsedQueue.take()) != END_OF_DOCUMENTS)
+			{
+				long startTime = System.nanoTime();
+				IndexRequest indexRequest;
+				try
+				{
+					// If the metadata was not sufficient, throw the image away
+					if (!converter.convert(document.getMetadata(), record))
+					{
+						this.documentsSkipped.increment();
+						DroneLogger.logDebug("Not enough metadata was present on the image to index it, ignoring " + document.getPath());
+						// Remember that this file can't be indexed so we don't parse it again next time
+						this.recordInManifest(document, IndexManifest.NOT_INDEXABLE);
+						continue;
+					}
+					record.setStoragePath(document.getPath());
+					indexRequest = this.indexer.buildIndexRequest(record);
+				}
+				// A malformed value or a serialization failure must not take the worker down with it
+				catch (IOException | RuntimeException e)
+				{
+					this.documentsSkipped.increment();
+					DroneLogger.logError("Could not convert the image metadata! File is " + document.getPath());
+					continue;
+				}
+				// The metadata is no longer needed, let it be collected while the document waits to be sent
+				document.setMetadata(null);
+				// Index by content hash so re-indexing overwrites instead of duplicating. If this file was indexed before
+				// it changed, keep its old id so the old document is overwritten too
+				String previousId = this.manifest == null ? null : this.manifest.getDocumentId(document.getPath());
+				indexRequest.id(previousId != null ? previousId : document.getContentHash());
+				this.convertTime.recordSince(startTime);
+				document.setIndexRequest(indexRequest);
+				this.requestQueue.put(document);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Bulk flush stage, groups index requests into bulk requests limited by document count and byte size. A partially
+	 * filled bulk request is also sent once its oldest document has waited longer than the flush interval, so slow
+	 * trickles of files (such as in daemon mode) still get indexed promptly.
+	 */
+	private void runFlusher()
+	{
+		try
+		{
+			BulkRequest bulkRequest = new BulkRequest();
+			// The documents in the bulk request, in the same order as the bulk request's items
+			List<ImageDocument> documents = new ArrayList<>();
+			// The time the first document in the current bulk request arrived
+			long oldestArrival = 0;
+			while (true)
+			{
+				ImageDocument document;
+				// If nothing is waiting we can block indefinitely, otherwise only wait until the flush interval expires
+				if (documents.isEmpty())
+					document = this.requestQueue.take();
+				else
+					document = this.requestQueue.poll(oldestArrival + this.settings.getFlushIntervalMillis() - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+
+				if (document == END_OF_DOCUMENTS)
+					break;
+
+				// The flush interval expired, send what we have
+				if (document == null)
+				{
+					this.flush(bulkRequest, documents);
+					bulkRequest = new BulkRequest();
+					documents = new ArrayList<>();
+					continue;
+				}
+
+				if (documents.isEmpty())
+					oldestArrival = System.currentTimeMillis();
+				bulkRequest.add(document.getIndexRequest());
+				documents.add(document);
+				// If the bulk request is full, send it
+				if (bulkRequest.numberOfActions() >= this.settings.getBulkActions() || bulkRequest.estimatedSizeInBytes() >= this.settings.getBulkBytes())
+				{
+					this.flush(bulkRequest, documents);
+					bulkRequest = new BulkRequest();
+					documents = new ArrayList<>();
+				}
+			}
+			// Send anything that's left over
+			if (bulkRequest.numberOfActions() > 0)
+				this.flush(bulkRequest, documents);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Hands a bulk request to the bulk indexer, blocking if too many bulk requests are already in flight. In spool mode
+	 * the bulk request is written to the spool instead.
+	 *
+	 * @param bulkRequest The bulk request to send
+	 * @param documents The documents in the bulk request, in order
+	 * @throws InterruptedException If the thread was interrupted while waiting for a free sender
+	 */
+	private void flush(BulkRequest bulkRequest, List<ImageDocument> documents) throws InterruptedException
+	{
+		if (this.spool != null)
+		{
+			this.spoolDocuments(this.spool, bulkRequest, documents);
+			this.commitManifest();
+		}
+		else
+		{
+			this.bulkIndexer.submit(bulkRequest, result -> this.onBulkComplete(result, bulkRequest, documents));
+		}
+	}
+
+	/**
+	 * Records the result of a bulk request. Documents that were acknowledged are written to the manifest. If the
+	 * cluster was unreachable and there's a failure spool, the documents that didn't make it are spooled instead.
+	 *
+	 * @param result The result of every document in the bulk request
+	 * @param bulkRequest The bulk request that was sent
+	 * @param documents The documents in the bulk request, in order
+	 */
+	private void onBulkComplete(BulkBatchResult result, BulkRequest bulkRequest, List<ImageDocument> documents)
+	{
+		this.bulkRequestsSent.increment();
+		this.bulkTime.record(result.getDurationNanos());
+		this.documentsIndexed.add(result.getIndexedCount());
+		this.documentsCreated.add(result.getCreatedCount());
+		this.documentsOverwritten.add(result.getOverwrittenCount());
+		this.documentsRejected.add(result.getRetries());
+
+		// Checkpoint every document that made it into the index
+		for (int i = 0; i < result.size(); i++)
+			if (!result.isFailed(i))
+				this.recordInManifest(documents.get(i), result.getId(i));
+
+		// Keep anything that never reached the cluster so it can be replayed later
+		if (result.isUnreachable() && this.failureSpool != null)
+		{
+			BulkRequest unsent = new BulkRequest();
+			List<ImageDocument> unsentDocuments = new ArrayList<>();
+			for (int i = 0; i < result.size(); i++)
+			{
+				if (result.isFailed(i))
+				{
+					unsent.add(bulkRequest.requests().get(i));
+					unsentDocuments.add(documents.get(i));
+				}
+			}
+			this.spoolDocuments(this.failureSpool, unsent, unsentDocuments);
+		}
+		else
+		{
+			this.documentsFailed.add(result.getFailedCount());
+		}
+		this.commitManifest();
+	}
+
+	/**
+	 * Writes documents into a spool and records them in the manifest, they're safe on disk and don't need to be
+	 * parsed again
+	 *
+	 * @param spool The spool to write into
+	 * @param bulkRequest The bulk request holding the documents
+	 * @param documents The documents in the bulk request, in order
+	 */
+	private void spoolDocuments(BulkSpool spool, BulkRequest bulkRequest, List<ImageDocument> documents)
+	{
+		try
+		{
+			File segment = spool.writeSegment(bulkRequest);
+			this.documentsSpooled.add(bulkRequest.numberOfActions());
+			DroneLogger.logDebug("Spooled " + bulkRequest.numberOfActions() + " documents into " + segment.getAbsolutePath());
+			for (int i = 0; i < documents.size(); i++)
+				this.recordInManifest(documents.get(i), bulkRequest.requests().get(i).id());
+		}
+		catch (IOException e)
+		{
+			this.documentsFailed.add(bulkRequest.numberOfActions());
+			DroneLogger.logError("Could not write documents into the spool! " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Records a processed document in the manifest if there is one
+	 *
+	 * @param document The document that was processed
+	 * @param documentId The id the document was indexed as
+	 */
+	private void recordInManifest(ImageDocument document, String documentId)
+	{
+		if (this.manifest != null)
+		{
+			try
+			{
+				this.manifest.record(document.getPath(), document.getSize(), document.getLastModified(), documentId);
+			}
+			catch (IOException e)
+			{
+				DroneLogger.logError("Could not write to the index manifest! " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Forces recorded manifest entries onto the disk if there is a manifest
+	 */
+	private void commitManifest()
+	{
+		if (this.manifest != null)
+		{
+			try
+			{
+				this.manifest.commit();
+			}
+			catch (IOException e)
+			{
+				DroneLogger.logError("Could not write to the index manifest! " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Unchecked wrapper used to escape the file visitor when the walk is interrupted
+	 */
+	private static class WalkInterruptedException extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+
+		WalkInterruptedException(InterruptedException cause)
+		{
+			super(cause);
+		}
+	}
+}
@@ -1,23 +1,27 @@
 package model;
 
 import org.apache.http.HttpHost;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
-import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
-import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
 /**
  * Used to index metadata into the elasticsearch index
  */
-public class MetadataIndexer
+public class MetadataIndexer implements Closeable
 {
 	// The IP of the elastic search index
 	private static final String ELASTIC_SEARCH_HOST = "128.196.38.73";
@@ -31,102 +35,116 @@ public class MetadataIndexer
 	// The type that each image is indexed as
 	private static final String ELASTIC_SEARCH_TYPE = "_doc";
 
-	// The converter used to convert raw metadata into index metadata
-	private MetadataConverter metadataConverter = new MetadataConverter();
+	// The client connection to the elasticsearch index, created the first time it is needed and shared afterwards
+	private RestHighLevelClient client;
 
 	/**
-	 * Indexes given raw metadata into the elastic search cluster
+	 * Returns the connection to the elasticsearch index, opening it if this is the first call
 	 *
-	 * @param rawMetadata The mapping of exif tag -> exif value to index
+	 * @return The client connected to the elasticsearch index
 	 */
-	public void indexSingle(Map<String, String> rawMetadata)
+	private synchronized RestHighLevelClient getClient()
 	{
-		// First convert our raw metadata into something indexable
-		Map<String, Object> cleanedMetadata = this.metadataConverter.convertRawToIndexable(rawMetadata);
-
-		if (cleanedMetadata == null || cleanedMetadata.isEmpty())
-		{
-			DroneLogger.logDebug("Not enough metadata was present on the image to index it, ignore the file.");
-			System.exit(0);
-		}
-
-		// Open a DB connection
-		try (RestHighLevelClient client = new RestHighLevelClient(RestClient.builder(new HttpHost(ELASTIC_SEARCH_HOST, ELASTIC_SEARCH_PORT, ELASTIC_SEARCH_SCHEME))))
-		{
-			// Create an index request
-			IndexRequest request = new IndexRequest()
-					.index(ELASTIC_SEARCH_INDEX)
-					.type(ELASTIC_SEARCH_TYPE)
-					.source(cleanedMetadata);
+		if (this.client == null)
+			this.client = new RestHighLevelClient(RestClient.builder(new HttpHost(ELASTIC_SEARCH_HOST, ELASTIC_SEARCH_PORT, ELASTIC_SEARCH_SCHEME)));
+		return this.client;
+	}
 
-			// Execute the indexing process and get the response
-			IndexResponse response = client.index(request);
+	/**
+	 * Creates an index request for already converted metadata. This serializes the metadata, so it can be called in parallel
+	 *
+	 * @param cleanedMetadata The converted metadata to index
+	 * @return An index request ready to be added to a bulk request
+	 */
+	public IndexRequest buildIndexRequest(Map<String, Object> cleanedMetadata)
+	{
+		return new IndexRequest()
+				.index(ELASTIC_SEARCH_INDEX)
+				.type(ELASTIC_SEARCH_TYPE)
+				.source(cleanedMetadata);
+	}
 
-			// Print out the response code
-			DroneLogger.logDebug("Index response: " + response.status());
-		}
-		// This means our connection to the elasticsearch index wasn't successful, so throw an error
-		catch (IOException e)
-		{
-			DroneLogger.logError("Error connecting to the elasticsearch client!");
-			e.printStackTrace();
-		}
+	/**
+	 * Creates an index request for a converted record. The record is serialized immediately, so it can be reused as
+	 * soon as this returns
+	 *
+	 * @param record The converted record to index
+	 * @return An index request ready to be added to a bulk request
+	 * @throws IOException If the record could not be serialized
+	 */
+	public IndexRequest buildIndexRequest(IndexableRecord record) throws IOException
+	{
+		return new IndexRequest()
+				.index(ELASTIC_SEARCH_INDEX)
+				.type(ELASTIC_SEARCH_TYPE)
+				.source(record.writeTo(XContentFactory.jsonBuilder()));
 	}
 
 	/**
-	 * Indexes a list of exif tag -> exif value mappings all at once with bulk optimization
+	 * Sends a single bulk request to the elasticsearch index using the shared connection
 	 *
-	 * @param rawMetadataList The list of raw metadata to index
+	 * @param bulkRequest The bulk request to send
+	 * @return The response from the elasticsearch index
+	 * @throws IOException If the connection to the elasticsearch index failed
 	 */
-	public void indexBulk(List<Map<String, String>> rawMetadataList)
+	public BulkResponse sendBulk(BulkRequest bulkRequest) throws IOException
 	{
-		// Map the raw metadata to the conversion function which will give us a list of cleaned up metadata
-		List<Map<String, Object>> cleanedMetadataList = rawMetadataList
-				.stream()
-				// Convert each metadata object to its indexable counterpart
-				.map(this.metadataConverter::convertRawToIndexable)
-				// Remove any null mappings which mean the metadata was invalid
-				.filter(Objects::nonNull)
-				// Remove any mappings that are empty (meaning no metadata was found)
-				.filter(stringObjectMap -> stringObjectMap.size() > 0)
-				.collect(Collectors.toList());
+		return this.getClient().bulk(bulkRequest);
+	}
 
-		// Make sure we have at least one image that is ready to be indexed
-		if (cleanedMetadataList.isEmpty())
+	/**
+	 * Reads settings of the index we index into
+	 *
+	 * @param names The names of the settings to read
+	 * @return The settings that are explicitly set on the index, settings left at their default are missing
+	 * @throws IOException If the connection to the elasticsearch index failed
+	 */
+	public Settings getIndexSettings(String... names) throws IOException
+	{
+		GetSettingsResponse response = this.getClient().indices().getSettings(new GetSettingsRequest().indices(ELASTIC_SEARCH_INDEX).names(names), RequestOptions.DEFAULT);
+		Settings.Builder settings = Settings.builder();
+		for (String name : names)
 		{
-			DroneLogger.logDebug("No images contained sufficient metadata to be indexed, they were all ignored.");
-			System.exit(0);
+			String value = response.getSetting(ELASTIC_SEARCH_INDEX, name);
+			if (value != null)
+				settings.put(name, value);
 		}
+		return settings.build();
+	}
 
-		// Open a DB connection
-		try (RestHighLevelClient client = new RestHighLevelClient(RestClient.builder(new HttpHost(ELASTIC_SEARCH_HOST, ELASTIC_SEARCH_PORT, ELASTIC_SEARCH_SCHEME))))
-		{
-			// Create a bulk index request
-			BulkRequest bulkRequest = new BulkRequest();
-
-			// Create an index request for each metadata mapping
-			cleanedMetadataList.forEach(cleanedMetadata ->
-			{
-				IndexRequest request = new IndexRequest()
-						.index(ELASTIC_SEARCH_INDEX)
-						.type(ELASTIC_SEARCH_TYPE)
-						.source(cleanedMetadata);
-				bulkRequest.add(request);
-			});
+	/**
+	 * Updates settings of the index we index into
+	 *
+	 * @param settings The settings to update, null values reset the setting to its default
+	 * @throws IOException If the connection to the elasticsearch index failed
+	 */
+	public void updateIndexSettings(Settings settings) throws IOException
+	{
+		this.getClient().indices().putSettings(new UpdateSettingsRequest(ELASTIC_SEARCH_INDEX).settings(settings), RequestOptions.DEFAULT);
+	}
 
-			// Execute the insert and save the response
-			BulkResponse response = client.bulk(bulkRequest);
+	/**
+	 * Refreshes the index we index into so recently indexed documents become searchable
+	 *
+	 * @throws IOException If the connection to the elasticsearch index failed
+	 */
+	public void refreshIndex() throws IOException
+	{
+		this.getClient().indices().refresh(new RefreshRequest(ELASTIC_SEARCH_INDEX), RequestOptions.DEFAULT);
+	}
 
-			// Print the response and any failures if there were any
-			DroneLogger.logDebug("Index response: " + response.status());
-			if (response.hasFailures())
-				DroneLogger.logDebug(response.buildFailureMessage());
-		}
-		// If the connection to the elasticsearch server fails catch it here
-		catch (IOException e)
+	/**
+	 * Closes the connection to the elasticsearch index if one was opened
+	 *
+	 * @throws IOException If the connection could not be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (this.client != null)
 		{
-			DroneLogger.logDebug("Error connecting to the elasticsearch client!");
-			e.printStackTrace();
+			this.client.close();
+			this.client = null;
 		}
 	}
 }
@@ -6,14 +6,29 @@ import com.adobe.xmp.XMPMeta;
 import com.adobe.xmp.properties.XMPPropertyInfo;
 import com.drew.imaging.ImageMetadataReader;
 import com.drew.imaging.ImageProcessingException;
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.imaging.jpeg.JpegProcessingException;
+import com.drew.imaging.jpeg.JpegSegmentMetadataReader;
+import com.drew.imaging.psd.PsdMetadataReader;
+import com.drew.imaging.tiff.TiffMetadataReader;
+import com.drew.imaging.tiff.TiffProcessingException;
 import com.drew.metadata.Directory;
 import com.drew.metadata.Metadata;
 import com.drew.metadata.Tag;
+import com.drew.metadata.exif.ExifReader;
+import com.drew.metadata.file.FileSystemMetadataReader;
 import com.drew.metadata.xmp.XmpDirectory;
+import com.drew.metadata.xmp.XmpReader;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -21,6 +36,33 @@ import java.util.Map;
  */
 public class MetadataParser
 {
+	// The default number of bytes the header-only path may read before giving up and using the full reader
+	public static final long DEFAULT_HEADER_BYTE_BUDGET = 4L * 1024L * 1024L;
+
+	// The JPEG segment readers used by the header-only path, these only need the APP1 segments
+	private static final List<JpegSegmentMetadataReader> JPEG_HEADER_READERS = Arrays.asList(new ExifReader(), new XmpReader());
+
+	// The maximum number of bytes the header-only path may read
+	private final long headerByteBudget;
+
+	/**
+	 * Constructor uses the default header byte budget
+	 */
+	public MetadataParser()
+	{
+		this(DEFAULT_HEADER_BYTE_BUDGET);
+	}
+
+	/**
+	 * Constructor just assigns fields
+	 *
+	 * @param headerByteBudget The maximum number of bytes the header-only path may read
+	 */
+	public MetadataParser(long headerByteBudget)
+	{
+		this.headerByteBudget = headerByteBudget;
+	}
+
 	/**
 	 * Given a file to parse, this method returns a mapping of raw key->value metadata pairs found on the image
 	 *
@@ -29,65 +71,172 @@ public class MetadataParser
 	 */
 	public Map<String, String> parse(File fileToParse)
 	{
-		// Create a map of metadata objects
-		Map<String, String> metadataMap = new HashMap<>();
 		try
 		{
-			// Read the file's metadata
-			Metadata metadata = ImageMetadataReader.readMetadata(fileToParse);
+			return this.flatten(this.read(fileToParse).getMetadata());
+		}
+		// If the image could not be processed skip it and print an error
+		catch (ImageProcessingException | IOException e)
+		{
+			DroneLogger.logError("Could not process the image metadata! File is " + fileToParse.getAbsolutePath());
+		}
+		return new HashMap<>();
+	}
+
+	/**
+	 * Reads a file's metadata. JPEG, TIFF, and PSD files are first read header-only, pulling in just the metadata
+	 * segments. If that fails or needs more than the byte budget the whole file is handed to the full reader.
+	 *
+	 * @param file The file to read metadata from
+	 * @return The metadata and the number of bytes that were read to get it
+	 * @throws ImageProcessingException If the file is not a supported image
+	 * @throws IOException If the file could not be read
+	 */
+	public MetadataReadResult read(File file) throws ImageProcessingException, IOException
+	{
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			MetadataReadResult result = this.read(channel, 0, channel.size());
+			new FileSystemMetadataReader().read(file, result.getMetadata());
+			return result;
+		}
+	}
+
+	/**
+	 * Reads the metadata of an image stored in a window of a file, such as an image inside an uncompressed archive.
+	 * Works like read(File) but never copies the image out of the file.
+	 *
+	 * @param channel The channel containing the image
+	 * @param offset The offset of the image in the channel
+	 * @param length The length of the image
+	 * @return The metadata and the number of bytes that were read to get it
+	 * @throws ImageProcessingException If the image is not a supported image
+	 * @throws IOException If the image could not be read
+	 */
+	public MetadataReadResult read(FileChannel channel, long offset, long length) throws ImageProcessingException, IOException
+	{
+		// Try the fast path first
+		MetadataReadResult headerResult = this.readHeader(channel, offset, length);
+		if (headerResult != null)
+			return headerResult;
+
+		// Fall back to the full reader, still counting how many bytes it needs
+		BoundedChannelInputStream inputStream = new BoundedChannelInputStream(channel, offset, length, Long.MAX_VALUE);
+		Metadata metadata = ImageMetadataReader.readMetadata(new BufferedInputStream(inputStream), length);
+		return new MetadataReadResult(metadata, inputStream.getBytesRead(), false);
+	}
+
+	/**
+	 * Attempts to read only the metadata segments of an image stored in a window of a file
+	 *
+	 * @param channel The channel containing the image
+	 * @param offset The offset of the image in the channel
+	 * @param length The length of the image
+	 * @return The metadata read, or null if the image type isn't supported or the byte budget was exceeded
+	 * @throws IOException If the file could not be read
+	 */
+	public MetadataReadResult readHeader(FileChannel channel, long offset, long length) throws IOException
+	{
+		// Read the magic number to figure out which reader to use
+		if (length < 4)
+			return null;
+		ByteBuffer magic = ByteBuffer.allocate(4);
+		while (magic.hasRemaining())
+			if (channel.read(magic, offset + magic.position()) < 0)
+				return null;
+		byte[] magicBytes = magic.array();
+		long bytesRead = magicBytes.length;
+
+		try
+		{
+			// JPEG files start with FF D8, read its segments up to the start of the image data skipping anything but APP1
+			if ((magicBytes[0] & 0xFF) == 0xFF && (magicBytes[1] & 0xFF) == 0xD8)
+			{
+				BoundedChannelInputStream inputStream = new BoundedChannelInputStream(channel, offset, length, this.headerByteBudget);
+				Metadata metadata = new Metadata();
+				JpegMetadataReader.process(metadata, new BufferedInputStream(inputStream, 4096), JPEG_HEADER_READERS);
+				return inputStream.isBudgetExceeded() ? null : new MetadataReadResult(metadata, bytesRead + inputStream.getBytesRead(), true);
+			}
+			// TIFF files (and TIFF based raw formats) start with II or MM, follow the IFD chain reading only the pages it touches
+			else if ((magicBytes[0] == 'I' && magicBytes[1] == 'I') || (magicBytes[0] == 'M' && magicBytes[1] == 'M'))
+			{
+				BoundedFileReader reader = new BoundedFileReader(channel, offset, length, this.headerByteBudget);
+				Metadata metadata = TiffMetadataReader.readMetadata(reader);
+				return reader.isBudgetExceeded() ? null : new MetadataReadResult(metadata, bytesRead + reader.getBytesRead(), true);
+			}
+			// PSD files start with 8BPS, their metadata lives in the image resources section ahead of the image data
+			else if (magicBytes[0] == '8' && magicBytes[1] == 'B' && magicBytes[2] == 'P' && magicBytes[3] == 'S')
+			{
+				BoundedChannelInputStream inputStream = new BoundedChannelInputStream(channel, offset, length, this.headerByteBudget);
+				Metadata metadata = PsdMetadataReader.readMetadata(new BufferedInputStream(inputStream, 4096));
+				return inputStream.isBudgetExceeded() ? null : new MetadataReadResult(metadata, bytesRead + inputStream.getBytesRead(), true);
+			}
+		}
+		// If the budget was exceeded or the header was malformed let the full reader have a go
+		catch (ByteBudgetExceededException | JpegProcessingException | TiffProcessingException e)
+		{
+			return null;
+		}
+		return null;
+	}
+
+	/**
+	 * Flattens metadata into a mapping of '[Directory] TagName' -> 'TagValue' pairs
+	 *
+	 * @param metadata The metadata to flatten
+	 * @return A mapping of exif key -> exif value pairs
+	 */
+	public Map<String, String> flatten(Metadata metadata)
+	{
+		// Create a map of metadata objects
+		Map<String, String> metadataMap = new HashMap<>();
 
-			// Iterate over metadata directories
-			for (Directory directory : metadata.getDirectories())
+		// Iterate over metadata directories
+		for (Directory directory : metadata.getDirectories())
+		{
+			// For each metadata tag add '[Directory] TagName' -> 'TagValue' as a metadata entry
+			for (Tag tag : directory.getTags())
 			{
-				// For each metadata tag add '[Directory] TagName' -> 'TagValue' as a metadata entry
-				for (Tag tag : directory.getTags())
-				{
-					// This is taken from tag.toString
-					String description = tag.getDescription();
-					if (description == null)
-						description = directory.getString(tag.getTagType()) + " (unable to formulate description)";
-					// Put  '[Directory] TagName' -> 'TagValue'
-					metadataMap.put("[" + tag.getDirectoryName() + "] " + tag.getTagName(), description);
-				}
+				// This is taken from tag.toString
+				String description = tag.getDescription();
+				if (description == null)
+					description = directory.getString(tag.getTagType()) + " (unable to formulate description)";
+				// Put  '[Directory] TagName' -> 'TagValue'
+				metadataMap.put("[" + tag.getDirectoryName() + "] " + tag.getTagName(), description);
+			}
 
-				// If the directory is XMP, it's unstructured and must be parsed separately
-				if (directory instanceof XmpDirectory)
+			// If the directory is XMP, it's unstructured and must be parsed separately
+			if (directory instanceof XmpDirectory)
+			{
+				// Grab the XMP directory
+				XmpDirectory xmpDirectory = (XmpDirectory) directory;
+				// Grab unstructured XMP metadata
+				XMPMeta xmpMeta = xmpDirectory.getXMPMeta();
+				try
 				{
-					// Grab the XMP directory
-					XmpDirectory xmpDirectory = (XmpDirectory) directory;
-					// Grab unstructured XMP metadata
-					XMPMeta xmpMeta = xmpDirectory.getXMPMeta();
-					try
-					{
-						// Grab the iterator that goes over the XMP metadata
-						XMPIterator xmpIterator = xmpMeta.iterator();
-						while (xmpIterator.hasNext())
-						{
-							// Grab the XMP properties info
-							XMPPropertyInfo propertyInfo = (XMPPropertyInfo) xmpIterator.next();
-							// Add it to our mapping
-							metadataMap.put("[XMP Property] " + propertyInfo.getPath(), propertyInfo.getValue());
-						}
-					}
-					// There was an exception, print it but keep going
-					catch (XMPException e)
+					// Grab the iterator that goes over the XMP metadata
+					XMPIterator xmpIterator = xmpMeta.iterator();
+					while (xmpIterator.hasNext())
 					{
-						DroneLogger.logError("Could not read the XMP metadata!");
-						e.printStackTrace();
+						// Grab the XMP properties info
+						XMPPropertyInfo propertyInfo = (XMPPropertyInfo) xmpIterator.next();
+						// Add it to our mapping
+						metadataMap.put("[XMP Property] " + propertyInfo.getPath(), propertyInfo.getValue());
 					}
 				}
-
-				// If our directory had any errors, print those
-				for (String error : directory.getErrors())
+				// There was an exception, print it but keep going
+				catch (XMPException e)
 				{
-					DroneLogger.logError("Directory Error: " + error);
+					DroneLogger.logError("Could not read the XMP metadata!");
+					e.printStackTrace();
 				}
 			}
-		}
-		// If the image could not be processed skip it and print an error
-		catch (ImageProcessingException | IOException e)
-		{
-			DroneLogger.logError("Could not process the image metadata! File is " + fileToParse.getAbsolutePath());
+
+			// If our directory had any errors, print those
+			for (String error : directory.getErrors())
+			{
+				DroneLogger.logError("Directory Error: " + error);
+			}
 		}
 		return metadataMap;
 	}
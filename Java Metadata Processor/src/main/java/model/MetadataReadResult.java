@@ -0,0 +1,49 @@
+package model;
+
+import com.drew.metadata.Metadata;
+
+/**
+ * The result of reading an image file's metadata, along with how much of the file had to be read to get it
+ */
+public class MetadataReadResult
+{
+	// The metadata read off of the file
+	private final Metadata metadata;
+	// The number of bytes read off of the disk
+	private final long bytesRead;
+	// True if only the metadata segments were read, false if the full reader was used
+	private final Boolean headerOnly;
+
+	/**
+	 * Constructor just assigns fields
+	 *
+	 * @param metadata The metadata read off of the file
+	 * @param bytesRead The number of bytes read off of the disk
+	 * @param headerOnly True if only the metadata segments were read, false if the full reader was used
+	 */
+	public MetadataReadResult(Metadata metadata, long bytesRead, Boolean headerOnly)
+	{
+		this.metadata = metadata;
+		this.bytesRead = bytesRead;
+		this.headerOnly = headerOnly;
+	}
+
+	///
+	/// Getters
+	///
+
+	public Metadata getMetadata()
+	{
+		return this.metadata;
+	}
+
+	public long getBytesRead()
+	{
+		return this.bytesRead;
+	}
+
+	public Boolean isHeaderOnly()
+	{
+		return this.headerOnly;
+	}
+}
@@ -0,0 +1,210 @@
+package model;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads file paths, one per line, and submits them into an indexing pipeline. Paths can come from standard input or
+ * from clients connecting to a socket on the loopback interface, which lets an iRODS rule hand a file to an already
+ * running processor instead of starting a new JVM for each file.
+ */
+public class PathListener implements Closeable
+{
+	// The pipeline that paths are submitted into
+	private final IndexingPipeline pipeline;
+	// The server socket accepting connections, or null if we're not listening on a socket
+	private ServerSocket serverSocket;
+	// Every thread currently reading paths, interrupted on close so none of them are left blocked on a full pipeline
+	private final Set<Thread> readerThreads = new HashSet<>();
+	// Each connected client and the thread reading from it, closed and joined on close
+	private final Map<Socket, Thread> clients = new HashMap<>();
+	// Set once close has been called, after which no more paths are submitted
+	private volatile Boolean closed = false;
+
+	/**
+	 * Constructor just assigns fields
+	 *
+	 * @param pipeline The pipeline that paths are submitted into
+	 */
+	public PathListener(IndexingPipeline pipeline)
+	{
+		this.pipeline = pipeline;
+	}
+
+	/**
+	 * Reads paths from a stream until the stream ends or the listener is closed. Blocks the calling thread.
+	 *
+	 * @param inputStream The stream to read paths from
+	 * @throws IOException If the stream could not be read
+	 * @throws InterruptedException If the thread was interrupted while waiting for space in the pipeline
+	 */
+	public void read(InputStream inputStream) throws IOException, InterruptedException
+	{
+		synchronized (this)
+		{
+			if (this.closed)
+				return;
+			this.readerThreads.add(Thread.currentThread());
+		}
+		try
+		{
+			BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+			String line;
+			while (!this.closed && (line = reader.readLine()) != null)
+			{
+				String path = line.trim();
+				if (path.isEmpty())
+					continue;
+
+				File file = new File(path);
+				// Only submit readable images, anything else is logged and ignored
+				if (!file.isFile() || !file.canRead() || !this.pipeline.isAccepted(file))
+					DroneLogger.logError("Ignoring path that is not a readable image (" + path + ")");
+				else if (this.closed)
+					DroneLogger.logError("Ignoring path received while shutting down (" + path + ")");
+				else
+					this.pipeline.submit(file);
+			}
+		}
+		catch (IllegalStateException e)
+		{
+			// The pipeline finished while we were reading, anything else on the stream can't be indexed
+			DroneLogger.logError("Stopped reading paths, " + e.getMessage());
+		}
+		finally
+		{
+			synchronized (this)
+			{
+				this.readerThreads.remove(Thread.currentThread());
+			}
+		}
+	}
+
+	/**
+	 * Listens for connections on a loopback port, reading paths from each connection on its own thread
+	 *
+	 * @param port The port to listen on
+	 * @throws IOException If the socket could not be opened
+	 */
+	public void listen(Integer port) throws IOException
+	{
+		this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		DroneLogger.logDebug("Listening for file paths on port " + this.serverSocket.getLocalPort());
+
+		Thread acceptThread = new Thread(() ->
+		{
+			while (!this.serverSocket.isClosed())
+			{
+				try
+				{
+					Socket client = this.serverSocket.accept();
+					Thread clientThread = new Thread(() -> this.readClient(client), "path-listener-client");
+					clientThread.setDaemon(true);
+					synchronized (this)
+					{
+						// A client that connects while we're closing is turned away
+						if (this.closed)
+						{
+							client.close();
+							continue;
+						}
+						this.clients.put(client, clientThread);
+					}
+					clientThread.start();
+				}
+				catch (IOException e)
+				{
+					// Accept fails once the socket is closed, only log if it wasn't closed on purpose
+					if (!this.serverSocket.isClosed())
+						DroneLogger.logError("Error accepting a path listener connection: " + e.getMessage());
+				}
+			}
+		}, "path-listener");
+		acceptThread.setDaemon(true);
+		acceptThread.start();
+	}
+
+	/**
+	 * Reads paths from a single client until it disconnects
+	 *
+	 * @param client The client to read from
+	 */
+	private void readClient(Socket client)
+	{
+		try (Socket socket = client)
+		{
+			this.read(socket.getInputStream());
+		}
+		catch (IOException e)
+		{
+			// Reading fails once close shuts the socket, only log if it wasn't closed on purpose
+			if (!this.closed)
+				DroneLogger.logError("Error reading paths from a client: " + e.getMessage());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			synchronized (this)
+			{
+				this.clients.remove(client);
+			}
+		}
+	}
+
+	/**
+	 * Stops listening for new connections and stops every reader, so nothing is submitted into the pipeline once this
+	 * returns. Client connections are closed and their threads joined. A thread blocked reading standard input can't be
+	 * woken up, but it won't submit anything it reads afterwards
+	 *
+	 * @throws IOException If the socket could not be closed
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		List<Thread> clientThreads;
+		synchronized (this)
+		{
+			this.closed = true;
+			// Closing each socket wakes up a client thread waiting for its next line, interrupting wakes up one waiting on the pipeline
+			for (Socket client : this.clients.keySet())
+			{
+				try
+				{
+					client.close();
+				}
+				catch (IOException ignored) {}
+			}
+			this.readerThreads.forEach(Thread::interrupt);
+			clientThreads = new ArrayList<>(this.clients.values());
+		}
+		if (this.serverSocket != null)
+			this.serverSocket.close();
+
+		try
+		{
+			for (Thread clientThread : clientThreads)
+				clientThread.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,346 @@
+package model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters, gauges, and latency histograms describing what the metadata processor has been doing, so a slow run can
+ * be pinned on the stage that was slow. Everything can be written out as JSON or in the Prometheus text format. All
+ * of the metric types are safe to update from any number of threads.
+ */
+public class ProcessorMetrics
+{
+	// Every metric name is prefixed with this in the Prometheus output
+	private static final String PROMETHEUS_PREFIX = "metadata_processor_";
+
+	// The registered metrics in the order they were registered, keyed by name
+	private final Map<String, Counter> counters = new LinkedHashMap<>();
+	private final Map<String, Gauge> gauges = new LinkedHashMap<>();
+	private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+
+	/**
+	 * Registers a counter, a value that only goes up
+	 *
+	 * @param name The name of the counter, should end in _total
+	 * @param help A description of what the counter counts
+	 * @return The counter
+	 */
+	public synchronized Counter counter(String name, String help)
+	{
+		return this.counters.computeIfAbsent(name, ignored -> new Counter(help));
+	}
+
+	/**
+	 * Registers a gauge, a value that is sampled whenever the metrics are written
+	 *
+	 * @param name The name of the gauge
+	 * @param help A description of what the gauge measures
+	 * @param value Supplies the current value of the gauge
+	 */
+	public synchronized void gauge(String name, String help, LongSupplier value)
+	{
+		this.gauges.put(name, new Gauge(help, value));
+	}
+
+	/**
+	 * Registers a latency histogram
+	 *
+	 * @param name The name of the histogram, should end in _seconds
+	 * @param help A description of what the histogram times
+	 * @return The histogram
+	 */
+	public synchronized Histogram histogram(String name, String help)
+	{
+		return this.histograms.computeIfAbsent(name, ignored -> new Histogram(help));
+	}
+
+	/**
+	 * Writes the metrics into a JSON file and a Prometheus text file. Each file is written to a temporary name and then
+	 * renamed so anything reading them never sees a half written file.
+	 *
+	 * @param path The path to write to, '.json' and '.prom' are appended to it
+	 * @throws IOException If either file could not be written
+	 */
+	public void writeFiles(String path) throws IOException
+	{
+		writeAtomically(new File(path + ".json"), this.toJson());
+		writeAtomically(new File(path + ".prom"), this.toPrometheus());
+	}
+
+	/**
+	 * @return The metrics as a JSON object
+	 */
+	public synchronized String toJson()
+	{
+		StringBuilder json = new StringBuilder();
+		json.append("{\n  \"timestamp\": ").append(System.currentTimeMillis()).append(",\n  \"counters\": {");
+		String separator = "\n";
+		for (Map.Entry<String, Counter> counter : this.counters.entrySet())
+		{
+			json.append(separator).append("    \"").append(counter.getKey()).append("\": ").append(counter.getValue().get());
+			separator = ",\n";
+		}
+		json.append("\n  },\n  \"gauges\": {");
+		separator = "\n";
+		for (Map.Entry<String, Gauge> gauge : this.gauges.entrySet())
+		{
+			json.append(separator).append("    \"").append(gauge.getKey()).append("\": ").append(gauge.getValue().get());
+			separator = ",\n";
+		}
+		json.append("\n  },\n  \"histograms\": {");
+		separator = "\n";
+		for (Map.Entry<String, Histogram> entry : this.histograms.entrySet())
+		{
+			Histogram histogram = entry.getValue();
+			json.append(separator).append("    \"").append(entry.getKey()).append("\": {")
+					.append("\"count\": ").append(histogram.getCount())
+					.append(", \"sum\": ").append(formatSeconds(histogram.getSumSeconds()))
+					.append(", \"mean\": ").append(formatSeconds(histogram.getCount() == 0 ? 0 : histogram.getSumSeconds() / histogram.getCount()))
+					.append(", \"p50\": ").append(formatSeconds(histogram.getQuantile(0.5)))
+					.append(", \"p90\": ").append(formatSeconds(histogram.getQuantile(0.9)))
+					.append(", \"p99\": ").append(formatSeconds(histogram.getQuantile(0.99)))
+					.append(", \"max\": ").append(formatSeconds(histogram.getMaxSeconds()))
+					.append("}");
+			separator = ",\n";
+		}
+		json.append("\n  }\n}\n");
+		return json.toString();
+	}
+
+	/**
+	 * @return The metrics in the Prometheus text exposition format
+	 */
+	public synchronized String toPrometheus()
+	{
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<String, Counter> counter : this.counters.entrySet())
+		{
+			String name = PROMETHEUS_PREFIX + counter.getKey();
+			text.append("# HELP ").append(name).append(' ').append(counter.getValue().help).append('\n');
+			text.append("# TYPE ").append(name).append(" counter\n");
+			text.append(name).append(' ').append(counter.getValue().get()).append('\n');
+		}
+		for (Map.Entry<String, Gauge> gauge : this.gauges.entrySet())
+		{
+			String name = PROMETHEUS_PREFIX + gauge.getKey();
+			text.append("# HELP ").append(name).append(' ').append(gauge.getValue().help).append('\n');
+			text.append("# TYPE ").append(name).append(" gauge\n");
+			text.append(name).append(' ').append(gauge.getValue().get()).append('\n');
+		}
+		for (Map.Entry<String, Histogram> entry : this.histograms.entrySet())
+		{
+			String name = PROMETHEUS_PREFIX + entry.getKey();
+			Histogram histogram = entry.getValue();
+			text.append("# HELP ").append(name).append(' ').append(histogram.help).append('\n');
+			text.append("# TYPE ").append(name).append(" histogram\n");
+			// Prometheus buckets are cumulative
+			long cumulative = 0;
+			for (int i = 0; i < Histogram.BUCKET_BOUNDS_SECONDS.length; i++)
+			{
+				cumulative += histogram.buckets[i].sum();
+				text.append(name).append("_bucket{le=\"").append(formatSeconds(Histogram.BUCKET_BOUNDS_SECONDS[i])).append("\"} ").append(cumulative).append('\n');
+			}
+			text.append(name).append("_bucket{le=\"+Inf\"} ").append(histogram.getCount()).append('\n');
+			text.append(name).append("_sum ").append(formatSeconds(histogram.getSumSeconds())).append('\n');
+			text.append(name).append("_count ").append(histogram.getCount()).append('\n');
+		}
+		return text.toString();
+	}
+
+	/**
+	 * Formats a number of seconds without scientific notation
+	 *
+	 * @param seconds The seconds to format
+	 * @return The formatted seconds
+	 */
+	private static String formatSeconds(double seconds)
+	{
+		return String.format(Locale.ROOT, "%.6f", seconds);
+	}
+
+	/**
+	 * Writes a file by writing a temporary file next to it and renaming it over the top
+	 *
+	 * @param file The file to write
+	 * @param contents The contents of the file
+	 * @throws IOException If the file could not be written
+	 */
+	private static void writeAtomically(File file, String contents) throws IOException
+	{
+		File temporary = new File(file.getAbsolutePath() + ".tmp");
+		try (Writer writer = Files.newBufferedWriter(temporary.toPath(), StandardCharsets.UTF_8))
+		{
+			writer.write(contents);
+		}
+		Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * A value that only goes up
+	 */
+	public static class Counter
+	{
+		// A description of what the counter counts
+		private final String help;
+		// The value of the counter, spread across cells so busy threads don't contend
+		private final LongAdder value = new LongAdder();
+
+		private Counter(String help)
+		{
+			this.help = help;
+		}
+
+		public void increment()
+		{
+			this.value.increment();
+		}
+
+		public void add(long amount)
+		{
+			this.value.add(amount);
+		}
+
+		public long get()
+		{
+			return this.value.sum();
+		}
+	}
+
+	/**
+	 * A value that is sampled when the metrics are written
+	 */
+	private static class Gauge
+	{
+		// A description of what the gauge measures
+		private final String help;
+		// Supplies the current value
+		private final LongSupplier value;
+
+		private Gauge(String help, LongSupplier value)
+		{
+			this.help = help;
+			this.value = value;
+		}
+
+		private long get()
+		{
+			return this.value.getAsLong();
+		}
+	}
+
+	/**
+	 * Counts how many timings fell into each of a fixed set of latency buckets, from 100 microseconds to a minute
+	 */
+	public static class Histogram
+	{
+		// The upper bound of each bucket in seconds, anything slower than the last bucket only counts towards +Inf
+		private static final double[] BUCKET_BOUNDS_SECONDS = {
+				0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60 };
+		// The bucket bounds converted into nanoseconds so recording doesn't need floating point
+		private static final long[] BUCKET_BOUNDS_NANOS = new long[BUCKET_BOUNDS_SECONDS.length];
+
+		static
+		{
+			for (int i = 0; i < BUCKET_BOUNDS_SECONDS.length; i++)
+				BUCKET_BOUNDS_NANOS[i] = (long) (BUCKET_BOUNDS_SECONDS[i] * 1_000_000_000L);
+		}
+
+		// A description of what the histogram times
+		private final String help;
+		// The number of timings in each bucket, not cumulative
+		private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_SECONDS.length];
+		// The number of timings slower than the last bucket
+		private final LongAdder overflow = new LongAdder();
+		// The total of every timing in nanoseconds
+		private final LongAdder sumNanos = new LongAdder();
+		// The slowest timing in nanoseconds
+		private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+		private Histogram(String help)
+		{
+			this.help = help;
+			for (int i = 0; i < this.buckets.length; i++)
+				this.buckets[i] = new LongAdder();
+		}
+
+		/**
+		 * Records how long something took since a start time
+		 *
+		 * @param startNanos The start time from System.nanoTime()
+		 */
+		public void recordSince(long startNanos)
+		{
+			this.record(System.nanoTime() - startNanos);
+		}
+
+		/**
+		 * Records a timing
+		 *
+		 * @param nanos The timing in nanoseconds
+		 */
+		public void record(long nanos)
+		{
+			this.sumNanos.add(nanos);
+			this.maxNanos.accumulate(nanos);
+			for (int i = 0; i < BUCKET_BOUNDS_NANOS.length; i++)
+			{
+				if (nanos <= BUCKET_BOUNDS_NANOS[i])
+				{
+					this.buckets[i].increment();
+					return;
+				}
+			}
+			this.overflow.increment();
+		}
+
+		public long getCount()
+		{
+			long count = this.overflow.sum();
+			for (LongAdder bucket : this.buckets)
+				count += bucket.sum();
+			return count;
+		}
+
+		public double getSumSeconds()
+		{
+			return this.sumNanos.sum() / 1e9;
+		}
+
+		public double getMaxSeconds()
+		{
+			return this.maxNanos.get() / 1e9;
+		}
+
+		/**
+		 * Estimates a quantile as the upper bound of the bucket it falls into
+		 *
+		 * @param quantile The quantile between 0 and 1
+		 * @return The estimated quantile in seconds
+		 */
+		public double getQuantile(double quantile)
+		{
+			long count = this.getCount();
+			if (count == 0)
+				return 0;
+			long rank = (long) Math.ceil(quantile * count);
+			long seen = 0;
+			for (int i = 0; i < this.buckets.length; i++)
+			{
+				seen += this.buckets[i].sum();
+				if (seen >= rank)
+					return Math.min(BUCKET_BOUNDS_SECONDS[i], this.getMaxSeconds());
+			}
+			return this.getMaxSeconds();
+		}
+	}
+}
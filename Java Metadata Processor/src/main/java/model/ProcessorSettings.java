@@ -0,0 +1,264 @@
+package model;
+
+/**
+ * Class containing all tunable settings used by the metadata processor
+ */
+public class ProcessorSettings
+{
+	// The number of threads used to parse image files
+	private Integer parserThreads = Runtime.getRuntime().availableProcessors();
+	// The number of threads used to convert raw metadata into indexable metadata
+	private Integer converterThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+	// The maximum number of items waiting between two pipeline stages
+	private Integer queueCapacity = 512;
+	// The maximum number of documents sent in a single bulk request
+	private Integer bulkActions = 1000;
+	// The maximum number of bytes sent in a single bulk request
+	private Long bulkBytes = 5L * 1024L * 1024L;
+	// The maximum number of bulk requests sent to elasticsearch at the same time
+	private Integer bulkConcurrency = 2;
+	// The number of times documents rejected because elasticsearch is overloaded are retried
+	private Integer bulkRetries = 5;
+	// The time waited before the first retry, doubling for every retry after it
+	private Long bulkBackoffMillis = 100L;
+	// If the index should have refreshes and replicas turned off while indexing, and restored afterwards
+	private Boolean bulkLoad = false;
+	// If set, converted documents are written into this spool directory instead of being sent to elasticsearch
+	private String spoolDirectory = null;
+	// If set, documents that can't be sent because elasticsearch is unreachable are written into this spool directory
+	private String failureSpoolDirectory = null;
+	// If set, the spool directory to replay into elasticsearch instead of indexing files
+	private String replayDirectory = null;
+	// The maximum number of bytes the parser may read from a file's header before falling back to reading all of it
+	private Long headerByteBudget = MetadataParser.DEFAULT_HEADER_BYTE_BUDGET;
+	// The maximum time a partially filled bulk request waits before being sent
+	private Long flushIntervalMillis = 5000L;
+	// The manifest file used to skip unchanged files, 'none' to disable it, or null to use the default location
+	private String manifestPath = null;
+	// If set, stage metrics are written to this path with '.json' and '.prom' appended
+	private String metricsPath = null;
+	// How often a daemon rewrites its metrics files
+	private Long metricsIntervalMillis = 60000L;
+
+	// If the processor should stay resident and index files as they arrive
+	private Boolean daemon = false;
+	// If the daemon should read file paths from standard input, one per line
+	private Boolean readStdin = false;
+	// The local port the daemon reads file paths from, or null to not listen on a socket
+	private Integer socketPort = null;
+	// How long a watched file must go without changing before it is indexed
+	private Long debounceMillis = 2000L;
+	// If the daemon should index files that already exist in watched directories when it starts
+	private Boolean scanExisting = false;
+
+	/**
+	 * Applies a single command line option of the form --name=value to these settings. Flags may omit the value.
+	 *
+	 * @param option The option to apply
+	 * @return True if the option was recognized and applied, false otherwise
+	 */
+	public Boolean applyOption(String option)
+	{
+		// Options must start with --
+		if (!option.startsWith("--"))
+			return false;
+
+		// Split the option into name and value, a flag without a value is just 'true'
+		String name = option.contains("=") ? option.substring(2, option.indexOf('=')) : option.substring(2);
+		String value = option.contains("=") ? option.substring(option.indexOf('=') + 1) : "true";
+
+		try
+		{
+			switch (name)
+			{
+				case "parser-threads":
+					this.parserThreads = Math.max(1, Integer.parseInt(value));
+					return true;
+				case "converter-threads":
+					this.converterThreads = Math.max(1, Integer.parseInt(value));
+					return true;
+				case "queue-capacity":
+					this.queueCapacity = Math.max(1, Integer.parseInt(value));
+					return true;
+				case "bulk-actions":
+					this.bulkActions = Math.max(1, Integer.parseInt(value));
+					return true;
+				case "bulk-bytes":
+					this.bulkBytes = Math.max(1L, Long.parseLong(value));
+					return true;
+				case "bulk-concurrency":
+					this.bulkConcurrency = Math.max(1, Integer.parseInt(value));
+					return true;
+				case "bulk-retries":
+					this.bulkRetries = Math.max(0, Integer.parseInt(value));
+					return true;
+				case "bulk-backoff-ms":
+					this.bulkBackoffMillis = Math.max(1L, Long.parseLong(value));
+					return true;
+				case "bulk-load":
+					this.bulkLoad = Boolean.parseBoolean(value);
+					return true;
+				case "spool":
+					this.spoolDirectory = value;
+					return true;
+				case "spool-on-failure":
+					this.failureSpoolDirectory = value;
+					return true;
+				case "replay":
+					this.replayDirectory = value;
+					return true;
+				case "header-byte-budget":
+					this.headerByteBudget = Math.max(0L, Long.parseLong(value));
+					return true;
+				case "flush-interval-ms":
+					this.flushIntervalMillis = Math.max(1L, Long.parseLong(value));
+					return true;
+				case "manifest":
+					this.manifestPath = value;
+					return true;
+				case "metrics":
+					this.metricsPath = value;
+					return true;
+				case "metrics-interval-ms":
+					this.metricsIntervalMillis = Math.max(1000L, Long.parseLong(value));
+					return true;
+				case "daemon":
+					this.daemon = Boolean.parseBoolean(value);
+					return true;
+				case "stdin":
+					this.readStdin = Boolean.parseBoolean(value);
+					return true;
+				case "socket-port":
+					this.socketPort = Integer.parseInt(value);
+					return true;
+				case "debounce-ms":
+					this.debounceMillis = Math.max(0L, Long.parseLong(value));
+					return true;
+				case "scan-existing":
+					this.scanExisting = Boolean.parseBoolean(value);
+					return true;
+				default:
+					return false;
+			}
+		}
+		// If the value could not be parsed the option is invalid
+		catch (NumberFormatException e)
+		{
+			return false;
+		}
+	}
+
+	///
+	/// Getters
+	///
+
+	public Integer getParserThreads()
+	{
+		return this.parserThreads;
+	}
+
+	public Integer getConverterThreads()
+	{
+		return this.converterThreads;
+	}
+
+	public Integer getQueueCapacity()
+	{
+		return this.queueCapacity;
+	}
+
+	public Integer getBulkActions()
+	{
+		return this.bulkActions;
+	}
+
+	public Long getBulkBytes()
+	{
+		return this.bulkBytes;
+	}
+
+	public Integer getBulkConcurrency()
+	{
+		return this.bulkConcurrency;
+	}
+
+	public Integer getBulkRetries()
+	{
+		return this.bulkRetries;
+	}
+
+	public Long getBulkBackoffMillis()
+	{
+		return this.bulkBackoffMillis;
+	}
+
+	public Boolean isBulkLoad()
+	{
+		return this.bulkLoad;
+	}
+
+	public String getSpoolDirectory()
+	{
+		return this.spoolDirectory;
+	}
+
+	public String getFailureSpoolDirectory()
+	{
+		return this.failureSpoolDirectory;
+	}
+
+	public String getReplayDirectory()
+	{
+		return this.replayDirectory;
+	}
+
+	public Long getHeaderByteBudget()
+	{
+		return this.headerByteBudget;
+	}
+
+	public Long getFlushIntervalMillis()
+	{
+		return this.flushIntervalMillis;
+	}
+
+	public String getManifestPath()
+	{
+		return this.manifestPath;
+	}
+
+	public String getMetricsPath()
+	{
+		return this.metricsPath;
+	}
+
+	public Long getMetricsIntervalMillis()
+	{
+		return this.metricsIntervalMillis;
+	}
+
+	public Boolean isDaemon()
+	{
+		return this.daemon;
+	}
+
+	public Boolean shouldReadStdin()
+	{
+		return this.readStdin;
+	}
+
+	public Integer getSocketPort()
+	{
+		return this.socketPort;
+	}
+
+	public Long getDebounceMillis()
+	{
+		return this.debounceMillis;
+	}
+
+	public Boolean shouldScanExisting()
+	{
+		return this.scanExisting;
+	}
+}
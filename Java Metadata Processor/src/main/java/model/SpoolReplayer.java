@@ -0,0 +1,152 @@
+package model;
+
+import org.elasticsearch.action.bulk.BulkRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Replays the segments of a bulk spool into elasticsearch. Each segment is sent as one bulk request through a bulk
+ * indexer, so only a bounded number of segments are in memory and in flight at once and rejected documents are
+ * retried. A segment is deleted once every document in it is indexed. Documents that fail for good are moved into a
+ * 'failed' spool next to the segments so they aren't replayed forever, and segments that couldn't be sent because
+ * the cluster was unreachable are left alone for the next replay.
+ */
+public class SpoolReplayer
+{
+	// The name of the directory that documents that fail for good are moved into
+	private static final String FAILED_DIRECTORY = "failed";
+
+	// The spool to replay
+	private final BulkSpool spool;
+	// Sends the replayed bulk requests
+	private final BulkIndexer bulkIndexer;
+	// The spool that documents that fail for good are moved into, created the first time it's needed
+	private BulkSpool failedSpool = null;
+
+	// Counters used to print a summary once the replay finishes
+	private final AtomicLong segmentsReplayed = new AtomicLong(0);
+	private final AtomicLong segmentsKept = new AtomicLong(0);
+	private final AtomicLong documentsIndexed = new AtomicLong(0);
+	private final AtomicLong documentsFailed = new AtomicLong(0);
+
+	/**
+	 * Constructor just assigns fields
+	 *
+	 * @param spool The spool to replay
+	 * @param bulkIndexer Sends the replayed bulk requests
+	 */
+	public SpoolReplayer(BulkSpool spool, BulkIndexer bulkIndexer)
+	{
+		this.spool = spool;
+		this.bulkIndexer = bulkIndexer;
+	}
+
+	/**
+	 * Replays every segment currently in the spool and waits for them to finish
+	 *
+	 * @throws InterruptedException If the thread was interrupted while waiting for the segments to be sent
+	 */
+	public void replay() throws InterruptedException
+	{
+		List<File> segments = this.spool.listSegments();
+		DroneLogger.logDebug("Replaying " + segments.size() + " spooled segments from " + this.spool.getDirectory().getAbsolutePath());
+		for (File segment : segments)
+		{
+			BulkRequest bulkRequest;
+			try
+			{
+				bulkRequest = BulkSpool.readSegment(segment);
+			}
+			catch (IOException | RuntimeException e)
+			{
+				this.segmentsKept.incrementAndGet();
+				DroneLogger.logError("Could not read spooled segment " + segment.getName() + "! " + e.getMessage());
+				continue;
+			}
+			if (bulkRequest.numberOfActions() == 0)
+			{
+				this.deleteSegment(segment);
+				continue;
+			}
+			this.bulkIndexer.submit(bulkRequest, result -> this.onSegmentComplete(segment, bulkRequest, result));
+		}
+		this.bulkIndexer.awaitCompletion();
+
+		DroneLogger.logDebug("Replay finished. Segments replayed: " + this.segmentsReplayed.get() +
+				", kept: " + this.segmentsKept.get() +
+				", documents indexed: " + this.documentsIndexed.get() +
+				", failed: " + this.documentsFailed.get());
+	}
+
+	/**
+	 * Cleans up a segment once its bulk request has finished
+	 *
+	 * @param segment The segment that was sent
+	 * @param bulkRequest The bulk request read from the segment
+	 * @param result The result of every document in the segment
+	 */
+	private void onSegmentComplete(File segment, BulkRequest bulkRequest, BulkBatchResult result)
+	{
+		// The cluster couldn't be reached, keep the whole segment for next time
+		if (result.isUnreachable())
+		{
+			this.segmentsKept.incrementAndGet();
+			return;
+		}
+
+		this.documentsIndexed.addAndGet(result.getIndexedCount());
+		this.documentsFailed.addAndGet(result.getFailedCount());
+		try
+		{
+			// Set aside anything that failed for good so the rest of the segment can be deleted
+			if (result.getFailedCount() > 0)
+			{
+				BulkRequest failed = new BulkRequest();
+				for (int i = 0; i < result.size(); i++)
+					if (result.isFailed(i))
+						failed.add(bulkRequest.requests().get(i));
+				File failedSegment = this.getFailedSpool().writeSegment(failed);
+				DroneLogger.logError(failed.numberOfActions() + " documents from " + segment.getName() + " could not be indexed, they were moved to " + failedSegment.getAbsolutePath());
+			}
+			this.deleteSegment(segment);
+			this.segmentsReplayed.incrementAndGet();
+		}
+		catch (IOException e)
+		{
+			this.segmentsKept.incrementAndGet();
+			DroneLogger.logError("Could not set aside the failed documents of " + segment.getName() + ", keeping the segment! " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @return The spool that documents that fail for good are moved into
+	 * @throws IOException If the spool's directory could not be created
+	 */
+	private synchronized BulkSpool getFailedSpool() throws IOException
+	{
+		if (this.failedSpool == null)
+			this.failedSpool = new BulkSpool(new File(this.spool.getDirectory(), FAILED_DIRECTORY));
+		return this.failedSpool;
+	}
+
+	/**
+	 * Deletes a segment that no longer needs replaying
+	 *
+	 * @param segment The segment to delete
+	 */
+	private void deleteSegment(File segment)
+	{
+		try
+		{
+			Files.deleteIfExists(segment.toPath());
+		}
+		catch (IOException e)
+		{
+			DroneLogger.logError("Could not delete replayed segment " + segment.getName() + "! " + e.getMessage());
+		}
+	}
+}